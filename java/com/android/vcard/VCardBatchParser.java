@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.exception.VCardException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Parses many independent vCard inputs concurrently, each with its own parser on its own task
+ * of the given {@link ExecutorService}. Useful for services which receive a lot of small
+ * vCards at once.
+ * </p>
+ * <p>
+ * Parsers never enter a monitor while parsing: they share no mutable state except for
+ * lock-free caches, {@link VCardParser#cancel()} is a volatile write, and
+ * {@link VCardEntryConstructor} / {@link VCardEntryCommitter} use no locks either. So a
+ * parse only blocks on reading its input, and the number of concurrent parses is limited by
+ * the executor alone:
+ * </p>
+ * <ul>
+ * <li>For inputs already in memory, a pool with one thread per available processor gives
+ * the best throughput; more threads only add scheduling overhead.</li>
+ * <li>For inputs which may block, like network streams, use an executor with as many threads
+ * as concurrent inputs. On runtimes with lightweight threads (e.g. a virtual thread per task
+ * executor), thousands of parses can wait for their input without pinning a platform
+ * thread each.</li>
+ * </ul>
+ * <p>
+ * Each parse keeps a small per-thread cache for charset conversion, which is created again
+ * on threads used only once.
+ * </p>
+ * <p>
+ * Unlike {@link VCardMultiVersionParser}, this class does not detect the vCard version.
+ * Callers must specify the version of the inputs via vcardType.
+ * </p>
+ */
+public class VCardBatchParser {
+    /**
+     * Creates an interpreter for each input.
+     */
+    public interface InterpreterFactory {
+        /**
+         * Called on the thread which parses the input. The interpreter receives events only
+         * from that thread.
+         *
+         * @param index The position of the input in the list given to
+         * {@link VCardBatchParser#parse(List, InterpreterFactory)}.
+         */
+        public VCardInterpreter createInterpreter(int index);
+    }
+
+    private final int mVCardType;
+    private final ExecutorService mExecutor;
+
+    /**
+     * @param executor Used for parsing each input. Not shut down by this object.
+     */
+    public VCardBatchParser(int vcardType, ExecutorService executor) {
+        if (executor == null) {
+            throw new NullPointerException("ExecutorService must not be null.");
+        }
+        mVCardType = vcardType;
+        mExecutor = executor;
+    }
+
+    /**
+     * Parses each input on its own task, and waits for all of them. Inputs are not closed.
+     *
+     * @return the failure of each input in the same order as the inputs, where null means the
+     * input was parsed successfully.
+     * @throws InterruptedException when the calling thread is interrupted while waiting. Parses
+     * which are still running are interrupted, which stops them in the same manner as
+     * {@link VCardParser#cancel()}.
+     */
+    public List<Exception> parse(List<? extends InputStream> inputList,
+            InterpreterFactory factory) throws InterruptedException {
+        final int size = inputList.size();
+        final List<Future<Exception>> futureList = new ArrayList<Future<Exception>>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                futureList.add(mExecutor.submit(new ParseTask(i, inputList.get(i), factory)));
+            }
+            final List<Exception> failureList = new ArrayList<Exception>(size);
+            for (Future<Exception> future : futureList) {
+                failureList.add(getFailure(future));
+            }
+            return failureList;
+        } finally {
+            // No-op for finished tasks.
+            for (Future<Exception> future : futureList) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static Exception getFailure(Future<Exception> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // ParseTask returns checked exceptions instead of throwing them.
+            throw new IllegalStateException("Unexpected failure: " + cause);
+        }
+    }
+
+    private class ParseTask implements Callable<Exception> {
+        private final int mIndex;
+        private final InputStream mInput;
+        private final InterpreterFactory mFactory;
+
+        public ParseTask(int index, InputStream input, InterpreterFactory factory) {
+            mIndex = index;
+            mInput = input;
+            mFactory = factory;
+        }
+
+        @Override
+        public Exception call() {
+            final VCardParserImpl_V21 parserImpl = VCardParserImpl_V21.create(mVCardType);
+            parserImpl.addInterpreter(mFactory.createInterpreter(mIndex));
+            try {
+                parserImpl.parse(mInput);
+                return null;
+            } catch (IOException e) {
+                return e;
+            } catch (VCardException e) {
+                return e;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>
+ * Receives binary values (e.g. BASE64 encoded PHOTO) while they are being decoded, so that
+ * the parser does not need to hold the whole value in memory.
+ * </p>
+ * <p>
+ * Without a sink, the parser decodes a binary value into a byte array and sets it via
+ * {@link VCardProperty#setByteValue(byte[])}. With a sink, the property has no byte value but
+ * the handle given by {@link #getBinaryValueHandle(VCardProperty, OutputStream)}, which tells
+ * where the data of the property went, e.g. a file in a cache directory.
+ * {@link VCardEntry} keeps the handles of PHOTO and LOGO in
+ * {@link VCardEntry.PhotoData#getByteValueHandle()}.
+ * </p>
+ */
+public interface VCardBinarySink {
+    /**
+     * Called when a binary value of the property starts. Its name and parameters are already
+     * available, while its values are not.
+     *
+     * @return the stream which receives decoded bytes. The parser closes it at the end of the
+     * value, even when the parse fails.
+     */
+    OutputStream openBinaryValue(VCardProperty property) throws IOException;
+
+    /**
+     * Called after the whole value has been written to the stream and the stream is closed.
+     *
+     * @param out the stream returned by {@link #openBinaryValue(VCardProperty)} for the
+     * property.
+     * @return a non-null object identifying the value, which is set to the property via
+     * {@link VCardProperty#setByteValueHandle(Object)}.
+     */
+    Object getBinaryValueHandle(VCardProperty property, OutputStream out);
+}
@@ -36,7 +36,7 @@ import android.util.Log;
 
 import com.android.vcard.VCardUtils.PhoneNumberUtilsPort;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -100,6 +100,8 @@ public class VCardBuilder {
 
     private static final String SHIFT_JIS = "SHIFT_JIS";
 
+    private static final char[] UPPER_HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     private final int mVCardType;
 
     private final boolean mIsV30OrV40;
@@ -121,6 +123,8 @@ public class VCardBuilder {
     private StringBuilder mBuilder;
     private boolean mEndAppended;
 
+    private VCardPhotoStore mPhotoStore;
+
     public VCardBuilder(final int vcardType) {
         // Default charset should be used
         this(vcardType, null);
@@ -186,6 +190,14 @@ public class VCardBuilder {
         clear();
     }
 
+    /**
+     * Lets this object reuse Base64 encoded photos in the store, which may be shared by builders
+     * used in one export. Null by default, with which each photo is encoded.
+     */
+    public void setPhotoStore(VCardPhotoStore photoStore) {
+        mPhotoStore = photoStore;
+    }
+
     public void clear() {
         mBuilder = new StringBuilder();
         mEndAppended = false;
@@ -1312,7 +1324,12 @@ public class VCardBuilder {
                     continue;
                 }
                 // TODO: check this works fine.
-                final String photoString = new String(Base64.encode(data, Base64.NO_WRAP));
+                final String photoString;
+                if (mPhotoStore != null) {
+                    photoString = mPhotoStore.getSharedPhoto(data).getEncodedValue();
+                } else {
+                    photoString = new String(Base64.encode(data, Base64.NO_WRAP));
+                }
                 if (!TextUtils.isEmpty(photoString)) {
                     appendPhotoLine(photoString, photoType);
                 }
@@ -2071,12 +2088,7 @@ public class VCardBuilder {
         if (!mShouldAppendCharsetParam) {
             return false;
         }
-        for (String propertyValue : propertyValueList) {
-            if (!VCardUtils.containsOnlyPrintableAscii(propertyValue)) {
-                return true;
-            }
-        }
-        return false;
+        return !VCardUtils.containsOnlyPrintableAscii(propertyValueList);
     }
 
     private String encodeQuotedPrintable(final String str) {
@@ -2084,20 +2096,27 @@ public class VCardBuilder {
             return "";
         }
 
-        final StringBuilder builder = new StringBuilder();
-        int index = 0;
-        int lineCount = 0;
         byte[] strArray = null;
-
+        int strLength;
         try {
-            strArray = str.getBytes(mCharset);
-        } catch (UnsupportedEncodingException e) {
+            final ByteBuffer byteBuffer = VCardCharsetCoders.get().encode(str, mCharset);
+            strArray = byteBuffer.array();
+            strLength = byteBuffer.limit();
+        } catch (IllegalArgumentException e) {
             Log.e(LOG_TAG, "Charset " + mCharset + " cannot be used. "
                     + "Try default charset");
             strArray = str.getBytes();
+            strLength = strArray.length;
         }
-        while (index < strArray.length) {
-            builder.append(String.format("=%02X", strArray[index]));
+
+        final StringBuilder builder = new StringBuilder(strLength * 4);
+        int index = 0;
+        int lineCount = 0;
+        while (index < strLength) {
+            final int b = strArray[index] & 0xFF;
+            builder.append('=');
+            builder.append(UPPER_HEX_DIGITS[b >> 4]);
+            builder.append(UPPER_HEX_DIGITS[b & 0x0F]);
             index += 1;
             lineCount += 3;
 
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Per-thread cache of {@link CharsetEncoder} / {@link CharsetDecoder} objects and the buffers
+ * used with them, so that converting each property value doesn't look up a {@link Charset} by
+ * name or allocate intermediate buffers.
+ * </p>
+ * <p>
+ * Malformed input and unmappable characters are replaced, which gives the same results as
+ * {@link String#String(byte[], String)} and {@link String#getBytes(String)}. Unknown charset
+ * names cause {@link IllegalArgumentException} (IllegalCharsetNameException or
+ * UnsupportedCharsetException), as {@link Charset#forName(String)} does.
+ * </p>
+ * <p>
+ * Buffers returned by an object are valid only until its next call. Objects must not be
+ * shared among threads; use {@link #get()}. {@link Charset} objects are shared among all the
+ * threads via a concurrent map, so that threads which live only for a few parses don't look
+ * them up by name again.
+ * </p>
+ */
+/* package */ final class VCardCharsetCoders {
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // Don't keep a buffer grown for an unusually large value.
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<VCardCharsetCoders> sCoders =
+            new ThreadLocal<VCardCharsetCoders>() {
+                @Override
+                protected VCardCharsetCoders initialValue() {
+                    return new VCardCharsetCoders();
+                }
+            };
+
+    private static final ConcurrentHashMap<String, Charset> sCharsetMap =
+            new ConcurrentHashMap<String, Charset>();
+
+    private final Map<String, CharsetDecoder> mDecoderMap = new HashMap<String, CharsetDecoder>();
+    private final Map<String, CharsetEncoder> mEncoderMap = new HashMap<String, CharsetEncoder>();
+
+    // Most of the callers use one charset again and again.
+    private String mLastDecoderName;
+    private CharsetDecoder mLastDecoder;
+    private String mLastEncoderName;
+    private CharsetEncoder mLastEncoder;
+
+    private byte[] mScratchBytes = new byte[INITIAL_BUFFER_SIZE];
+    private CharBuffer mCharBuffer = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer mByteBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    private VCardCharsetCoders() {
+    }
+
+    /**
+     * @return the object for the calling thread.
+     */
+    public static VCardCharsetCoders get() {
+        return sCoders.get();
+    }
+
+    /**
+     * @return a byte array with at least the given length, whose content is undefined.
+     */
+    public byte[] getScratchBytes(int minLength) {
+        if (mScratchBytes.length < minLength || mScratchBytes.length > MAX_RETAINED_BUFFER_SIZE) {
+            mScratchBytes = new byte[Math.max(minLength, INITIAL_BUFFER_SIZE)];
+        }
+        return mScratchBytes;
+    }
+
+    public String decode(byte[] bytes, int offset, int length, String charsetName) {
+        final CharsetDecoder decoder = getDecoder(charsetName);
+        final int capacity = (int) (length * (double) decoder.maxCharsPerByte()) + 1;
+        if (mCharBuffer.capacity() < capacity
+                || mCharBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            mCharBuffer = CharBuffer.allocate(Math.max(capacity, INITIAL_BUFFER_SIZE));
+        }
+        mCharBuffer.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(
+                ByteBuffer.wrap(bytes, offset, length), mCharBuffer, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(mCharBuffer);
+        }
+        if (!result.isUnderflow()) {
+            // The buffer is large enough for any well-behaving decoder.
+            return new String(bytes, offset, length, decoder.charset());
+        }
+        return new String(mCharBuffer.array(), 0, mCharBuffer.position());
+    }
+
+    /**
+     * @return a buffer which holds the encoded bytes from its position 0 to its limit. Its
+     * backing array is accessible.
+     */
+    public ByteBuffer encode(CharSequence value, String charsetName) {
+        final CharsetEncoder encoder = getEncoder(charsetName);
+        final int capacity = (int) (value.length() * (double) encoder.averageBytesPerChar()) + 16;
+        if (mByteBuffer.capacity() < capacity
+                || mByteBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            mByteBuffer = ByteBuffer.allocate(Math.max(capacity, INITIAL_BUFFER_SIZE));
+        }
+        mByteBuffer.clear();
+        encoder.reset();
+        final CharBuffer in = CharBuffer.wrap(value);
+        while (true) {
+            CoderResult result = encoder.encode(in, mByteBuffer, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(mByteBuffer);
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            // Overflow. Grow the buffer and continue.
+            final ByteBuffer newBuffer = ByteBuffer.allocate(mByteBuffer.capacity() * 2);
+            mByteBuffer.flip();
+            newBuffer.put(mByteBuffer);
+            mByteBuffer = newBuffer;
+        }
+        mByteBuffer.flip();
+        return mByteBuffer;
+    }
+
+    private static Charset getCharset(String charsetName) {
+        Charset charset = sCharsetMap.get(charsetName);
+        if (charset == null) {
+            charset = Charset.forName(charsetName);
+            sCharsetMap.putIfAbsent(charsetName, charset);
+        }
+        return charset;
+    }
+
+    private CharsetDecoder getDecoder(String charsetName) {
+        if (charsetName.equals(mLastDecoderName)) {
+            return mLastDecoder;
+        }
+        CharsetDecoder decoder = mDecoderMap.get(charsetName);
+        if (decoder == null) {
+            decoder = getCharset(charsetName).newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            mDecoderMap.put(charsetName, decoder);
+        }
+        mLastDecoderName = charsetName;
+        mLastDecoder = decoder;
+        return decoder;
+    }
+
+    private CharsetEncoder getEncoder(String charsetName) {
+        if (charsetName.equals(mLastEncoderName)) {
+            return mLastEncoder;
+        }
+        CharsetEncoder encoder = mEncoderMap.get(charsetName);
+        if (encoder == null) {
+            encoder = getCharset(charsetName).newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            mEncoderMap.put(charsetName, encoder);
+        }
+        mLastEncoderName = charsetName;
+        mLastEncoder = encoder;
+        return encoder;
+    }
+}
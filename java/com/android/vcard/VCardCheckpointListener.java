@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+/**
+ * <p>
+ * Receives {@link VCardImportCheckpoint}s from {@link VCardEntryCommitter}. Set via
+ * {@link VCardEntryCommitter#setCheckpointListener(VCardParseProgress, VCardCheckpointListener)}.
+ * </p>
+ */
+public interface VCardCheckpointListener {
+    /**
+     * Called on the parsing thread right after a batch of entries is committed. Implementations
+     * are expected to persist the checkpoint, e.g. with
+     * {@link VCardImportCheckpoint#writeTo(java.io.OutputStream)}.
+     */
+    void onCheckpoint(VCardImportCheckpoint checkpoint);
+}
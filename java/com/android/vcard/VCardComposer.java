@@ -156,6 +156,9 @@ public class VCardComposer {
 
     private RawContactEntitlesInfoCallback mRawContactEntitlesInfoCallback;
 
+    // Lets vCards in one export share Base64 encoded photos.
+    private final VCardPhotoStore mPhotoStore = new VCardPhotoStore();
+
     private static final String[] sContactsProjection = new String[] {
         Contacts._ID,
     };
@@ -599,6 +602,7 @@ public class VCardComposer {
             return "";
         } else {
             final VCardBuilder builder = new VCardBuilder(mVCardType, mCharset);
+            builder.setPhotoStore(mPhotoStore);
             builder.appendNameProperties(contentValuesListMap.get(StructuredName.CONTENT_ITEM_TYPE))
                     .appendNickNames(contentValuesListMap.get(Nickname.CONTENT_ITEM_TYPE))
                     .appendPhones(contentValuesListMap.get(Phone.CONTENT_ITEM_TYPE),
@@ -621,6 +625,7 @@ public class VCardComposer {
 
     public void terminate() {
         closeCursorIfAppropriate();
+        mPhotoStore.clear();
         mTerminateCalled = true;
     }
 
@@ -44,11 +44,11 @@ import android.text.TextUtils;
 import android.util.Log;
 import android.util.Pair;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -64,26 +64,19 @@ import java.util.Map;
  * should contain them when it cannot convert vCard as a string to Android's
  * Contacts representation. Those raw properties should _not_ be used for
  * {@link #isIgnorable()}.
+ * <p>
+ * Lists returned from getters other than {@link #getPhotoList()} and {@link #getChildlen()}
+ * are read-only views of the entry. Methods modifying them throw
+ * {@link UnsupportedOperationException}, and each {@link List#get(int)} creates a new element
+ * object, so elements must not be compared by identity. Code which modified those lists must
+ * build its own copy instead.
+ * </p>
  */
 public class VCardEntry {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
 
     private static final int DEFAULT_ORGANIZATION_TYPE = Organization.TYPE_WORK;
 
-    private static final Map<String, Integer> sImMap = new HashMap<String, Integer>();
-
-    static {
-        sImMap.put(VCardConstants.PROPERTY_X_AIM, Im.PROTOCOL_AIM);
-        sImMap.put(VCardConstants.PROPERTY_X_MSN, Im.PROTOCOL_MSN);
-        sImMap.put(VCardConstants.PROPERTY_X_YAHOO, Im.PROTOCOL_YAHOO);
-        sImMap.put(VCardConstants.PROPERTY_X_ICQ, Im.PROTOCOL_ICQ);
-        sImMap.put(VCardConstants.PROPERTY_X_JABBER, Im.PROTOCOL_JABBER);
-        sImMap.put(VCardConstants.PROPERTY_X_SKYPE_USERNAME, Im.PROTOCOL_SKYPE);
-        sImMap.put(VCardConstants.PROPERTY_X_GOOGLE_TALK, Im.PROTOCOL_GOOGLE_TALK);
-        sImMap.put(VCardConstants.ImportOnly.PROPERTY_X_GOOGLE_TALK_WITH_SPACE,
-                Im.PROTOCOL_GOOGLE_TALK);
-    }
-
     public enum EntryLabel {
         NAME,
         PHONE,
@@ -979,6 +972,7 @@ public class VCardEntry {
         private final boolean mIsPrimary;
 
         private final byte[] mBytes;
+        private final Object mByteValueHandle;
 
         private Integer mHashCode = null;
 
@@ -986,15 +980,41 @@ public class VCardEntry {
             mFormat = format;
             mBytes = photoBytes;
             mIsPrimary = isPrimary;
+            mByteValueHandle = null;
+        }
+
+        /**
+         * Used for a photo decoded into a {@link VCardBinarySink}, which has no bytes but the
+         * handle the sink gave for them.
+         */
+        /* package */ PhotoData(String format, boolean isPrimary, Object byteValueHandle) {
+            mFormat = format;
+            mBytes = null;
+            mIsPrimary = isPrimary;
+            mByteValueHandle = byteValueHandle;
+        }
+
+        /**
+         * Uses the bytes in the store, so that the hash of them is not calculated again.
+         */
+        /* package */ PhotoData(String format, VCardPhotoStore.SharedPhoto photo,
+                boolean isPrimary) {
+            this(format, photo.bytes, isPrimary);
+            mHashCode = calculateHashCode(photo.byteSum);
         }
 
         @Override
         public void constructInsertOperation(List<ContentProviderOperation> operationList,
                 int backReferenceIndex) {
+            if (mBytes == null) {
+                // The bytes are in a VCardBinarySink, from which the caller has to store them.
+                return;
+            }
             final ContentProviderOperation.Builder builder = ContentProviderOperation
                     .newInsert(Data.CONTENT_URI);
             builder.withValueBackReference(Photo.RAW_CONTACT_ID, backReferenceIndex);
             builder.withValue(Data.MIMETYPE, Photo.CONTENT_ITEM_TYPE);
+            // Shared with the other entries when this comes from VCardPhotoStore.
             builder.withValue(Photo.PHOTO, mBytes);
             if (mIsPrimary) {
                 builder.withValue(Photo.IS_PRIMARY, 1);
@@ -1004,7 +1024,7 @@ public class VCardEntry {
 
         @Override
         public boolean isEmpty() {
-            return mBytes == null || mBytes.length == 0;
+            return (mBytes == null || mBytes.length == 0) && mByteValueHandle == null;
         }
 
         @Override
@@ -1018,7 +1038,9 @@ public class VCardEntry {
             PhotoData photoData = (PhotoData) obj;
             return (TextUtils.equals(mFormat, photoData.mFormat)
                     && Arrays.equals(mBytes, photoData.mBytes)
-                    && (mIsPrimary == photoData.mIsPrimary));
+                    && (mIsPrimary == photoData.mIsPrimary)
+                    && (mByteValueHandle == null ? photoData.mByteValueHandle == null
+                            : mByteValueHandle.equals(photoData.mByteValueHandle)));
         }
 
         @Override
@@ -1027,23 +1049,34 @@ public class VCardEntry {
                 return mHashCode;
             }
 
-            int hash = mFormat != null ? mFormat.hashCode() : 0;
-            hash = hash * 31;
+            int byteSum = 0;
             if (mBytes != null) {
                 for (byte b : mBytes) {
-                    hash += b;
+                    byteSum += b;
                 }
             }
+            mHashCode = calculateHashCode(byteSum);
+            return mHashCode;
+        }
 
+        private int calculateHashCode(int byteSum) {
+            int hash = mFormat != null ? mFormat.hashCode() : 0;
+            hash = hash * 31 + byteSum;
             hash = hash * 31 + (mIsPrimary ? 1231 : 1237);
-            mHashCode = hash;
+            if (mByteValueHandle != null) {
+                hash = hash * 31 + mByteValueHandle.hashCode();
+            }
             return hash;
         }
 
         @Override
         public String toString() {
-            return String.format("format: %s: size: %d, isPrimary: %s", mFormat, mBytes.length,
-                    mIsPrimary);
+            if (mBytes == null && mByteValueHandle != null) {
+                return String.format("format: %s: handle: %s, isPrimary: %s", mFormat,
+                        mByteValueHandle, mIsPrimary);
+            }
+            return String.format("format: %s: size: %d, isPrimary: %s", mFormat,
+                    (mBytes != null ? mBytes.length : 0), mIsPrimary);
         }
 
         @Override
@@ -1059,6 +1092,15 @@ public class VCardEntry {
             return mBytes;
         }
 
+        /**
+         * @return the handle {@link VCardBinarySink#getBinaryValueHandle(VCardProperty,
+         * java.io.OutputStream)} gave for the bytes of this photo, or null when the bytes are
+         * available via {@link #getBytes()}.
+         */
+        public Object getByteValueHandle() {
+            return mByteValueHandle;
+        }
+
         public boolean isPrimary() {
             return mIsPrimary;
         }
@@ -1539,17 +1581,17 @@ public class VCardEntry {
         public List<String> getDataList() { return mDataList; }
     }
 
+    // String slots of ORGANIZATION rows in mStore.
+    private static final int ORGANIZATION_SLOT_NAME = 0;
+    private static final int ORGANIZATION_SLOT_DEPARTMENT = 1;
+    private static final int ORGANIZATION_SLOT_TITLE = 2;
+    private static final int ORGANIZATION_SLOT_PHONETIC_NAME = 3;
+
     private final NameData mNameData = new NameData();
-    private List<PhoneData> mPhoneList;
-    private List<EmailData> mEmailList;
-    private List<PostalData> mPostalList;
-    private List<OrganizationData> mOrganizationList;
-    private List<ImData> mImList;
+    // Phones, emails, postal addresses, organizations, IMs, websites, SIP addresses, nicknames,
+    // and notes. Lists for them returned by getters are views over this.
+    private final VCardEntryStore mStore = new VCardEntryStore();
     private List<PhotoData> mPhotoList;
-    private List<WebsiteData> mWebsiteList;
-    private List<SipData> mSipList;
-    private List<NicknameData> mNicknameList;
-    private List<NoteData> mNoteList;
     private List<AndroidCustomData> mAndroidCustomDataList;
     private BirthdayData mBirthday;
     private AnniversaryData mAnniversary;
@@ -1589,16 +1631,16 @@ public class VCardEntry {
         iterator.onElement(mNameData);
         iterator.onElementGroupEnded();
 
-        iterateOneList(mPhoneList, iterator);
-        iterateOneList(mEmailList, iterator);
-        iterateOneList(mPostalList, iterator);
-        iterateOneList(mOrganizationList, iterator);
-        iterateOneList(mImList, iterator);
+        iterateOneList(getPhoneList(), iterator);
+        iterateOneList(getEmailList(), iterator);
+        iterateOneList(getPostalList(), iterator);
+        iterateOneList(getOrganizationList(), iterator);
+        iterateOneList(getImList(), iterator);
         iterateOneList(mPhotoList, iterator);
-        iterateOneList(mWebsiteList, iterator);
-        iterateOneList(mSipList, iterator);
-        iterateOneList(mNicknameList, iterator);
-        iterateOneList(mNoteList, iterator);
+        iterateOneList(getWebsiteList(), iterator);
+        iterateOneList(getSipList(), iterator);
+        iterateOneList(getNickNameList(), iterator);
+        iterateOneList(getNotes(), iterator);
         iterateOneList(mAndroidCustomDataList, iterator);
 
         if (mBirthday != null) {
@@ -1741,6 +1783,8 @@ public class VCardEntry {
 
     private final int mVCardType;
     private final Account mAccount;
+    private final VCardPhotoStore mPhotoStore;
+    private final VCardPhoneNumberCache mPhoneNumberCache;
 
     private List<VCardEntry> mChildren;
 
@@ -1760,78 +1804,95 @@ public class VCardEntry {
     }
 
     public VCardEntry(int vcardType, Account account) {
+        this(vcardType, account, null, null);
+    }
+
+    /**
+     * @param photoStore Store sharing photo bytes with the other entries of the same import.
+     * May be null.
+     * @param phoneNumberCache Cache sharing formatted phone numbers with the other entries of
+     * the same import. May be null.
+     */
+    /* package */ VCardEntry(int vcardType, Account account, VCardPhotoStore photoStore,
+            VCardPhoneNumberCache phoneNumberCache) {
         mVCardType = vcardType;
         mAccount = account;
+        mPhotoStore = photoStore;
+        mPhoneNumberCache = phoneNumberCache;
     }
 
     private void addPhone(int type, String data, String label, boolean isPrimary) {
-        if (mPhoneList == null) {
-            mPhoneList = new ArrayList<PhoneData>();
-        }
-        final StringBuilder builder = new StringBuilder();
         final String trimmed = data.trim();
-        final String formattedNumber;
+        String formattedNumber;
         if (type == Phone.TYPE_PAGER || VCardConfig.refrainPhoneNumberFormatting(mVCardType)) {
             formattedNumber = trimmed;
         } else {
-            // TODO: from the view of vCard spec these auto conversions should be removed.
-            // Note that some other codes (like the phone number formatter) or modules expect this
-            // auto conversion (bug 5178723), so just omitting this code won't be preferable enough
-            // (bug 4177894)
-            boolean hasPauseOrWait = false;
-            final int length = trimmed.length();
-            for (int i = 0; i < length; i++) {
-                char ch = trimmed.charAt(i);
-                // See RFC 3601 and docs for PhoneNumberUtils for more info.
-                if (ch == 'p' || ch == 'P') {
-                    builder.append(PhoneNumberUtils.PAUSE);
-                    hasPauseOrWait = true;
-                } else if (ch == 'w' || ch == 'W') {
-                    builder.append(PhoneNumberUtils.WAIT);
-                    hasPauseOrWait = true;
-                } else if (('0' <= ch && ch <= '9') || (i == 0 && ch == '+')) {
-                    builder.append(ch);
-                }
-            }
-            if (!hasPauseOrWait) {
-                final int formattingType = VCardUtils.getPhoneNumberFormat(mVCardType);
-                formattedNumber = PhoneNumberUtilsPort.formatNumber(
-                        builder.toString(), formattingType);
+            final int formattingType = VCardUtils.getPhoneNumberFormat(mVCardType);
+            if (mPhoneNumberCache == null) {
+                formattedNumber = formatPhoneNumber(trimmed, formattingType);
             } else {
-                formattedNumber = builder.toString();
+                formattedNumber = mPhoneNumberCache.get(trimmed, formattingType);
+                if (formattedNumber == null) {
+                    formattedNumber = formatPhoneNumber(trimmed, formattingType);
+                    mPhoneNumberCache.put(trimmed, formattingType, formattedNumber);
+                }
             }
         }
-        PhoneData phoneData = new PhoneData(formattedNumber, type, label, isPrimary);
-        mPhoneList.add(phoneData);
+        mStore.addRow(EntryLabel.PHONE, type, 0, isPrimary, formattedNumber, label);
     }
 
-    private void addSip(String sipData, int type, String label, boolean isPrimary) {
-        if (mSipList == null) {
-            mSipList = new ArrayList<SipData>();
+    private static String formatPhoneNumber(String trimmed, int formattingType) {
+        // TODO: from the view of vCard spec these auto conversions should be removed.
+        // Note that some other codes (like the phone number formatter) or modules expect this
+        // auto conversion (bug 5178723), so just omitting this code won't be preferable enough
+        // (bug 4177894)
+        final StringBuilder builder = new StringBuilder();
+        boolean hasPauseOrWait = false;
+        final int length = trimmed.length();
+        for (int i = 0; i < length; i++) {
+            char ch = trimmed.charAt(i);
+            // See RFC 3601 and docs for PhoneNumberUtils for more info.
+            if (ch == 'p' || ch == 'P') {
+                builder.append(PhoneNumberUtils.PAUSE);
+                hasPauseOrWait = true;
+            } else if (ch == 'w' || ch == 'W') {
+                builder.append(PhoneNumberUtils.WAIT);
+                hasPauseOrWait = true;
+            } else if (('0' <= ch && ch <= '9') || (i == 0 && ch == '+')) {
+                builder.append(ch);
+            }
+        }
+        if (!hasPauseOrWait) {
+            return PhoneNumberUtilsPort.formatNumber(builder.toString(), formattingType);
+        } else {
+            return builder.toString();
         }
-        mSipList.add(new SipData(sipData, type, label, isPrimary));
+    }
+
+    private void addSip(String sipData, int type, String label, boolean isPrimary) {
+        mStore.addRow(EntryLabel.SIP, type, 0, isPrimary, sipData, label);
     }
 
     private void addNickName(final String nickName) {
-        if (mNicknameList == null) {
-            mNicknameList = new ArrayList<NicknameData>();
-        }
-        mNicknameList.add(new NicknameData(nickName));
+        mStore.addRow(EntryLabel.NICKNAME, 0, 0, false, nickName);
     }
 
     private void addEmail(int type, String data, String label, boolean isPrimary) {
-        if (mEmailList == null) {
-            mEmailList = new ArrayList<EmailData>();
-        }
-        mEmailList.add(new EmailData(data, type, label, isPrimary));
+        mStore.addRow(EntryLabel.EMAIL, type, 0, isPrimary, data, label);
     }
 
     private void addPostal(int type, List<String> propValueList, String label, boolean isPrimary) {
-        if (mPostalList == null) {
-            mPostalList = new ArrayList<PostalData>(0);
+        // Same as PostalData.constructPostalData(): elements after the country are dropped.
+        final String[] values = new String[PostalData.ADDR_MAX_DATA_SIZE + 1];
+        int i = 0;
+        for (String addressElement : propValueList) {
+            if (i >= PostalData.ADDR_MAX_DATA_SIZE) {
+                break;
+            }
+            values[i++] = addressElement;
         }
-        mPostalList.add(PostalData.constructPostalData(propValueList, type, label, isPrimary,
-                mVCardType));
+        values[PostalData.ADDR_MAX_DATA_SIZE] = label;
+        mStore.addRow(EntryLabel.POSTAL_ADDRESS, type, 0, isPrimary, values);
     }
 
     /**
@@ -1840,11 +1901,9 @@ public class VCardEntry {
      */
     private void addNewOrganization(final String organizationName, final String departmentName,
             final String titleName, final String phoneticName, int type, final boolean isPrimary) {
-        if (mOrganizationList == null) {
-            mOrganizationList = new ArrayList<OrganizationData>();
-        }
-        mOrganizationList.add(new OrganizationData(organizationName, departmentName, titleName,
-                phoneticName, type, isPrimary));
+        // See ORGANIZATION_SLOT_*.
+        mStore.addRow(EntryLabel.ORGANIZATION, type, 0, isPrimary, organizationName,
+                departmentName, titleName, phoneticName);
     }
 
     private static final List<String> sEmptyList = Collections
@@ -1911,23 +1970,25 @@ public class VCardEntry {
             departmentName = builder.toString();
         }
         }
-        if (mOrganizationList == null) {
+        final int organizationCount = mStore.size(EntryLabel.ORGANIZATION);
+        if (organizationCount == 0) {
             // Create new first organization entry, with "null" title which may be
             // added via handleTitleValue().
             addNewOrganization(organizationName, departmentName, null, phoneticName, type,
                     isPrimary);
             return;
         }
-        for (OrganizationData organizationData : mOrganizationList) {
+        for (int i = 0; i < organizationCount; i++) {
+            final int row = mStore.getRow(EntryLabel.ORGANIZATION, i);
             // Not use TextUtils.isEmpty() since ORG was set but the elements might be empty.
             // e.g. "ORG;PREF:;" -> Both companyName and departmentName become empty but not null.
-            if (organizationData.mOrganizationName == null
-                    && organizationData.mDepartmentName == null) {
+            if (mStore.isNull(row, ORGANIZATION_SLOT_NAME)
+                    && mStore.isNull(row, ORGANIZATION_SLOT_DEPARTMENT)) {
                 // Probably the "TITLE" property comes before the "ORG" property via
                 // handleTitleLine().
-                organizationData.mOrganizationName = organizationName;
-                organizationData.mDepartmentName = departmentName;
-                organizationData.mIsPrimary = isPrimary;
+                mStore.setString(row, ORGANIZATION_SLOT_NAME, organizationName);
+                mStore.setString(row, ORGANIZATION_SLOT_DEPARTMENT, departmentName);
+                mStore.setPrimary(row, isPrimary);
                 return;
             }
         }
@@ -1944,15 +2005,17 @@ public class VCardEntry {
      * whose company name is set to null.
      */
     private void handleTitleValue(final String title) {
-        if (mOrganizationList == null) {
+        final int organizationCount = mStore.size(EntryLabel.ORGANIZATION);
+        if (organizationCount == 0) {
             // Create new first organization entry, with "null" other info, which may be
             // added via handleOrgValue().
             addNewOrganization(null, null, title, null, DEFAULT_ORGANIZATION_TYPE, false);
             return;
         }
-        for (OrganizationData organizationData : mOrganizationList) {
-            if (organizationData.mTitle == null) {
-                organizationData.mTitle = title;
+        for (int i = 0; i < organizationCount; i++) {
+            final int row = mStore.getRow(EntryLabel.ORGANIZATION, i);
+            if (mStore.isNull(row, ORGANIZATION_SLOT_TITLE)) {
+                mStore.setString(row, ORGANIZATION_SLOT_TITLE, title);
                 return;
             }
         }
@@ -1963,24 +2026,24 @@ public class VCardEntry {
 
     private void addIm(int protocol, String customProtocol, String propValue, int type,
             boolean isPrimary) {
-        if (mImList == null) {
-            mImList = new ArrayList<ImData>();
-        }
-        mImList.add(new ImData(protocol, customProtocol, propValue, type, isPrimary));
+        mStore.addRow(EntryLabel.IM, type, protocol, isPrimary, propValue, customProtocol);
     }
 
     private void addNote(final String note) {
-        if (mNoteList == null) {
-            mNoteList = new ArrayList<NoteData>(1);
-        }
-        mNoteList.add(new NoteData(note));
+        mStore.addRow(EntryLabel.NOTE, 0, 0, false, note);
     }
 
     private void addPhotoBytes(String formatName, byte[] photoBytes, boolean isPrimary) {
         if (mPhotoList == null) {
             mPhotoList = new ArrayList<PhotoData>(1);
         }
-        final PhotoData photoData = new PhotoData(formatName, photoBytes, isPrimary);
+        final PhotoData photoData;
+        if (mPhotoStore != null && photoBytes != null) {
+            photoData = new PhotoData(formatName, mPhotoStore.getSharedPhoto(photoBytes),
+                    isPrimary);
+        } else {
+            photoData = new PhotoData(formatName, photoBytes, isPrimary);
+        }
         mPhotoList.add(photoData);
     }
 
@@ -2130,34 +2193,40 @@ public class VCardEntry {
         byte[] propertyBytes = property.getByteValue();
 
         if ((propertyValueList == null || propertyValueList.size() == 0)
-                && propertyBytes == null) {
+                && propertyBytes == null && !property.isByteValueInSink()) {
             return;
         }
         final String propValue = (propertyValueList != null
                 ? listToString(propertyValueList).trim()
                 : null);
 
-        if (propertyName.equals(VCardConstants.PROPERTY_VERSION)) {
+        final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
+        switch (property.getNameToken()) {
+        case VCardPropertyNames.VERSION:
             // vCard version. Ignore this.
-        } else if (propertyName.equals(VCardConstants.PROPERTY_FN)) {
+            break;
+        case VCardPropertyNames.FN:
             mNameData.mFormatted = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_NAME)) {
+            break;
+        case VCardPropertyNames.NAME:
             // Only in vCard 3.0. Use this if FN doesn't exist though it is
             // required in vCard 3.0.
             if (TextUtils.isEmpty(mNameData.mFormatted)) {
                 mNameData.mFormatted = propValue;
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_N)) {
+            break;
+        case VCardPropertyNames.N:
             handleNProperty(propertyValueList, paramMap);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_SORT_STRING)) {
+            break;
+        case VCardPropertyNames.SORT_STRING:
             mNameData.mSortString = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_NICKNAME)
-                || propertyName.equals(VCardConstants.ImportOnly.PROPERTY_X_NICKNAME)) {
+            break;
+        case VCardPropertyNames.NICKNAME:
+        case VCardPropertyNames.X_NICKNAME:
             addNickName(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_SOUND)) {
-            Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null
-                    && typeCollection.contains(VCardConstants.PARAM_TYPE_X_IRMC_N)) {
+            break;
+        case VCardPropertyNames.SOUND:
+            if ((VCardParamTypes.parse(typeCollection) & VCardParamTypes.X_IRMC_N) != 0) {
                 // As of 2009-10-08, Parser side does not split a property value into separated
                 // values using ';' (in other words, propValueList.size() == 1),
                 // which is correct behavior from the view of vCard 2.1.
@@ -2168,252 +2237,334 @@ public class VCardEntry {
             } else {
                 // Ignore this field since Android cannot understand what it is.
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ADR)) {
-            boolean valuesAreAllEmpty = true;
-            for (String value : propertyValueList) {
-                if (!TextUtils.isEmpty(value)) {
-                    valuesAreAllEmpty = false;
-                    break;
-                }
-            }
-            if (valuesAreAllEmpty) {
-                return;
-            }
-
-            int type = -1;
-            String label = null;
-            boolean isPrimary = false;
-            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (final String typeStringOrg : typeCollection) {
-                    final String typeStringUpperCase = typeStringOrg.toUpperCase();
-                    if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_PREF)) {
-                        isPrimary = true;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_HOME)) {
-                        type = StructuredPostal.TYPE_HOME;
-                        label = null;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_WORK)
-                            || typeStringUpperCase
-                                    .equalsIgnoreCase(VCardConstants.PARAM_EXTRA_TYPE_COMPANY)) {
-                        // "COMPANY" seems emitted by Windows Mobile, which is not
-                        // specifically supported by vCard 2.1. We assume this is same
-                        // as "WORK".
-                        type = StructuredPostal.TYPE_WORK;
-                        label = null;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_ADR_TYPE_PARCEL)
-                            || typeStringUpperCase.equals(VCardConstants.PARAM_ADR_TYPE_DOM)
-                            || typeStringUpperCase.equals(VCardConstants.PARAM_ADR_TYPE_INTL)) {
-                        // We do not have any appropriate way to store this information.
-                    } else if (type < 0) { // If no other type is specified before.
-                        type = StructuredPostal.TYPE_CUSTOM;
-                        if (typeStringUpperCase.startsWith("X-")) { // If X- or x-
-                            label = typeStringOrg.substring(2);
-                        } else {
-                            label = typeStringOrg;
-                        }
-                    }
-                }
-            }
-            // We use "HOME" as default
-            if (type < 0) {
-                type = StructuredPostal.TYPE_HOME;
-            }
-
-            addPostal(type, propertyValueList, label, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_EMAIL)) {
-            int type = -1;
-            String label = null;
-            boolean isPrimary = false;
-            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (final String typeStringOrg : typeCollection) {
-                    final String typeStringUpperCase = typeStringOrg.toUpperCase();
-                    if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_PREF)) {
-                        isPrimary = true;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_HOME)) {
-                        type = Email.TYPE_HOME;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_WORK)) {
-                        type = Email.TYPE_WORK;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_CELL)) {
-                        type = Email.TYPE_MOBILE;
-                    } else if (type < 0) { // If no other type is specified before
-                        if (typeStringUpperCase.startsWith("X-")) { // If X- or x-
-                            label = typeStringOrg.substring(2);
-                        } else {
-                            label = typeStringOrg;
-                        }
-                        type = Email.TYPE_CUSTOM;
-                    }
-                }
-            }
-            if (type < 0) {
-                type = Email.TYPE_OTHER;
-            }
-            addEmail(type, propValue, label, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ORG)) {
+            break;
+        case VCardPropertyNames.ADR:
+            handleAdrProperty(propertyValueList, typeCollection);
+            break;
+        case VCardPropertyNames.EMAIL:
+            handleEmailProperty(propValue, typeCollection);
+            break;
+        case VCardPropertyNames.ORG: {
             // vCard specification does not specify other types.
             final int type = Organization.TYPE_WORK;
-            boolean isPrimary = false;
-            Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (String typeString : typeCollection) {
-                    if (typeString.equals(VCardConstants.PARAM_TYPE_PREF)) {
-                        isPrimary = true;
-                    }
-                }
-            }
+            final boolean isPrimary =
+                    (VCardParamTypes.parse(typeCollection) & VCardParamTypes.PREF) != 0;
             handleOrgValue(type, propertyValueList, paramMap, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_TITLE)) {
+            break;
+        }
+        case VCardPropertyNames.TITLE:
             handleTitleValue(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ROLE)) {
+            break;
+        case VCardPropertyNames.ROLE:
             // This conflicts with TITLE. Ignore for now...
             // handleTitleValue(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_PHOTO)
-                || propertyName.equals(VCardConstants.PROPERTY_LOGO)) {
-            Collection<String> paramMapValue = paramMap.get("VALUE");
-            if (paramMapValue != null && paramMapValue.contains("URL")) {
-                // Currently we do not have appropriate example for testing this case.
-            } else {
-                final Collection<String> typeCollection = paramMap.get("TYPE");
-                String formatName = null;
-                boolean isPrimary = false;
-                if (typeCollection != null) {
-                    for (String typeValue : typeCollection) {
-                        if (VCardConstants.PARAM_TYPE_PREF.equals(typeValue)) {
-                            isPrimary = true;
-                        } else if (formatName == null) {
-                            formatName = typeValue;
-                        }
-                    }
-                }
-                addPhotoBytes(formatName, propertyBytes, isPrimary);
-            }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_TEL)) {
-            String phoneNumber = null;
-            boolean isSip = false;
-            if (VCardConfig.isVersion40(mVCardType)) {
-                // Given propValue is in URI format, not in phone number format used until
-                // vCard 3.0.
-                if (propValue.startsWith("sip:")) {
-                    isSip = true;
-                } else if (propValue.startsWith("tel:")) {
-                    phoneNumber = propValue.substring(4);
-                } else {
-                    // We don't know appropriate way to handle the other schemas. Also,
-                    // we may still have non-URI phone number. To keep given data as much as
-                    // we can, just save original value here.
-                    phoneNumber = propValue;
-                }
-            } else {
-                phoneNumber = propValue;
-            }
-
-            if (isSip) {
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-                handleSipCase(propValue, typeCollection);
-            } else {
-                if (propValue.length() == 0) {
-                    return;
-                }
-
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-                final Object typeObject = VCardUtils.getPhoneTypeFromStrings(typeCollection,
-                        phoneNumber);
-                final int type;
-                final String label;
-                if (typeObject instanceof Integer) {
-                    type = (Integer) typeObject;
-                    label = null;
-                } else {
-                    type = Phone.TYPE_CUSTOM;
-                    label = typeObject.toString();
-                }
-
-                final boolean isPrimary;
-                if (typeCollection != null &&
-                        typeCollection.contains(VCardConstants.PARAM_TYPE_PREF)) {
-                    isPrimary = true;
-                } else {
-                    isPrimary = false;
-                }
-
-                addPhone(type, phoneNumber, label, isPrimary);
-            }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_SKYPE_PSTNNUMBER)) {
+            break;
+        case VCardPropertyNames.PHOTO:
+        case VCardPropertyNames.LOGO:
+            handlePhotoProperty(propertyBytes, property.getByteValueHandle(), paramMap,
+                    typeCollection);
+            break;
+        case VCardPropertyNames.TEL:
+            handleTelProperty(propValue, typeCollection);
+            break;
+        case VCardPropertyNames.X_SKYPE_PSTNNUMBER: {
             // The phone number available via Skype.
-            Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
             final int type = Phone.TYPE_OTHER;
-            final boolean isPrimary;
-            if (typeCollection != null
-                    && typeCollection.contains(VCardConstants.PARAM_TYPE_PREF)) {
-                isPrimary = true;
-            } else {
-                isPrimary = false;
-            }
+            final boolean isPrimary =
+                    (VCardParamTypes.parse(typeCollection) & VCardParamTypes.PREF) != 0;
             addPhone(type, propValue, null, isPrimary);
-        } else if (sImMap.containsKey(propertyName)) {
-            final int protocol = sImMap.get(propertyName);
-            boolean isPrimary = false;
-            int type = -1;
-            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (String typeString : typeCollection) {
-                    if (typeString.equals(VCardConstants.PARAM_TYPE_PREF)) {
-                        isPrimary = true;
-                    } else if (type < 0) {
-                        if (typeString.equalsIgnoreCase(VCardConstants.PARAM_TYPE_HOME)) {
-                            type = Im.TYPE_HOME;
-                        } else if (typeString.equalsIgnoreCase(VCardConstants.PARAM_TYPE_WORK)) {
-                            type = Im.TYPE_WORK;
-                        }
-                    }
-                }
-            }
-            if (type < 0) {
-                type = Im.TYPE_HOME;
-            }
-            addIm(protocol, null, propValue, type, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_NOTE)) {
+            break;
+        }
+        case VCardPropertyNames.X_AIM:
+            handleImProperty(Im.PROTOCOL_AIM, propValue, typeCollection);
+            break;
+        case VCardPropertyNames.X_MSN:
+            handleImProperty(Im.PROTOCOL_MSN, propValue, typeCollection);
+            break;
+        case VCardPropertyNames.X_YAHOO:
+            handleImProperty(Im.PROTOCOL_YAHOO, propValue, typeCollection);
+            break;
+        case VCardPropertyNames.X_ICQ:
+            handleImProperty(Im.PROTOCOL_ICQ, propValue, typeCollection);
+            break;
+        case VCardPropertyNames.X_JABBER:
+            handleImProperty(Im.PROTOCOL_JABBER, propValue, typeCollection);
+            break;
+        case VCardPropertyNames.X_SKYPE_USERNAME:
+            handleImProperty(Im.PROTOCOL_SKYPE, propValue, typeCollection);
+            break;
+        case VCardPropertyNames.X_GOOGLE_TALK:
+        case VCardPropertyNames.X_GOOGLE_TALK_WITH_SPACE:
+            handleImProperty(Im.PROTOCOL_GOOGLE_TALK, propValue, typeCollection);
+            break;
+        case VCardPropertyNames.NOTE:
             addNote(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_URL)) {
-            if (mWebsiteList == null) {
-                mWebsiteList = new ArrayList<WebsiteData>(1);
-            }
-            mWebsiteList.add(new WebsiteData(propValue));
-        } else if (propertyName.equals(VCardConstants.PROPERTY_BDAY)) {
+            break;
+        case VCardPropertyNames.URL:
+            mStore.addRow(EntryLabel.WEBSITE, 0, 0, false, propValue);
+            break;
+        case VCardPropertyNames.BDAY:
             mBirthday = new BirthdayData(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ANNIVERSARY)) {
+            break;
+        case VCardPropertyNames.ANNIVERSARY:
             mAnniversary = new AnniversaryData(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_PHONETIC_FIRST_NAME)) {
+            break;
+        case VCardPropertyNames.X_PHONETIC_FIRST_NAME:
             mNameData.mPhoneticGiven = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_PHONETIC_MIDDLE_NAME)) {
+            break;
+        case VCardPropertyNames.X_PHONETIC_MIDDLE_NAME:
             mNameData.mPhoneticMiddle = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_PHONETIC_LAST_NAME)) {
+            break;
+        case VCardPropertyNames.X_PHONETIC_LAST_NAME:
             mNameData.mPhoneticFamily = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_IMPP)) {
+            break;
+        case VCardPropertyNames.IMPP:
             // See also RFC 4770 (for vCard 3.0)
             if (propValue.startsWith("sip:")) {
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
                 handleSipCase(propValue, typeCollection);
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_SIP)) {
+            break;
+        case VCardPropertyNames.X_SIP:
             if (!TextUtils.isEmpty(propValue)) {
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
                 handleSipCase(propValue, typeCollection);
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_ANDROID_CUSTOM)) {
+            break;
+        case VCardPropertyNames.X_ANDROID_CUSTOM: {
             final List<String> customPropertyList = VCardUtils.constructListFromValue(propValue,
                     mVCardType);
             handleAndroidCustomProperty(customPropertyList);
-        } else if (propertyName.toUpperCase().startsWith("X-")) {
-            // Catch all for X- properties. The caller can decide what to do with these.
-            if (mUnknownXData == null) {
-                mUnknownXData = new ArrayList<Pair<String, String>>();
+            break;
+        }
+        default:
+            if (VCardParamTypes.isExtension(propertyName)) {
+                // Catch all for X- properties. The caller can decide what to do with these.
+                if (mUnknownXData == null) {
+                    mUnknownXData = new ArrayList<Pair<String, String>>();
+                }
+                mUnknownXData.add(new Pair<String, String>(propertyName, propValue));
+            }
+            break;
+        }
+    }
+
+    private void handleAdrProperty(List<String> propertyValueList,
+            Collection<String> typeCollection) {
+        boolean valuesAreAllEmpty = true;
+        for (String value : propertyValueList) {
+            if (!TextUtils.isEmpty(value)) {
+                valuesAreAllEmpty = false;
+                break;
+            }
+        }
+        if (valuesAreAllEmpty) {
+            return;
+        }
+
+        final int types = VCardParamTypes.parse(typeCollection);
+        final boolean isPrimary = (types & VCardParamTypes.PREF) != 0;
+        final int typeBits = types
+                & (VCardParamTypes.HOME | VCardParamTypes.WORK | VCardParamTypes.COMPANY);
+        int type = -1;
+        String label = null;
+        if (VCardParamTypes.containsOnly(typeCollection, types, typeBits | VCardParamTypes.PREF
+                | VCardParamTypes.PARCEL | VCardParamTypes.DOM | VCardParamTypes.INTL)
+                && Integer.bitCount(typeBits) <= 1) {
+            // No label is needed, and at most one type is given.
+            if (typeBits == VCardParamTypes.HOME) {
+                type = StructuredPostal.TYPE_HOME;
+            } else if (typeBits != 0) {
+                type = StructuredPostal.TYPE_WORK;
             }
-            mUnknownXData.add(new Pair<String, String>(propertyName, propValue));
         } else {
+            for (final String typeStringOrg : typeCollection) {
+                switch (VCardParamTypes.getType(typeStringOrg)) {
+                case VCardParamTypes.HOME:
+                    type = StructuredPostal.TYPE_HOME;
+                    label = null;
+                    break;
+                case VCardParamTypes.WORK:
+                case VCardParamTypes.COMPANY:
+                    // "COMPANY" seems emitted by Windows Mobile, which is not
+                    // specifically supported by vCard 2.1. We assume this is same
+                    // as "WORK".
+                    type = StructuredPostal.TYPE_WORK;
+                    label = null;
+                    break;
+                case VCardParamTypes.PREF:  // isPrimary is set above.
+                    break;
+                case VCardParamTypes.PARCEL:
+                case VCardParamTypes.DOM:
+                case VCardParamTypes.INTL:
+                    // We do not have any appropriate way to store this information.
+                    break;
+                default:
+                    if (type < 0) { // If no other type is specified before.
+                        type = StructuredPostal.TYPE_CUSTOM;
+                        label = getCustomLabel(typeStringOrg);
+                    }
+                    break;
+                }
+            }
+        }
+        // We use "HOME" as default
+        if (type < 0) {
+            type = StructuredPostal.TYPE_HOME;
+        }
+
+        addPostal(type, propertyValueList, label, isPrimary);
+    }
+
+    private void handleEmailProperty(String propValue, Collection<String> typeCollection) {
+        final int types = VCardParamTypes.parse(typeCollection);
+        final boolean isPrimary = (types & VCardParamTypes.PREF) != 0;
+        final int typeBits = types
+                & (VCardParamTypes.HOME | VCardParamTypes.WORK | VCardParamTypes.CELL);
+        int type = -1;
+        String label = null;
+        if (VCardParamTypes.containsOnly(typeCollection, types, typeBits | VCardParamTypes.PREF)
+                && Integer.bitCount(typeBits) <= 1) {
+            // No label is needed, and at most one type is given.
+            if (typeBits == VCardParamTypes.HOME) {
+                type = Email.TYPE_HOME;
+            } else if (typeBits == VCardParamTypes.WORK) {
+                type = Email.TYPE_WORK;
+            } else if (typeBits == VCardParamTypes.CELL) {
+                type = Email.TYPE_MOBILE;
+            }
+        } else {
+            for (final String typeStringOrg : typeCollection) {
+                switch (VCardParamTypes.getType(typeStringOrg)) {
+                case VCardParamTypes.PREF:  // isPrimary is set above.
+                    break;
+                case VCardParamTypes.HOME:
+                    type = Email.TYPE_HOME;
+                    break;
+                case VCardParamTypes.WORK:
+                    type = Email.TYPE_WORK;
+                    break;
+                case VCardParamTypes.CELL:
+                    type = Email.TYPE_MOBILE;
+                    break;
+                default:
+                    if (type < 0) { // If no other type is specified before
+                        label = getCustomLabel(typeStringOrg);
+                        type = Email.TYPE_CUSTOM;
+                    }
+                    break;
+                }
+            }
+        }
+        if (type < 0) {
+            type = Email.TYPE_OTHER;
+        }
+        addEmail(type, propValue, label, isPrimary);
+    }
+
+    private void handlePhotoProperty(byte[] propertyBytes, Object byteValueHandle,
+            Map<String, Collection<String>> paramMap, Collection<String> typeCollection) {
+        Collection<String> paramMapValue = paramMap.get("VALUE");
+        if (paramMapValue != null && paramMapValue.contains("URL")) {
+            // Currently we do not have appropriate example for testing this case.
+            return;
+        }
+        String formatName = null;
+        boolean isPrimary = false;
+        if (typeCollection != null) {
+            for (String typeValue : typeCollection) {
+                if (VCardParamTypes.getType(typeValue) == VCardParamTypes.PREF) {
+                    isPrimary = true;
+                } else if (formatName == null) {
+                    formatName = typeValue;
+                }
+            }
+        }
+        if (propertyBytes == null && byteValueHandle != null) {
+            if (mPhotoList == null) {
+                mPhotoList = new ArrayList<PhotoData>(1);
+            }
+            mPhotoList.add(new PhotoData(formatName, isPrimary, byteValueHandle));
+        } else {
+            addPhotoBytes(formatName, propertyBytes, isPrimary);
+        }
+    }
+
+    private void handleTelProperty(String propValue, Collection<String> typeCollection) {
+        String phoneNumber = null;
+        boolean isSip = false;
+        if (VCardConfig.isVersion40(mVCardType)) {
+            // Given propValue is in URI format, not in phone number format used until
+            // vCard 3.0.
+            if (propValue.startsWith("sip:")) {
+                isSip = true;
+            } else if (propValue.startsWith("tel:")) {
+                phoneNumber = propValue.substring(4);
+            } else {
+                // We don't know appropriate way to handle the other schemas. Also,
+                // we may still have non-URI phone number. To keep given data as much as
+                // we can, just save original value here.
+                phoneNumber = propValue;
+            }
+        } else {
+            phoneNumber = propValue;
+        }
+
+        if (isSip) {
+            handleSipCase(propValue, typeCollection);
+            return;
+        }
+        if (propValue.length() == 0) {
+            return;
+        }
+
+        final Object typeObject = VCardUtils.getPhoneTypeFromStrings(typeCollection,
+                phoneNumber);
+        final int type;
+        final String label;
+        if (typeObject instanceof Integer) {
+            type = (Integer) typeObject;
+            label = null;
+        } else {
+            type = Phone.TYPE_CUSTOM;
+            label = typeObject.toString();
+        }
+        final boolean isPrimary =
+                (VCardParamTypes.parse(typeCollection) & VCardParamTypes.PREF) != 0;
+        addPhone(type, phoneNumber, label, isPrimary);
+    }
+
+    private void handleImProperty(int protocol, String propValue,
+            Collection<String> typeCollection) {
+        final int types = VCardParamTypes.parse(typeCollection);
+        final boolean isPrimary = (types & VCardParamTypes.PREF) != 0;
+        final int typeBits = types & (VCardParamTypes.HOME | VCardParamTypes.WORK);
+        int type = -1;
+        if (typeBits == VCardParamTypes.WORK) {
+            type = Im.TYPE_WORK;
+        } else if (typeBits != 0 && typeBits != VCardParamTypes.HOME) {
+            // Both are given. The first one is used.
+            for (String typeString : typeCollection) {
+                final int paramType = VCardParamTypes.getType(typeString);
+                if (paramType == VCardParamTypes.HOME) {
+                    type = Im.TYPE_HOME;
+                    break;
+                } else if (paramType == VCardParamTypes.WORK) {
+                    type = Im.TYPE_WORK;
+                    break;
+                }
+            }
         }
-        // Be careful when adding some logic here, as some blocks above may use "return".
+        if (type < 0) {
+            type = Im.TYPE_HOME;
+        }
+        addIm(protocol, null, propValue, type, isPrimary);
+    }
+
+    /**
+     * @return the label for an unknown TYPE value, without "X-" at the beginning.
+     */
+    private static String getCustomLabel(String typeStringOrg) {
+        return (VCardParamTypes.isExtension(typeStringOrg) ? typeStringOrg.substring(2)
+                : typeStringOrg);
     }
 
     /**
@@ -2431,25 +2582,36 @@ public class VCardEntry {
             }
         }
 
+        final int types = VCardParamTypes.parse(typeCollection);
+        final boolean isPrimary = (types & VCardParamTypes.PREF) != 0;
+        final int typeBits = types & (VCardParamTypes.HOME | VCardParamTypes.WORK);
         int type = -1;
         String label = null;
-        boolean isPrimary = false;
-        if (typeCollection != null) {
+        if (VCardParamTypes.containsOnly(typeCollection, types, typeBits | VCardParamTypes.PREF)
+                && Integer.bitCount(typeBits) <= 1) {
+            // No label is needed, and at most one type is given.
+            if (typeBits == VCardParamTypes.HOME) {
+                type = SipAddress.TYPE_HOME;
+            } else if (typeBits == VCardParamTypes.WORK) {
+                type = SipAddress.TYPE_WORK;
+            }
+        } else {
             for (final String typeStringOrg : typeCollection) {
-                final String typeStringUpperCase = typeStringOrg.toUpperCase();
-                if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_PREF)) {
-                    isPrimary = true;
-                } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_HOME)) {
+                switch (VCardParamTypes.getType(typeStringOrg)) {
+                case VCardParamTypes.PREF:  // isPrimary is set above.
+                    break;
+                case VCardParamTypes.HOME:
                     type = SipAddress.TYPE_HOME;
-                } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_WORK)) {
+                    break;
+                case VCardParamTypes.WORK:
                     type = SipAddress.TYPE_WORK;
-                } else if (type < 0) { // If no other type is specified before
-                    if (typeStringUpperCase.startsWith("X-")) { // If X- or x-
-                        label = typeStringOrg.substring(2);
-                    } else {
-                        label = typeStringOrg;
+                    break;
+                default:
+                    if (type < 0) { // If no other type is specified before
+                        label = getCustomLabel(typeStringOrg);
+                        type = SipAddress.TYPE_CUSTOM;
                     }
-                    type = SipAddress.TYPE_CUSTOM;
+                    break;
                 }
             }
         }
@@ -2488,14 +2650,14 @@ public class VCardEntry {
         } else if (!mNameData.emptyPhoneticStructuredName()) {
             displayName = VCardUtils.constructNameFromElements(mVCardType,
                     mNameData.mPhoneticFamily, mNameData.mPhoneticMiddle, mNameData.mPhoneticGiven);
-        } else if (mEmailList != null && mEmailList.size() > 0) {
-            displayName = mEmailList.get(0).mAddress;
-        } else if (mPhoneList != null && mPhoneList.size() > 0) {
-            displayName = mPhoneList.get(0).mNumber;
-        } else if (mPostalList != null && mPostalList.size() > 0) {
-            displayName = mPostalList.get(0).getFormattedAddress(mVCardType);
-        } else if (mOrganizationList != null && mOrganizationList.size() > 0) {
-            displayName = mOrganizationList.get(0).getFormattedString();
+        } else if (mStore.size(EntryLabel.EMAIL) > 0) {
+            displayName = mStore.getString(mStore.getRow(EntryLabel.EMAIL, 0), 0);
+        } else if (mStore.size(EntryLabel.PHONE) > 0) {
+            displayName = mStore.getString(mStore.getRow(EntryLabel.PHONE, 0), 0);
+        } else if (mStore.size(EntryLabel.POSTAL_ADDRESS) > 0) {
+            displayName = getPostalList().get(0).getFormattedAddress(mVCardType);
+        } else if (mStore.size(EntryLabel.ORGANIZATION) > 0) {
+            displayName = getOrganizationList().get(0).getFormattedString();
         }
         if (displayName == null) {
             displayName = "";
@@ -2508,6 +2670,7 @@ public class VCardEntry {
      */
     public void consolidateFields() {
         mNameData.displayName = constructDisplayName();
+        mStore.trimToSize();
     }
 
     /**
@@ -2602,44 +2765,284 @@ public class VCardEntry {
         return mNameData;
     }
 
+    /**
+     * Read-only list of the elements of one {@link EntryLabel} in {@link #mStore}. Elements are
+     * created on each access instead of being kept along with the entry.
+     */
+    private abstract class StoredElementList<T extends EntryElement> extends AbstractList<T> {
+        private final EntryLabel mLabel;
+
+        // The index (upper 32 bits) and the row (lower 32 bits) of the last element looked up,
+        // which makes iterating over the list linear. One volatile field, so that threads
+        // reading the same list never combine the index of one lookup with the row of another.
+        private volatile long mLastLookup = -1L;
+
+        public StoredElementList(EntryLabel label) {
+            mLabel = label;
+        }
+
+        @Override
+        public T get(int index) {
+            final long lastLookup = mLastLookup;
+            final int row = mStore.getRow(mLabel, index, (int) (lastLookup >> 32),
+                    (int) lastLookup);
+            mLastLookup = ((long) index << 32) | (row & 0xffffffffL);
+            return createElement(row);
+        }
+
+        @Override
+        public int size() {
+            return mStore.size(mLabel);
+        }
+
+        protected abstract T createElement(int row);
+    }
+
+    /**
+     * @return the nicknames, or null when there is none. Read-only; see the class comment.
+     */
     public final List<NicknameData> getNickNameList() {
-        return mNicknameList;
+        if (mStore.size(EntryLabel.NICKNAME) == 0) {
+            return null;
+        }
+        return new StoredElementList<NicknameData>(EntryLabel.NICKNAME) {
+            @Override
+            protected NicknameData createElement(int row) {
+                return new NicknameData(mStore.getString(row, 0));
+            }
+        };
     }
 
     public final String getBirthday() {
         return mBirthday != null ? mBirthday.mBirthday : null;
     }
 
+    /**
+     * @return the notes, or null when there is none. Read-only; see the class comment.
+     */
     public final List<NoteData> getNotes() {
-        return mNoteList;
+        if (mStore.size(EntryLabel.NOTE) == 0) {
+            return null;
+        }
+        return new StoredElementList<NoteData>(EntryLabel.NOTE) {
+            @Override
+            protected NoteData createElement(int row) {
+                return new NoteData(mStore.getString(row, 0));
+            }
+        };
     }
 
+    /**
+     * @return the phone numbers, or null when there is none. Read-only; see the class comment.
+     */
     public final List<PhoneData> getPhoneList() {
-        return mPhoneList;
+        if (mStore.size(EntryLabel.PHONE) == 0) {
+            return null;
+        }
+        return new StoredElementList<PhoneData>(EntryLabel.PHONE) {
+            @Override
+            protected PhoneData createElement(int row) {
+                return new PhoneData(mStore.getString(row, 0), mStore.getType(row),
+                        mStore.getString(row, 1), mStore.isPrimary(row));
+            }
+        };
     }
 
+    /**
+     * @return the email addresses, or null when there is none. Read-only; see the class comment.
+     */
     public final List<EmailData> getEmailList() {
-        return mEmailList;
+        if (mStore.size(EntryLabel.EMAIL) == 0) {
+            return null;
+        }
+        return new StoredElementList<EmailData>(EntryLabel.EMAIL) {
+            @Override
+            protected EmailData createElement(int row) {
+                return new EmailData(mStore.getString(row, 0), mStore.getType(row),
+                        mStore.getString(row, 1), mStore.isPrimary(row));
+            }
+        };
     }
 
+    /**
+     * @return the postal addresses, or null when there is none. Read-only; see the class comment.
+     */
     public final List<PostalData> getPostalList() {
-        return mPostalList;
+        if (mStore.size(EntryLabel.POSTAL_ADDRESS) == 0) {
+            return null;
+        }
+        return new StoredElementList<PostalData>(EntryLabel.POSTAL_ADDRESS) {
+            @Override
+            protected PostalData createElement(int row) {
+                return new PostalData(mStore.getString(row, 0), mStore.getString(row, 1),
+                        mStore.getString(row, 2), mStore.getString(row, 3),
+                        mStore.getString(row, 4), mStore.getString(row, 5),
+                        mStore.getString(row, 6), mStore.getType(row),
+                        mStore.getString(row, PostalData.ADDR_MAX_DATA_SIZE),
+                        mStore.isPrimary(row), mVCardType);
+            }
+        };
     }
 
+    /**
+     * @return the organizations, or null when there is none. Read-only; see the class comment.
+     */
     public final List<OrganizationData> getOrganizationList() {
-        return mOrganizationList;
+        if (mStore.size(EntryLabel.ORGANIZATION) == 0) {
+            return null;
+        }
+        return new StoredElementList<OrganizationData>(EntryLabel.ORGANIZATION) {
+            @Override
+            protected OrganizationData createElement(int row) {
+                return new OrganizationData(mStore.getString(row, ORGANIZATION_SLOT_NAME),
+                        mStore.getString(row, ORGANIZATION_SLOT_DEPARTMENT),
+                        mStore.getString(row, ORGANIZATION_SLOT_TITLE),
+                        mStore.getString(row, ORGANIZATION_SLOT_PHONETIC_NAME),
+                        mStore.getType(row), mStore.isPrimary(row));
+            }
+        };
     }
 
+    /**
+     * @return the IM addresses, or null when there is none. Read-only; see the class comment.
+     */
     public final List<ImData> getImList() {
-        return mImList;
+        if (mStore.size(EntryLabel.IM) == 0) {
+            return null;
+        }
+        return new StoredElementList<ImData>(EntryLabel.IM) {
+            @Override
+            protected ImData createElement(int row) {
+                return new ImData(mStore.getAuxValue(row), mStore.getString(row, 1),
+                        mStore.getString(row, 0), mStore.getType(row), mStore.isPrimary(row));
+            }
+        };
     }
 
     public final List<PhotoData> getPhotoList() {
         return mPhotoList;
     }
 
+    /**
+     * @return the websites, or null when there is none. Read-only; see the class comment.
+     */
     public final List<WebsiteData> getWebsiteList() {
-        return mWebsiteList;
+        if (mStore.size(EntryLabel.WEBSITE) == 0) {
+            return null;
+        }
+        return new StoredElementList<WebsiteData>(EntryLabel.WEBSITE) {
+            @Override
+            protected WebsiteData createElement(int row) {
+                return new WebsiteData(mStore.getString(row, 0));
+            }
+        };
+    }
+
+    private List<SipData> getSipList() {
+        if (mStore.size(EntryLabel.SIP) == 0) {
+            return null;
+        }
+        return new StoredElementList<SipData>(EntryLabel.SIP) {
+            @Override
+            protected SipData createElement(int row) {
+                return new SipData(mStore.getString(row, 0), mStore.getType(row),
+                        mStore.getString(row, 1), mStore.isPrimary(row));
+            }
+        };
+    }
+
+    private List<? extends EntryElement> getStoredList(EntryLabel label) {
+        switch (label) {
+        case PHONE:
+            return getPhoneList();
+        case EMAIL:
+            return getEmailList();
+        case POSTAL_ADDRESS:
+            return getPostalList();
+        case ORGANIZATION:
+            return getOrganizationList();
+        case IM:
+            return getImList();
+        case WEBSITE:
+            return getWebsiteList();
+        case SIP:
+            return getSipList();
+        case NICKNAME:
+            return getNickNameList();
+        case NOTE:
+            return getNotes();
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Adds the elements of the other entry which are not in this entry yet. Used for merging
+     * duplicated entries, so the name and the children of the other entry are not merged.
+     */
+    /* package */ void addMissingElements(VCardEntry other) {
+        for (EntryLabel label : EntryLabel.values()) {
+            final List<? extends EntryElement> otherList = other.getStoredList(label);
+            if (otherList == null) {
+                continue;
+            }
+            // A view of the rows in mStore, so it also sees the rows copied below.
+            List<? extends EntryElement> list = getStoredList(label);
+            int otherRow = -1;
+            for (int i = 0; i < otherList.size(); i++) {
+                otherRow = other.mStore.getRow(label, i, i - 1, otherRow);
+                if (list == null || !list.contains(otherList.get(i))) {
+                    mStore.copyRow(other.mStore, otherRow);
+                    if (list == null) {
+                        list = getStoredList(label);
+                    }
+                }
+            }
+        }
+        mStore.trimToSize();
+
+        if (other.mPhotoList != null) {
+            for (PhotoData photoData : other.mPhotoList) {
+                if (mPhotoList == null || !mPhotoList.contains(photoData)) {
+                    if (photoData.getBytes() == null && photoData.getByteValueHandle() != null) {
+                        if (mPhotoList == null) {
+                            mPhotoList = new ArrayList<PhotoData>(1);
+                        }
+                        // Immutable, so it can be shared.
+                        mPhotoList.add(photoData);
+                    } else {
+                        addPhotoBytes(photoData.getFormat(), photoData.getBytes(),
+                                photoData.isPrimary());
+                    }
+                }
+            }
+        }
+        if (other.mAndroidCustomDataList != null) {
+            if (mAndroidCustomDataList == null) {
+                mAndroidCustomDataList = new ArrayList<AndroidCustomData>();
+            }
+            for (AndroidCustomData customData : other.mAndroidCustomDataList) {
+                if (!mAndroidCustomDataList.contains(customData)) {
+                    mAndroidCustomDataList.add(customData);
+                }
+            }
+        }
+        if (mBirthday == null) {
+            mBirthday = other.mBirthday;
+        }
+        if (mAnniversary == null) {
+            mAnniversary = other.mAnniversary;
+        }
+        if (other.mUnknownXData != null) {
+            if (mUnknownXData == null) {
+                mUnknownXData = new ArrayList<Pair<String, String>>();
+            }
+            for (Pair<String, String> xData : other.mUnknownXData) {
+                if (!mUnknownXData.contains(xData)) {
+                    mUnknownXData.add(xData);
+                }
+            }
+        }
     }
 
     /**
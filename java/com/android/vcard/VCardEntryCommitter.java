@@ -46,18 +46,57 @@ public class VCardEntryCommitter implements VCardEntryHandler {
     private ArrayList<ContentProviderOperation> mOperationList;
     private final ArrayList<Uri> mCreatedUris = new ArrayList<Uri>();
 
+    // Used only when checkpoints are enabled.
+    private VCardParseProgress mParser;
+    private VCardCheckpointListener mCheckpointListener;
+    private long mBaseOffset;
+    private int mBaseEntryCount;
+    private int mSeenEntryCount;
+
     public VCardEntryCommitter(ContentResolver resolver) {
         mContentResolver = resolver;
     }
 
     @Override
     public void onStart() {
+        // The parser counts entries from zero in each parse.
+        mSeenEntryCount = 0;
+    }
+
+    /**
+     * <p>
+     * Makes this object report a {@link VCardImportCheckpoint} each time a batch of entries is
+     * committed. The parser must be the one feeding entries to this object, and is asked
+     * where the last committed entry ends.
+     * </p>
+     * <p>
+     * While enabled, batches are committed only after a top-level entry, so that entries
+     * nested in vCard 2.1 are never committed apart from their parent.
+     * </p>
+     */
+    public void setCheckpointListener(VCardParseProgress parser,
+            VCardCheckpointListener listener) {
+        mParser = parser;
+        mCheckpointListener = listener;
+    }
+
+    /**
+     * Continues an import from the checkpoint. The input given to the parser must start at
+     * {@link VCardImportCheckpoint#getOffset()}. Must be called before the parse starts.
+     */
+    public void resumeFrom(VCardImportCheckpoint checkpoint) {
+        mBaseOffset = checkpoint.getOffset();
+        mBaseEntryCount = checkpoint.getEntryCount();
+        mSeenEntryCount = 0;
+        mCreatedUris.clear();
+        mCreatedUris.addAll(checkpoint.getCreatedUris());
     }
 
     @Override
     public void onEnd() {
         if (mOperationList != null) {
-            mCreatedUris.add(pushIntoContentResolver(mOperationList));
+            pushBatch();
+            mOperationList = null;
         }
 
         if (VCardConfig.showPerformanceLog()) {
@@ -70,14 +109,38 @@ public class VCardEntryCommitter implements VCardEntryHandler {
         final long start = System.currentTimeMillis();
         mOperationList = vcardEntry.constructInsertOperations(mContentResolver, mOperationList);
         mCounter++;
-        if (mCounter >= 20) {
-            mCreatedUris.add(pushIntoContentResolver(mOperationList));
+        final boolean atTopLevel = (mCheckpointListener == null || isAtTopLevelEntryEnd());
+        if (mCounter >= 20 && atTopLevel) {
+            pushBatch();
             mCounter = 0;
             mOperationList = null;
         }
         mTimeToCommit += System.currentTimeMillis() - start;
     }
 
+    /**
+     * Must be called for every entry. The parser counts a top-level entry before it is
+     * created, while nested ones are not counted.
+     *
+     * @return true when the entry just created is a top-level one.
+     */
+    private boolean isAtTopLevelEntryEnd() {
+        final int count = mParser.getCompletedEntryCount();
+        final boolean topLevel = (count != mSeenEntryCount);
+        mSeenEntryCount = count;
+        return topLevel;
+    }
+
+    private void pushBatch() {
+        mCreatedUris.add(pushIntoContentResolver(mOperationList));
+        if (mCheckpointListener != null) {
+            // A failed batch is not retried, as without checkpoints. Its null Uri is kept.
+            mCheckpointListener.onCheckpoint(new VCardImportCheckpoint(
+                    mParser.getLastEntryEndOffset() + mBaseOffset,
+                    mParser.getCompletedEntryCount() + mBaseEntryCount, mCreatedUris));
+        }
+    }
+
     private Uri pushIntoContentResolver(ArrayList<ContentProviderOperation> operationList) {
         try {
             final ContentProviderResult[] results = mContentResolver.applyBatch(
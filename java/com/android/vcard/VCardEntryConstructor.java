@@ -41,7 +41,7 @@ import java.util.List;
  * {@link VCardEntry} created by the object.
  * </p>
  */
-public class VCardEntryConstructor implements VCardInterpreter {
+public class VCardEntryConstructor implements VCardLenientInterpreter {
     private static String LOG_TAG = VCardConstants.LOG_TAG;
 
     /**
@@ -52,6 +52,10 @@ public class VCardEntryConstructor implements VCardInterpreter {
 
     private final int mVCardType;
     private final Account mAccount;
+    // Lets entries of one import share the bytes of identical photos.
+    private final VCardPhotoStore mPhotoStore = new VCardPhotoStore();
+    // Lets entries of one import share phone numbers formatted once.
+    private final VCardPhoneNumberCache mPhoneNumberCache = new VCardPhoneNumberCache();
 
     private final List<VCardEntryHandler> mEntryHandlers = new ArrayList<VCardEntryHandler>();
 
@@ -82,11 +86,21 @@ public class VCardEntryConstructor implements VCardInterpreter {
         mEntryHandlers.add(entryHandler);
     }
 
+    /**
+     * @return the cache of phone numbers formatted for the entries of the current import.
+     * The numbers are dropped when the import ends, while the counts of the import are kept
+     * until the next one starts.
+     */
+    public VCardPhoneNumberCache getPhoneNumberCache() {
+        return mPhoneNumberCache;
+    }
+
     @Override
     public void onVCardStarted() {
         for (VCardEntryHandler entryHandler : mEntryHandlers) {
             entryHandler.onStart();
         }
+        mPhoneNumberCache.clear();
     }
 
     @Override
@@ -94,6 +108,8 @@ public class VCardEntryConstructor implements VCardInterpreter {
         for (VCardEntryHandler entryHandler : mEntryHandlers) {
             entryHandler.onEnd();
         }
+        mPhotoStore.clear();
+        mPhoneNumberCache.evictAll();
     }
 
     public void clear() {
@@ -103,7 +119,8 @@ public class VCardEntryConstructor implements VCardInterpreter {
 
     @Override
     public void onEntryStarted() {
-        mCurrentEntry = new VCardEntry(mVCardType, mAccount);
+        mCurrentEntry = new VCardEntry(mVCardType, mAccount, mPhotoStore,
+                mPhoneNumberCache);
         mEntryStack.add(mCurrentEntry);
     }
 
@@ -125,6 +142,16 @@ public class VCardEntryConstructor implements VCardInterpreter {
         mEntryStack.remove(size - 1);
     }
 
+    /**
+     * Drops the current entry, which is not given to {@link VCardEntryHandler}s.
+     */
+    @Override
+    public void onEntryAborted() {
+        final int size = mEntryStack.size();
+        mEntryStack.remove(size - 1);
+        mCurrentEntry = (size > 1 ? mEntryStack.get(size - 2) : null);
+    }
+
     @Override
     public void onPropertyCreated(VCardProperty property) {
         mCurrentEntry.addProperty(property);
@@ -16,9 +16,10 @@
 package com.android.vcard;
 
 /**
- * The class which just counts the number of vCard entries in the specified input.
+ * The class which just counts the number of vCard entries in the specified input. Entries
+ * dropped in lenient mode are not counted.
  */
-public class VCardEntryCounter implements VCardInterpreter {
+public class VCardEntryCounter implements VCardLenientInterpreter {
     private int mCount;
 
     public int getCount() {
@@ -42,6 +43,10 @@ public class VCardEntryCounter implements VCardInterpreter {
         mCount++;
     }
 
+    @Override
+    public void onEntryAborted() {
+    }
+
     @Override
     public void onPropertyCreated(VCardProperty property) {
     }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.VCardEntry.EntryElement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * {@link VCardEntryHandler} which merges duplicated entries in one vCard file before passing
+ * them to another handler, typically {@link VCardEntryCommitter}. This avoids inserting one
+ * contact twice when a file contains a backup twice.
+ * </p>
+ * <p>
+ * Entries are duplicates when their {@link VCardEntry.NameData}, phones, and emails are
+ * equal, ignoring the order of phones and emails. The first entry receives the elements of
+ * its duplicates which it doesn't have yet (e.g. an address only in the second one), and the
+ * duplicates are dropped. Entries without any phone or email are never merged, even when
+ * their names are equal.
+ * </p>
+ * <p>
+ * Entries are held until they are pushed out of a window of the last entries, or until
+ * {@link #onEnd()}, so only duplicates within the window are merged. This delays entries,
+ * so don't use this with {@link VCardEntryCommitter#setCheckpointListener}, whose
+ * checkpoints assume entries are committed as soon as they are parsed.
+ * </p>
+ */
+public class VCardEntryDeduplicator implements VCardEntryHandler {
+    public static final int DEFAULT_WINDOW_SIZE = 1000;
+
+    private final VCardEntryHandler mHandler;
+    private final int mWindowSize;
+
+    // Entries held, in the order they came.
+    private final LinkedList<VCardEntry> mWindow = new LinkedList<VCardEntry>();
+    // Fingerprint to the entries in the window with it.
+    private final Map<Integer, List<VCardEntry>> mFingerprintMap =
+            new HashMap<Integer, List<VCardEntry>>();
+    private int mMergedCount;
+
+    public VCardEntryDeduplicator(VCardEntryHandler handler) {
+        this(handler, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize The number of entries held at most. Entries keep their photos in
+     * memory, so don't make this too large.
+     */
+    public VCardEntryDeduplicator(VCardEntryHandler handler, int windowSize) {
+        if (handler == null) {
+            throw new NullPointerException("VCardEntryHandler must not be null.");
+        }
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        mHandler = handler;
+        mWindowSize = windowSize;
+    }
+
+    @Override
+    public void onStart() {
+        mHandler.onStart();
+    }
+
+    @Override
+    public void onEntryCreated(VCardEntry entry) {
+        if (!hasFingerprint(entry)) {
+            addToWindow(entry, null);
+            return;
+        }
+        final Integer fingerprint = getFingerprint(entry);
+        List<VCardEntry> candidateList = mFingerprintMap.get(fingerprint);
+        if (candidateList != null) {
+            for (VCardEntry candidate : candidateList) {
+                if (isDuplicate(candidate, entry)) {
+                    candidate.addMissingElements(entry);
+                    mMergedCount++;
+                    return;
+                }
+            }
+        } else {
+            candidateList = new ArrayList<VCardEntry>(1);
+            mFingerprintMap.put(fingerprint, candidateList);
+        }
+        candidateList.add(entry);
+        addToWindow(entry, fingerprint);
+    }
+
+    @Override
+    public void onEnd() {
+        while (!mWindow.isEmpty()) {
+            mHandler.onEntryCreated(mWindow.removeFirst());
+        }
+        mFingerprintMap.clear();
+        mHandler.onEnd();
+    }
+
+    /**
+     * @return the number of entries merged into another entry so far.
+     */
+    public int getMergedCount() {
+        return mMergedCount;
+    }
+
+    private void addToWindow(VCardEntry entry, Integer fingerprint) {
+        mWindow.addLast(entry);
+        if (mWindow.size() > mWindowSize) {
+            final VCardEntry oldest = mWindow.removeFirst();
+            if (hasFingerprint(oldest)) {
+                final Integer oldestFingerprint = getFingerprint(oldest);
+                final List<VCardEntry> candidateList = mFingerprintMap.get(oldestFingerprint);
+                candidateList.remove(oldest);
+                if (candidateList.isEmpty()) {
+                    mFingerprintMap.remove(oldestFingerprint);
+                }
+            }
+            mHandler.onEntryCreated(oldest);
+        }
+    }
+
+    private static boolean hasFingerprint(VCardEntry entry) {
+        // Entries with only a name may well be different people with the same name.
+        return entry.getPhoneList() != null || entry.getEmailList() != null;
+    }
+
+    /**
+     * @return a hash of the name, phones, and emails, which doesn't depend on the order of
+     * phones and emails.
+     */
+    private static Integer getFingerprint(VCardEntry entry) {
+        int hash = entry.getNameData().hashCode();
+        hash = hash * 31 + getUnorderedHashCode(entry.getPhoneList());
+        hash = hash * 31 + getUnorderedHashCode(entry.getEmailList());
+        return hash;
+    }
+
+    private static int getUnorderedHashCode(List<? extends EntryElement> elementList) {
+        int hash = 0;
+        if (elementList != null) {
+            for (EntryElement element : elementList) {
+                hash += element.hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private static boolean isDuplicate(VCardEntry entry1, VCardEntry entry2) {
+        return entry1.getNameData().equals(entry2.getNameData())
+                && hasSameElements(entry1.getPhoneList(), entry2.getPhoneList())
+                && hasSameElements(entry1.getEmailList(), entry2.getEmailList());
+    }
+
+    private static boolean hasSameElements(List<? extends EntryElement> list1,
+            List<? extends EntryElement> list2) {
+        if (list1 == null || list2 == null) {
+            return list1 == list2;
+        }
+        return list1.size() == list2.size()
+                && new HashSet<EntryElement>(list1).equals(new HashSet<EntryElement>(list2));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.VCardParserImpl_V21.CustomBufferedReader;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * Byte offsets and lengths of top-level vCard entries in a file, which let
+ * {@link VCardParser#parseAt(FileChannel, VCardEntryIndex, int)} parse the N-th entry without
+ * parsing the entries before it.
+ * </p>
+ * <p>
+ * Building an index only looks for "BEGIN:VCARD" / "END:VCARD" lines, which is much cheaper
+ * than a parse. Nested vCard 2.1 entries are part of their parent. The index can be saved
+ * next to the vCard file with {@link #writeTo(OutputStream)}, where offsets are stored as
+ * variable-length deltas (typically a few bytes per entry).
+ * </p>
+ */
+public class VCardEntryIndex {
+    private static final int MAGIC = 0x56434958;  // "VCIX"
+    private static final int FORMAT_VERSION = 1;
+
+    private final long mFileSize;
+    private final int mSize;
+    private final long[] mOffsets;
+    private final int[] mLengths;
+
+    private VCardEntryIndex(long fileSize, int size, long[] offsets, int[] lengths) {
+        mFileSize = fileSize;
+        mSize = size;
+        mOffsets = offsets;
+        mLengths = lengths;
+    }
+
+    /**
+     * Scans the file behind the channel from its current position.
+     * Offsets in the index are absolute positions in the file.
+     */
+    public static VCardEntryIndex build(FileChannel channel) throws IOException {
+        final long startPosition = channel.position();
+        final CustomBufferedReader reader = new CustomBufferedReader(channel,
+                VCardParserImpl_V21.INTERMEDIATE_CHARSET);
+        long[] offsets = new long[64];
+        int[] lengths = new int[64];
+        int size = 0;
+
+        int depth = 0;
+        long entryStart = 0;
+        long lineStart = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (VCardParserImpl_V21.isEntryBoundary(line, "BEGIN")) {
+                if (depth++ == 0) {
+                    entryStart = lineStart;
+                }
+            } else if (depth > 0 && VCardParserImpl_V21.isEntryBoundary(line, "END")
+                    && --depth == 0) {
+                if (size == offsets.length) {
+                    final long[] newOffsets = new long[size * 2];
+                    System.arraycopy(offsets, 0, newOffsets, 0, size);
+                    offsets = newOffsets;
+                    final int[] newLengths = new int[size * 2];
+                    System.arraycopy(lengths, 0, newLengths, 0, size);
+                    lengths = newLengths;
+                }
+                offsets[size] = startPosition + entryStart;
+                lengths[size] = (int) (reader.getBytesConsumed() - entryStart);
+                size++;
+            }
+            lineStart = reader.getBytesConsumed();
+        }
+        return new VCardEntryIndex(channel.size(), size, offsets, lengths);
+    }
+
+    /**
+     * @return the number of top-level entries.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the position of the entry in the file. It may point to the line break just
+     * before "BEGIN:VCARD", which parsers skip.
+     */
+    public long getOffset(int entryIndex) {
+        checkEntryIndex(entryIndex);
+        return mOffsets[entryIndex];
+    }
+
+    public int getLength(int entryIndex) {
+        checkEntryIndex(entryIndex);
+        return mLengths[entryIndex];
+    }
+
+    /**
+     * @return the size of the file when the index was built, which lets callers detect
+     * a stale index.
+     */
+    public long getFileSize() {
+        return mFileSize;
+    }
+
+    private void checkEntryIndex(int entryIndex) {
+        if (entryIndex < 0 || entryIndex >= mSize) {
+            throw new IndexOutOfBoundsException(
+                    "Entry index " + entryIndex + " is out of range (size: " + mSize + ")");
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(FORMAT_VERSION);
+        dataOut.writeLong(mFileSize);
+        dataOut.writeInt(mSize);
+        long previousEnd = 0;
+        for (int i = 0; i < mSize; i++) {
+            writeVarLong(dataOut, mOffsets[i] - previousEnd);
+            writeVarLong(dataOut, mLengths[i]);
+            previousEnd = mOffsets[i] + mLengths[i];
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * @throws IOException when the input is not an index written by {@link #writeTo}.
+     */
+    public static VCardEntryIndex readFrom(InputStream in) throws IOException {
+        final DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != MAGIC) {
+            throw new IOException("Not a vCard entry index");
+        }
+        final int formatVersion = dataIn.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported vCard entry index version: " + formatVersion);
+        }
+        final long fileSize = dataIn.readLong();
+        final int size = dataIn.readInt();
+        if (size < 0) {
+            throw new IOException("Broken vCard entry index");
+        }
+        final long[] offsets = new long[size];
+        final int[] lengths = new int[size];
+        long previousEnd = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = previousEnd + readVarLong(dataIn);
+            lengths[i] = (int) readVarLong(dataIn);
+            previousEnd = offsets[i] + lengths[i];
+        }
+        return new VCardEntryIndex(fileSize, size, offsets, lengths);
+    }
+
+    /**
+     * Writes a non-negative value 7 bits at a time, lower bits first.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Broken vCard entry index");
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.accounts.Account;
+
+import com.android.vcard.exception.VCardException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Pull-style alternative to the combination of {@link VCardParser},
+ * {@link VCardEntryConstructor}, and {@link VCardEntryHandler}.
+ * </p>
+ * <p>
+ * The input is parsed lazily, one top-level entry at a time, only when the caller asks for
+ * the next {@link VCardEntry}. Callers can stop reading at any point without buffering all the
+ * entries in the input.
+ * </p>
+ * <p>
+ * Entries come in the same order as {@link VCardEntryHandler#onEntryCreated(VCardEntry)},
+ * so children come before their parent in nested vCard files.
+ * </p>
+ * <p>
+ * {@link #readEntry()} reports errors as checked exceptions. When used as an {@link Iterator},
+ * {@link IOException} and {@link VCardException} are wrapped in {@link RuntimeException}.
+ * When the reading thread is interrupted, {@link InterruptedIOException} is thrown instead of
+ * reporting the end of the input, so that callers don't take a part of the entries for all
+ * of them.
+ * </p>
+ */
+public class VCardEntryReader implements Iterator<VCardEntry>, Closeable {
+    private final InputStream mInputStream;
+    private final VCardParserImpl_V21 mParserImpl;
+    private final VCardEntryConstructor mConstructor;
+
+    /**
+     * Entries created but not returned yet. Nested vCard may create multiple entries at once.
+     */
+    private final ArrayDeque<VCardEntry> mEntryQueue = new ArrayDeque<VCardEntry>();
+
+    private boolean mStarted;
+    private boolean mReachedEnd;
+    private boolean mStopped;
+
+    public VCardEntryReader(InputStream is, int vcardType) {
+        this(is, vcardType, null);
+    }
+
+    public VCardEntryReader(InputStream is, int vcardType, Account account) {
+        mInputStream = is;
+        mParserImpl = VCardParserImpl_V21.create(vcardType);
+        mParserImpl.setInput(is);
+
+        mConstructor = new VCardEntryConstructor(vcardType, account);
+        mConstructor.addEntryHandler(new VCardEntryHandler() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onEntryCreated(VCardEntry entry) {
+                mEntryQueue.add(entry);
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        });
+        mParserImpl.addInterpreter(mConstructor);
+    }
+
+    /**
+     * @return the next entry, or null when the input reached its end.
+     */
+    public VCardEntry readEntry() throws IOException, VCardException {
+        fillEntryQueue();
+        return mEntryQueue.poll();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            fillEntryQueue();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (VCardException e) {
+            throw new RuntimeException(e);
+        }
+        return !mEntryQueue.isEmpty();
+    }
+
+    @Override
+    public VCardEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return mEntryQueue.poll();
+    }
+
+    /**
+     * Parses entries until at least one entry is created or the input reached its end.
+     *
+     * @throws InterruptedIOException when the parse stopped before the end of the input.
+     */
+    private void fillEntryQueue() throws IOException, VCardException {
+        if (!mStarted) {
+            mStarted = true;
+            mConstructor.onVCardStarted();
+        }
+        while (mEntryQueue.isEmpty() && !mReachedEnd) {
+            if (!mParserImpl.parseNext()) {
+                mReachedEnd = true;
+                mStopped = mParserImpl.wasStopped();
+                mConstructor.onVCardEnded();
+            }
+        }
+        if (mStopped && mEntryQueue.isEmpty()) {
+            throw new InterruptedIOException("Reading vCard entries was interrupted.");
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the underlying InputStream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mStarted && !mReachedEnd) {
+            mConstructor.onVCardEnded();
+        }
+        mReachedEnd = true;
+        mEntryQueue.clear();
+        mInputStream.close();
+    }
+}
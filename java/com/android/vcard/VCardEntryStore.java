@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.VCardEntry.EntryLabel;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Column-oriented storage for the elements of one {@link VCardEntry}, used instead of one
+ * object (and one list) per element so that keeping a lot of entries in memory is cheap.
+ * </p>
+ * <p>
+ * Each element is a row with a kind ({@link EntryLabel}), a type, an auxiliary int value,
+ * a primary flag, and a fixed number of string slots which depends on its kind. The
+ * characters of all the strings are kept in one char array, and slots point to them with
+ * (offset, length) pairs. Rows of different kinds may be interleaved; rows of one kind keep
+ * the order in which they are added.
+ * </p>
+ * <p>
+ * This object is not thread-safe.
+ * </p>
+ */
+/* package */ final class VCardEntryStore {
+    private static final EntryLabel[] KINDS = EntryLabel.values();
+    private static final int NULL_LENGTH = -1;
+
+    private static final int INITIAL_ROW_CAPACITY = 4;
+    private static final int INITIAL_SLOT_CAPACITY = 8;
+    private static final int INITIAL_CHAR_CAPACITY = 64;
+
+    private final int[] mKindCounts = new int[KINDS.length];
+
+    // Allocated on the first row, as a lot of entries have only a name.
+    private int mRowCount;
+    private byte[] mKinds;
+    private int[] mTypes;
+    private int[] mAuxValues;
+    private int[] mFirstSlots;
+    // One bit per row.
+    private int[] mPrimaryBits;
+
+    private int mSlotCount;
+    // (offset, length) in mChars for each slot, where length is NULL_LENGTH for null.
+    private int[] mSlots;
+
+    private int mCharCount;
+    private char[] mChars;
+
+    /**
+     * @return the row of the new element.
+     */
+    public int addRow(EntryLabel kind, int type, int auxValue, boolean isPrimary,
+            String... values) {
+        if (mKinds == null) {
+            mKinds = new byte[INITIAL_ROW_CAPACITY];
+            mTypes = new int[INITIAL_ROW_CAPACITY];
+            mAuxValues = new int[INITIAL_ROW_CAPACITY];
+            mFirstSlots = new int[INITIAL_ROW_CAPACITY];
+            mPrimaryBits = new int[1];
+            mSlots = new int[INITIAL_SLOT_CAPACITY * 2];
+            mChars = new char[INITIAL_CHAR_CAPACITY];
+        } else if (mRowCount == mKinds.length) {
+            resizeRows(mRowCount * 2);
+        }
+        final int row = mRowCount++;
+        mKinds[row] = (byte) kind.ordinal();
+        mTypes[row] = type;
+        mAuxValues[row] = auxValue;
+        mFirstSlots[row] = mSlotCount;
+        setPrimary(row, isPrimary);
+        mKindCounts[kind.ordinal()]++;
+
+        final int slotsLength = (mSlotCount + values.length) * 2;
+        if (slotsLength > mSlots.length) {
+            mSlots = Arrays.copyOf(mSlots, Math.max(mSlots.length * 2, slotsLength));
+        }
+        mSlotCount += values.length;
+        for (int i = 0; i < values.length; i++) {
+            setString(row, i, values[i]);
+        }
+        return row;
+    }
+
+    /**
+     * Appends a copy of the row in the other store.
+     *
+     * @return the row of the copy.
+     */
+    public int copyRow(VCardEntryStore source, int sourceRow) {
+        final int firstSlot = source.mFirstSlots[sourceRow];
+        final int endSlot = (sourceRow + 1 < source.mRowCount
+                ? source.mFirstSlots[sourceRow + 1] : source.mSlotCount);
+        final String[] values = new String[endSlot - firstSlot];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = source.getString(sourceRow, i);
+        }
+        return addRow(KINDS[source.mKinds[sourceRow]], source.mTypes[sourceRow],
+                source.mAuxValues[sourceRow], source.isPrimary(sourceRow), values);
+    }
+
+    /**
+     * @return the number of elements of the kind.
+     */
+    public int size(EntryLabel kind) {
+        return mKindCounts[kind.ordinal()];
+    }
+
+    /**
+     * @return the row of the index-th element of the kind.
+     */
+    public int getRow(EntryLabel kind, int index) {
+        return getRow(kind, index, -1, -1);
+    }
+
+    /**
+     * Same as {@link #getRow(EntryLabel, int)}, but searches from fromRow, the row of the
+     * fromIndex-th element of the kind, when it is not after the requested one. Lets callers
+     * iterating over the elements of a kind keep the lookups linear. (-1, -1) searches from
+     * the first row.
+     */
+    public int getRow(EntryLabel kind, int index, int fromIndex, int fromRow) {
+        final int kindOrdinal = kind.ordinal();
+        if (index < 0 || index >= mKindCounts[kindOrdinal]) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " is out of range for " + kind);
+        }
+        int row = -1;
+        int current = -1;
+        if (fromIndex <= index) {
+            row = fromRow;
+            current = fromIndex;
+        }
+        while (current < index) {
+            if (mKinds[++row] == kindOrdinal) {
+                current++;
+            }
+        }
+        return row;
+    }
+
+    public int getType(int row) {
+        return mTypes[row];
+    }
+
+    public int getAuxValue(int row) {
+        return mAuxValues[row];
+    }
+
+    public boolean isPrimary(int row) {
+        return (mPrimaryBits[row >>> 5] & (1 << (row & 31))) != 0;
+    }
+
+    public void setPrimary(int row, boolean isPrimary) {
+        if (isPrimary) {
+            mPrimaryBits[row >>> 5] |= (1 << (row & 31));
+        } else {
+            mPrimaryBits[row >>> 5] &= ~(1 << (row & 31));
+        }
+    }
+
+    public boolean isNull(int row, int slot) {
+        return mSlots[(mFirstSlots[row] + slot) * 2 + 1] == NULL_LENGTH;
+    }
+
+    public String getString(int row, int slot) {
+        final int index = (mFirstSlots[row] + slot) * 2;
+        final int length = mSlots[index + 1];
+        return (length == NULL_LENGTH ? null : new String(mChars, mSlots[index], length));
+    }
+
+    /**
+     * Replaces the string in the slot. Characters of the old string are not reclaimed, which
+     * is fine as only a few values are set twice (e.g. "TITLE" after "ORG").
+     */
+    public void setString(int row, int slot, String value) {
+        final int index = (mFirstSlots[row] + slot) * 2;
+        if (value == null) {
+            mSlots[index] = 0;
+            mSlots[index + 1] = NULL_LENGTH;
+            return;
+        }
+        final int length = value.length();
+        if (mCharCount + length > mChars.length) {
+            mChars = Arrays.copyOf(mChars, Math.max(mChars.length * 2, mCharCount + length));
+        }
+        value.getChars(0, length, mChars, mCharCount);
+        mSlots[index] = mCharCount;
+        mSlots[index + 1] = length;
+        mCharCount += length;
+    }
+
+    /**
+     * Releases unused capacity. Rows can still be added after this call.
+     */
+    public void trimToSize() {
+        if (mKinds == null) {
+            return;
+        }
+        if (mRowCount < mKinds.length) {
+            resizeRows(Math.max(mRowCount, 1));
+        }
+        if (mSlotCount * 2 < mSlots.length) {
+            mSlots = Arrays.copyOf(mSlots, Math.max(mSlotCount * 2, 2));
+        }
+        if (mCharCount < mChars.length) {
+            mChars = Arrays.copyOf(mChars, Math.max(mCharCount, 1));
+        }
+    }
+
+    private void resizeRows(int capacity) {
+        mKinds = Arrays.copyOf(mKinds, capacity);
+        mTypes = Arrays.copyOf(mTypes, capacity);
+        mAuxValues = Arrays.copyOf(mAuxValues, capacity);
+        mFirstSlots = Arrays.copyOf(mFirstSlots, capacity);
+        mPrimaryBits = Arrays.copyOf(mPrimaryBits, (capacity + 31) >>> 5);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.net.Uri;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Progress of an import committed to ContentResolver: how far the vCard file has been
+ * imported, how many top-level entries it covers, and the Uris created so far.
+ * </p>
+ * <p>
+ * An import killed in the middle can be restarted from the last checkpoint without creating
+ * duplicates, by positioning the input at {@link #getOffset()} and passing the checkpoint to
+ * {@link VCardEntryCommitter#resumeFrom(VCardImportCheckpoint)}:
+ * </p>
+ * <code>
+ * channel.position(checkpoint.getOffset());
+ * committer.resumeFrom(checkpoint);
+ * parser.parse(channel);
+ * </code>
+ */
+public class VCardImportCheckpoint {
+    private static final int MAGIC = 0x56434350;  // "VCCP"
+    private static final int FORMAT_VERSION = 1;
+
+    private final long mOffset;
+    private final int mEntryCount;
+    private final List<Uri> mCreatedUris;
+
+    public VCardImportCheckpoint(long offset, int entryCount, List<Uri> createdUris) {
+        mOffset = offset;
+        mEntryCount = entryCount;
+        mCreatedUris = Collections.unmodifiableList(new ArrayList<Uri>(createdUris));
+    }
+
+    /**
+     * @return the byte offset in the vCard file where the import should restart.
+     */
+    public long getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @return the number of top-level entries imported before {@link #getOffset()}.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * @return Uris returned by ContentResolver so far, in the same manner as
+     * {@link VCardEntryCommitter#getCreatedUris()}. Null elements mean failed batches.
+     */
+    public List<Uri> getCreatedUris() {
+        return mCreatedUris;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(FORMAT_VERSION);
+        dataOut.writeLong(mOffset);
+        dataOut.writeInt(mEntryCount);
+        dataOut.writeInt(mCreatedUris.size());
+        for (Uri uri : mCreatedUris) {
+            dataOut.writeUTF(uri != null ? uri.toString() : "");
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * @throws IOException when the input is not a checkpoint written by {@link #writeTo}.
+     */
+    public static VCardImportCheckpoint readFrom(InputStream in) throws IOException {
+        final DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != MAGIC) {
+            throw new IOException("Not a vCard import checkpoint");
+        }
+        final int formatVersion = dataIn.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported vCard import checkpoint version: " + formatVersion);
+        }
+        final long offset = dataIn.readLong();
+        final int entryCount = dataIn.readInt();
+        final int uriCount = dataIn.readInt();
+        if (offset < 0 || entryCount < 0 || uriCount < 0) {
+            throw new IOException("Broken vCard import checkpoint");
+        }
+        final List<Uri> createdUris = new ArrayList<Uri>(uriCount);
+        for (int i = 0; i < uriCount; i++) {
+            final String uri = dataIn.readUTF();
+            createdUris.add(uri.length() > 0 ? Uri.parse(uri) : null);
+        }
+        return new VCardImportCheckpoint(offset, entryCount, createdUris);
+    }
+
+    @Override
+    public String toString() {
+        return "offset: " + mOffset + ", entries: " + mEntryCount
+                + ", uris: " + mCreatedUris.size();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+/**
+ * <p>
+ * {@link VCardInterpreter} which can drop entries broken in lenient mode (see
+ * {@link VCardParseErrorListener}), instead of ending them with
+ * {@link VCardInterpreter#onEntryEnded()} as if they were complete.
+ * </p>
+ */
+public interface VCardLenientInterpreter extends VCardInterpreter {
+    /**
+     * Called instead of {@link VCardInterpreter#onEntryEnded()} for each entry left open by a
+     * broken entry, innermost first. The properties of the entry given so far must be
+     * discarded. Nested entries already ended stay ended.
+     */
+    void onEntryAborted();
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>
+ * Scanners for line breaks and delimiters, which return offsets instead of substrings.
+ * </p>
+ * <p>
+ * Line breaks are searched eight bytes at a time: each long read from the buffer is tested
+ * for CR and LF bytes with a few arithmetic operations, so that long lines like BASE64 or
+ * Quoted-Printable runs are skipped without looking at each byte.
+ * </p>
+ */
+/* package */ final class VCardLineScanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long CR_BYTES = ONES * '\r';
+    private static final long LF_BYTES = ONES * '\n';
+
+    /**
+     * Delimiters between a group, a property name, and parameters.
+     */
+    public static final int NAME_DELIMITERS = 1;
+    /**
+     * Delimiters between parameters and the value, including the start of a double-quoted
+     * parameter value.
+     */
+    public static final int PARAM_DELIMITERS = 2;
+
+    private static final byte[] sDelimiterTable = new byte[128];
+    static {
+        sDelimiterTable[':'] = NAME_DELIMITERS | PARAM_DELIMITERS;
+        sDelimiterTable[';'] = NAME_DELIMITERS | PARAM_DELIMITERS;
+        sDelimiterTable['.'] = NAME_DELIMITERS;
+        sDelimiterTable['"'] = PARAM_DELIMITERS;
+    }
+
+    private VCardLineScanner() {
+    }
+
+    /**
+     * @return a buffer for {@link #indexOfLineBreak(ByteBuffer, int, int)}, which shares the
+     * given array.
+     */
+    public static ByteBuffer wrap(byte[] array) {
+        return ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param buffer A buffer in either byte order, though {@link ByteOrder#LITTLE_ENDIAN} is
+     * what the platforms use natively. Its position and limit are not used or changed.
+     * @return the index of the first CR or LF in [start, limit), or limit if there's none.
+     */
+    public static int indexOfLineBreak(ByteBuffer buffer, int start, int limit) {
+        int i = start;
+        final boolean bigEndian = (buffer.order() == ByteOrder.BIG_ENDIAN);
+        final int wordLimit = limit - 7;
+        while (i < wordLimit) {
+            final long word = buffer.getLong(i);
+            final long found = zeroBytes(word ^ CR_BYTES) | zeroBytes(word ^ LF_BYTES);
+            if (found != 0) {
+                // In little-endian order the lowest byte comes first, in big-endian the highest.
+                // zeroBytes() has no false positives, so either end tells the first match.
+                return i + ((bigEndian ? Long.numberOfLeadingZeros(found)
+                        : Long.numberOfTrailingZeros(found)) >>> 3);
+            }
+            i += 8;
+        }
+        while (i < limit) {
+            final byte b = buffer.get(i);
+            if (b == '\r' || b == '\n') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return a long whose bytes have the highest bit set where the bytes of the word are
+     * zero. Unlike the usual "(word - 0x01..) & ~word" trick, there are no false positives
+     * caused by borrows, so the result also tells the position of later zero bytes.
+     */
+    private static long zeroBytes(long word) {
+        final long t = (word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(t | word | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * @param delimiters {@link #NAME_DELIMITERS} or {@link #PARAM_DELIMITERS}.
+     * @return the index of the first delimiter at or after start, or -1 if there's none.
+     */
+    public static int indexOfDelimiter(String line, int start, int delimiters) {
+        final int length = line.length();
+        for (int i = start; i < length; i++) {
+            final char ch = line.charAt(i);
+            if (ch < 128 && (sDelimiterTable[ch] & delimiters) != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.util.Log;
+
+import com.android.vcard.VCardParserImpl_V21.CustomBufferedReader;
+import com.android.vcard.exception.VCardException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * vCard parser which accepts vCard 2.1, 3.0, and 4.0 entries in one input, even when they are
+ * mixed.
+ * </p>
+ * <p>
+ * The other parsers throw {@link com.android.vcard.exception.VCardVersionException} when they
+ * meet an entry of another version, after which callers have to parse the whole input again
+ * with another parser. This class instead looks for the VERSION property at the top of each
+ * entry and parses the entry with the rules of that version (line folding, escaping, and
+ * parameters), reading the input only once.
+ * </p>
+ * <p>
+ * VERSION is looked for only in the first {@link #MAX_LINES_TO_VERSION} lines of an entry,
+ * which covers vCard files in the wild as vCard 3.0 and 4.0 put it right after
+ * "BEGIN:VCARD". An entry without VERSION there is parsed as the version specified in
+ * vcardType, even when VERSION of another version comes later in the entry.
+ * </p>
+ */
+public class VCardMultiVersionParser extends VCardParser {
+    private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    /* package */ static final int MAX_LINES_TO_VERSION = 16;
+
+    private final VCardParserImpl_V21 mParserImplV21;
+    private final VCardParserImpl_V30 mParserImplV30;
+    private final VCardParserImpl_V40 mParserImplV40;
+    private final VCardParserImpl_V21 mDefaultParserImpl;
+
+    private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
+
+    private volatile boolean mCanceled;
+
+    public VCardMultiVersionParser() {
+        this(VCardConfig.VCARD_TYPE_DEFAULT);
+    }
+
+    /**
+     * @param vcardType The version in it is used for entries without VERSION.
+     */
+    public VCardMultiVersionParser(int vcardType) {
+        mParserImplV21 = new VCardParserImpl_V21(vcardType);
+        mParserImplV30 = new VCardParserImpl_V30(vcardType);
+        mParserImplV40 = new VCardParserImpl_V40(vcardType);
+        if (VCardConfig.isVersion40(vcardType)) {
+            mDefaultParserImpl = mParserImplV40;
+        } else if (VCardConfig.isVersion30(vcardType)) {
+            mDefaultParserImpl = mParserImplV30;
+        } else {
+            mDefaultParserImpl = mParserImplV21;
+        }
+        // A VERSION after MAX_LINES_TO_VERSION lines must not stop the parse.
+        mParserImplV21.setVersionCheckEnabled(false);
+        mParserImplV30.setVersionCheckEnabled(false);
+        mParserImplV40.setVersionCheckEnabled(false);
+    }
+
+    @Override
+    public void addInterpreter(VCardInterpreter interpreter) {
+        mInterpreterList.add(interpreter);
+        mParserImplV21.addInterpreter(interpreter);
+        mParserImplV30.addInterpreter(interpreter);
+        mParserImplV40.addInterpreter(interpreter);
+    }
+
+    @Override
+    public void parse(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        parseVCards(new CustomBufferedReader(is,
+                VCardParserImpl_V21.INTERMEDIATE_CHARSET), false);
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        if (channel == null) {
+            throw new NullPointerException("FileChannel must not be null.");
+        }
+        parseVCards(new CustomBufferedReader(channel,
+                VCardParserImpl_V21.INTERMEDIATE_CHARSET), false);
+    }
+
+    @Override
+    public void parseOne(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        parseVCards(new CustomBufferedReader(is,
+                VCardParserImpl_V21.INTERMEDIATE_CHARSET), true);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setBinarySink(VCardBinarySink)}.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mParserImplV21.setBinarySink(sink);
+        mParserImplV30.setBinarySink(sink);
+        mParserImplV40.setBinarySink(sink);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setReuseProperty(boolean)}.
+     */
+    public void setReuseProperty(boolean reuseProperty) {
+        mParserImplV21.setReuseProperty(reuseProperty);
+        mParserImplV30.setReuseProperty(reuseProperty);
+        mParserImplV40.setReuseProperty(reuseProperty);
+    }
+
+    /**
+     * Lenient mode is not available with {@link #parseOne(InputStream)}, as with the other
+     * parsers.
+     */
+    public void setErrorListener(VCardParseErrorListener listener) {
+        mParserImplV21.setErrorListener(listener);
+        mParserImplV30.setErrorListener(listener);
+        mParserImplV40.setErrorListener(listener);
+    }
+
+    @Override
+    public void cancel() {
+        Log.i(LOG_TAG, "MultiVersionParser received cancel operation.");
+        mCanceled = true;
+        mParserImplV21.cancel();
+        mParserImplV30.cancel();
+        mParserImplV40.cancel();
+    }
+
+    private void parseVCards(CustomBufferedReader reader, boolean onlyFirst)
+            throws IOException, VCardException {
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardStarted();
+        }
+
+        VCardParserImpl_V21 parserImpl;
+        while (!mCanceled && (parserImpl = selectParserImpl(reader)) != null) {
+            parserImpl.setInput(reader);
+            // parseOne() must not skip a broken entry.
+            final boolean parsed = (onlyFirst ? parserImpl.parseNextStrictly()
+                    : parserImpl.parseNext());
+            // The next entry may be parsed by another parser.
+            parserImpl.unreadLineReadAhead();
+            if (!parsed || onlyFirst) {
+                break;
+            }
+        }
+        if (mCanceled) {
+            Log.i(LOG_TAG, "Cancel request has come. exitting parse operation.");
+        }
+
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardEnded();
+        }
+    }
+
+    /**
+     * Reads lines up to the VERSION property of the next entry, and gives them back to the
+     * reader.
+     *
+     * @return the parser for the next entry, or null when the reader reached its end.
+     */
+    private VCardParserImpl_V21 selectParserImpl(CustomBufferedReader reader)
+            throws IOException {
+        final List<String> lineList = new ArrayList<String>();
+        final List<Long> lineStartList = new ArrayList<Long>();
+        VCardParserImpl_V21 parserImpl = null;
+        boolean entryStarted = false;
+        String line;
+        while (lineList.size() < MAX_LINES_TO_VERSION && (line = reader.readLine()) != null) {
+            lineList.add(line);
+            lineStartList.add(reader.getLineStart());
+            if (VCardParserImpl_V21.isEntryBoundary(line, "BEGIN")) {
+                if (entryStarted) {
+                    // VERSION of a nested entry is not for the parent.
+                    break;
+                }
+                entryStarted = true;
+            } else if (entryStarted) {
+                if (VCardParserImpl_V21.isEntryBoundary(line, "END")) {
+                    break;
+                }
+                parserImpl = getParserImplForVersionLine(line);
+                if (parserImpl != null) {
+                    break;
+                }
+            } else if (line.trim().length() > 0) {
+                // Garbage outside of entries, which the parser reports.
+                break;
+            }
+        }
+        if (lineList.isEmpty()) {
+            return null;
+        }
+        for (int i = lineList.size() - 1; i >= 0; i--) {
+            reader.unreadLine(lineList.get(i), lineStartList.get(i));
+        }
+        return (parserImpl != null ? parserImpl : mDefaultParserImpl);
+    }
+
+    /**
+     * @return the parser for the version when the line is the VERSION property, or null.
+     */
+    private VCardParserImpl_V21 getParserImplForVersionLine(String line) {
+        final int colonIndex = line.indexOf(':');
+        if (colonIndex < 0
+                || !line.substring(0, colonIndex).trim().equalsIgnoreCase("VERSION")) {
+            return null;
+        }
+        final String version = line.substring(colonIndex + 1).trim();
+        if (VCardConstants.VERSION_V21.equals(version)) {
+            return mParserImplV21;
+        } else if (VCardConstants.VERSION_V30.equals(version)) {
+            return mParserImplV30;
+        } else if (VCardConstants.VERSION_V40.equals(version)) {
+            return mParserImplV40;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.util.Log;
+
+import com.android.vcard.VCardParserImpl_V21.CustomBufferedReader;
+import com.android.vcard.exception.VCardException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * vCard parser which parses top-level vCard entries on multiple threads.
+ * </p>
+ * <p>
+ * The input is split on top-level "BEGIN:VCARD" / "END:VCARD" boundaries on the calling
+ * thread, and each entry is parsed by its own {@link VCardParserImpl_V21} (or its subclass
+ * for vCard 3.0/4.0) on a worker thread of the given {@link ExecutorService}, including the
+ * charset conversion and unescaping of property values. Nested vCard 2.1 entries are kept
+ * inside their parent's chunk.
+ * </p>
+ * <p>
+ * Registered {@link VCardInterpreter} instances are always called on the thread which calls
+ * {@link #parse(InputStream)}, so they don't need to be thread-safe. Entries are delivered in
+ * their original order unless this object is created with preserveOrder set to false, in which
+ * case each entry is delivered as soon as its parse finishes. When an entry fails to parse,
+ * none of its events are delivered and the failure is thrown from
+ * {@link #parse(InputStream)} at the position where the entry would have been delivered.
+ * </p>
+ * <p>
+ * Unlike the other parsers, this class does not detect the vCard version. Callers must
+ * specify the version of the input via vcardType.
+ * </p>
+ */
+public class VCardParallelParser extends VCardParser {
+    private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    /**
+     * Markers recorded between {@link VCardProperty} objects in the event list of one chunk.
+     */
+    private static final Object ENTRY_STARTED = new Object();
+    private static final Object ENTRY_ENDED = new Object();
+
+    private final int mVCardType;
+    // Null when each parse creates its own thread pool.
+    private final ExecutorService mExecutor;
+    private final boolean mPreserveOrder;
+
+    /**
+     * The number of chunks which may be parsed or waiting for delivery at the same time.
+     * Limits memory usage when interpreters are slower than the parse itself.
+     */
+    private final int mMaxPendingChunks;
+
+    private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
+
+    /**
+     * Parsers running on worker threads or in {@link #parseOne(InputStream)}, which
+     * {@link #cancel()} forwards the request to.
+     */
+    private final Set<VCardParserImpl_V21> mRunningParserImplSet =
+            Collections.newSetFromMap(new ConcurrentHashMap<VCardParserImpl_V21, Boolean>());
+
+    private volatile boolean mCanceled;
+
+    /**
+     * Creates a parser which delivers entries in their original order. Each parse creates a
+     * thread pool with one thread per available processor, and shuts it down before it
+     * returns, so this object holds no threads between parses.
+     */
+    public VCardParallelParser(int vcardType) {
+        mVCardType = vcardType;
+        mExecutor = null;
+        mPreserveOrder = true;
+        mMaxPendingChunks = Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    /**
+     * @param executor Used for parsing each entry. Not shut down by this object, so it may be
+     * used for multiple parses.
+     * @param preserveOrder If true, entries are delivered to interpreters in the order they
+     * appear in the input.
+     */
+    public VCardParallelParser(int vcardType, ExecutorService executor, boolean preserveOrder) {
+        if (executor == null) {
+            throw new NullPointerException("ExecutorService must not be null.");
+        }
+        mVCardType = vcardType;
+        mExecutor = executor;
+        mPreserveOrder = preserveOrder;
+        mMaxPendingChunks = Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    @Override
+    public void addInterpreter(VCardInterpreter interpreter) {
+        mInterpreterList.add(interpreter);
+    }
+
+    @Override
+    public void parse(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        parseChunks(new CustomBufferedReader(is,
+                VCardParserImpl_V21.INTERMEDIATE_CHARSET));
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        if (channel == null) {
+            throw new NullPointerException("FileChannel must not be null.");
+        }
+        parseChunks(new CustomBufferedReader(channel,
+                VCardParserImpl_V21.INTERMEDIATE_CHARSET));
+    }
+
+    /**
+     * Parses the first entry on the calling thread, as there's nothing to parallelize.
+     */
+    @Override
+    public void parseOne(InputStream is) throws IOException, VCardException {
+        final VCardParserImpl_V21 parserImpl = startParserImpl();
+        try {
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                parserImpl.addInterpreter(interpreter);
+            }
+            parserImpl.parseOne(is);
+        } finally {
+            mRunningParserImplSet.remove(parserImpl);
+        }
+    }
+
+    /**
+     * <p>
+     * The request is forwarded to the parsers of entries running on worker threads, and
+     * entries already parsed stop being delivered at the next event, so that interpreters
+     * see the same partial entry as with the other parsers.
+     * </p>
+     */
+    @Override
+    public void cancel() {
+        Log.i(LOG_TAG, "ParallelParser received cancel operation.");
+        mCanceled = true;
+        for (VCardParserImpl_V21 parserImpl : mRunningParserImplSet) {
+            parserImpl.cancel();
+        }
+    }
+
+    /**
+     * Creates a parser which {@link #cancel()} reaches. Callers must remove it from
+     * {@link #mRunningParserImplSet} when its parse finishes.
+     */
+    private VCardParserImpl_V21 startParserImpl() {
+        final VCardParserImpl_V21 parserImpl = VCardParserImpl_V21.create(mVCardType);
+        mRunningParserImplSet.add(parserImpl);
+        // cancel() may have walked the set before the parser was added.
+        if (mCanceled) {
+            parserImpl.cancel();
+        }
+        return parserImpl;
+    }
+
+    private void parseChunks(CustomBufferedReader reader) throws IOException, VCardException {
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardStarted();
+        }
+
+        final ExecutorService executor = (mExecutor != null ? mExecutor
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        final ArrayDeque<Future<List<Object>>> pendingList =
+                new ArrayDeque<Future<List<Object>>>();
+        final CompletionService<List<Object>> completionService =
+                new ExecutorCompletionService<List<Object>>(executor);
+        try {
+            byte[] chunk;
+            while (!mCanceled && (chunk = readChunk(reader)) != null) {
+                if (mPreserveOrder) {
+                    pendingList.add(executor.submit(new ChunkParser(chunk)));
+                    while (!pendingList.isEmpty() && (pendingList.size() >= mMaxPendingChunks
+                            || pendingList.peek().isDone())) {
+                        deliver(pendingList.poll());
+                    }
+                } else {
+                    pendingList.add(completionService.submit(new ChunkParser(chunk)));
+                    Future<List<Object>> future;
+                    while ((future = completionService.poll()) != null
+                            || pendingList.size() >= mMaxPendingChunks) {
+                        if (future == null) {
+                            future = takeCompleted(completionService);
+                        }
+                        pendingList.remove(future);
+                        deliver(future);
+                    }
+                }
+            }
+            while (!mCanceled && !pendingList.isEmpty()) {
+                final Future<List<Object>> future = (mPreserveOrder ? pendingList.peek()
+                        : takeCompleted(completionService));
+                pendingList.remove(future);
+                deliver(future);
+            }
+            if (mCanceled) {
+                Log.i(LOG_TAG, "Cancel request has come. exitting parse operation.");
+            }
+        } finally {
+            for (Future<List<Object>> future : pendingList) {
+                future.cancel(true);
+            }
+            if (executor != mExecutor) {
+                executor.shutdown();
+            }
+        }
+
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardEnded();
+        }
+    }
+
+    /**
+     * Reads one top-level entry, including its nested entries, and returns it as bytes in the
+     * intermediate charset with CRLF line terminators.
+     *
+     * A line outside of any entry is returned as a chunk of its own, so that the parser
+     * reports it in the same way as a sequential parse does.
+     *
+     * @return null when the reader reached its end, or the parse is canceled.
+     */
+    private byte[] readChunk(CustomBufferedReader reader) throws IOException {
+        final ChunkBuilder builder = new ChunkBuilder();
+        int depth = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (mCanceled) {
+                return null;
+            }
+            if (depth == 0 && line.trim().length() == 0) {
+                continue;
+            }
+            builder.appendLine(line);
+            if (VCardParserImpl_V21.isEntryBoundary(line, "BEGIN")) {
+                depth++;
+            } else if (depth == 0
+                    || (VCardParserImpl_V21.isEntryBoundary(line, "END") && --depth == 0)) {
+                break;
+            }
+        }
+        return (builder.isEmpty() ? null : builder.toByteArray());
+    }
+
+    private static Future<List<Object>> takeCompleted(
+            CompletionService<List<Object>> completionService) throws IOException {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for vCard entries.");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(Future<List<Object>> future) throws IOException, VCardException {
+        final List<Object> eventList;
+        try {
+            eventList = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for vCard entries.");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof VCardException) {
+                throw (VCardException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new VCardException("Unexpected failure: " + cause);
+        }
+
+        for (Object event : eventList) {
+            if (mCanceled) {
+                return;
+            }
+            if (event == ENTRY_STARTED) {
+                for (VCardInterpreter interpreter : mInterpreterList) {
+                    interpreter.onEntryStarted();
+                }
+            } else if (event == ENTRY_ENDED) {
+                for (VCardInterpreter interpreter : mInterpreterList) {
+                    interpreter.onEntryEnded();
+                }
+            } else {
+                final VCardProperty property = (VCardProperty) event;
+                for (VCardInterpreter interpreter : mInterpreterList) {
+                    interpreter.onPropertyCreated(property);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses one chunk on a worker thread and records the events for the calling thread.
+     */
+    private class ChunkParser implements Callable<List<Object>>, VCardInterpreter {
+        private final byte[] mChunk;
+        private final List<Object> mEventList = new ArrayList<Object>();
+
+        public ChunkParser(byte[] chunk) {
+            mChunk = chunk;
+        }
+
+        @Override
+        public List<Object> call() throws IOException, VCardException {
+            final VCardParserImpl_V21 parserImpl = startParserImpl();
+            try {
+                parserImpl.addInterpreter(this);
+                parserImpl.parse(new ByteArrayInputStream(mChunk));
+            } finally {
+                mRunningParserImplSet.remove(parserImpl);
+            }
+            return mEventList;
+        }
+
+        @Override
+        public void onVCardStarted() {
+        }
+
+        @Override
+        public void onVCardEnded() {
+        }
+
+        @Override
+        public void onEntryStarted() {
+            mEventList.add(ENTRY_STARTED);
+        }
+
+        @Override
+        public void onEntryEnded() {
+            mEventList.add(ENTRY_ENDED);
+        }
+
+        @Override
+        public void onPropertyCreated(VCardProperty property) {
+            // Decodes values here so that the calling thread only dispatches events.
+            property.getValueList();
+            mEventList.add(property);
+        }
+    }
+
+    /**
+     * Collects lines of one chunk into a byte array. Each char in a line read with the
+     * intermediate charset fits in one byte.
+     */
+    private static class ChunkBuilder {
+        private byte[] mBuffer = new byte[1024];
+        private int mLength;
+
+        public void appendLine(String line) {
+            final int length = line.length();
+            ensureCapacity(mLength + length + 2);
+            for (int i = 0; i < length; i++) {
+                mBuffer[mLength++] = (byte) line.charAt(i);
+            }
+            mBuffer[mLength++] = '\r';
+            mBuffer[mLength++] = '\n';
+        }
+
+        public boolean isEmpty() {
+            return mLength == 0;
+        }
+
+        public byte[] toByteArray() {
+            final byte[] result = new byte[mLength];
+            System.arraycopy(mBuffer, 0, result, 0, mLength);
+            return result;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > mBuffer.length) {
+                final byte[] newBuffer = new byte[Math.max(capacity, mBuffer.length * 2)];
+                System.arraycopy(mBuffer, 0, newBuffer, 0, mLength);
+                mBuffer = newBuffer;
+            }
+        }
+    }
+}
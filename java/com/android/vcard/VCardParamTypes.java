@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.Collection;
+
+/**
+ * <p>
+ * Bits for TYPE parameter values which {@link VCardEntry} understands, so that it can check
+ * the values of a property with int comparisons instead of upper-casing and comparing each
+ * value again and again.
+ * </p>
+ * <p>
+ * Values are compared case-insensitively, as vCard specifications say.
+ * </p>
+ */
+/* package */ final class VCardParamTypes {
+    /**
+     * Bit for values not in this class.
+     */
+    static final int UNKNOWN = 0;
+
+    static final int PREF = 1 << 0;
+    static final int HOME = 1 << 1;
+    static final int WORK = 1 << 2;
+    static final int CELL = 1 << 3;
+    static final int COMPANY = 1 << 4;
+    static final int PARCEL = 1 << 5;
+    static final int DOM = 1 << 6;
+    static final int INTL = 1 << 7;
+    static final int X_IRMC_N = 1 << 8;
+
+    private static final String[] NAMES = {
+        VCardConstants.PARAM_TYPE_PREF,
+        VCardConstants.PARAM_TYPE_HOME,
+        VCardConstants.PARAM_TYPE_WORK,
+        VCardConstants.PARAM_TYPE_CELL,
+        VCardConstants.PARAM_EXTRA_TYPE_COMPANY,
+        VCardConstants.PARAM_ADR_TYPE_PARCEL,
+        VCardConstants.PARAM_ADR_TYPE_DOM,
+        VCardConstants.PARAM_ADR_TYPE_INTL,
+        VCardConstants.PARAM_TYPE_X_IRMC_N
+    };
+
+    private VCardParamTypes() {
+    }
+
+    /**
+     * @return the bit for the value, or {@link #UNKNOWN}.
+     */
+    static int getType(String value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+        final int length = value.length();
+        for (int i = 0; i < NAMES.length; i++) {
+            final String name = NAMES[i];
+            if (name.length() == length && name.equalsIgnoreCase(value)) {
+                return 1 << i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return the bits for all the known values in the collection, which may be null.
+     */
+    static int parse(Collection<String> values) {
+        int types = 0;
+        if (values != null) {
+            for (String value : values) {
+                types |= getType(value);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * <p>
+     * Tells whether each of the values is known, appears once, and has its bit in the mask,
+     * judging from the bits {@link #parse(Collection)} returned for them. When this returns
+     * true, the bits tell everything about the values; otherwise a caller needing a label for
+     * the other values has to walk the values in order.
+     * </p>
+     */
+    static boolean containsOnly(Collection<String> values, int types, int mask) {
+        return values == null
+                || ((types & ~mask) == 0 && Integer.bitCount(types) == values.size());
+    }
+
+    /**
+     * @return true when the value starts with "X-" in any case.
+     */
+    static boolean isExtension(String value) {
+        return value.regionMatches(true, 0, "X-", 0, 2);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.exception.VCardException;
+
+/**
+ * <p>
+ * Receives broken entries found in lenient mode, which is enabled via
+ * {@link VCardParser_V21#setErrorListener(VCardParseErrorListener)}.
+ * </p>
+ * <p>
+ * In lenient mode, an entry which causes {@link VCardException} ends at the broken line, the
+ * rest of it is skipped up to the next top-level "BEGIN:VCARD" line, and the parse goes on
+ * with it, so that one broken entry does not cost the whole file.
+ * {@link com.android.vcard.exception.VCardVersionException} still stops the parse, so that
+ * callers can retry with a parser for another version.
+ * </p>
+ * <p>
+ * Registered {@link VCardInterpreter}s receive the properties of the broken entry read before
+ * the broken line, followed by {@link VCardLenientInterpreter#onEntryAborted()} for the entry
+ * and any nested entries left open, so that the broken entry is dropped.
+ * {@link VCardEntryConstructor} implements it. Interpreters which don't implement
+ * {@link VCardLenientInterpreter} receive {@link VCardInterpreter#onEntryEnded()} instead, as
+ * if the entry ended there. An "END" line of an unknown type (e.g. "END:FOO") is taken as the
+ * end of the current entry.
+ * </p>
+ */
+public interface VCardParseErrorListener {
+    /**
+     * Called on the parsing thread after the broken entry is dropped and skipped. Offsets are
+     * relative to where the parse started.
+     *
+     * @param startOffset The byte offset where the broken entry starts.
+     * @param endOffset The byte offset where the next entry starts, or the end of the input.
+     * @param exception The cause.
+     */
+    void onEntryError(long startOffset, long endOffset, VCardException exception);
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+/**
+ * <p>
+ * Time spent in each phase of one parse, measured with {@link System#nanoTime()}.
+ * </p>
+ * <p>
+ * The phases don't overlap. Decoding requested by interpreters while they handle a property
+ * is counted as decode time, not as dispatch time. Tokenize time is everything else spent
+ * in the parser, e.g. splitting lines into names, parameters, and values.
+ * </p>
+ */
+public class VCardParseMetrics {
+    /* package */ long mStartNanos;
+    /* package */ long mEndNanos;
+    /* package */ long mIoNanos;
+    /* package */ long mDecodeNanos;
+    /* package */ long mDispatchNanos;
+    /* package */ long mBytesRead;
+    /* package */ int mEntryCount;
+
+    /**
+     * @return the time from the start to the end of the parse.
+     */
+    public long getTotalNanos() {
+        return mEndNanos - mStartNanos;
+    }
+
+    /**
+     * @return the time spent reading the input.
+     */
+    public long getIoNanos() {
+        return mIoNanos;
+    }
+
+    /**
+     * @return the time spent splitting lines into names, parameters, and values.
+     */
+    public long getTokenizeNanos() {
+        return getTotalNanos() - mIoNanos - mDecodeNanos - mDispatchNanos;
+    }
+
+    /**
+     * @return the time spent decoding values (BASE64, Quoted-Printable, charsets,
+     * and unescaping).
+     */
+    public long getDecodeNanos() {
+        return mDecodeNanos;
+    }
+
+    /**
+     * @return the time spent in {@link VCardInterpreter} callbacks, excluding decoding.
+     */
+    public long getDispatchNanos() {
+        return mDispatchNanos;
+    }
+
+    public long getBytesRead() {
+        return mBytesRead;
+    }
+
+    /**
+     * @return the number of entries parsed, including nested ones.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    public double getEntriesPerSecond() {
+        final long totalNanos = getTotalNanos();
+        return (totalNanos > 0 ? mEntryCount * 1000000000.0 / totalNanos : 0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("total: %d ms, io: %d ms, tokenize: %d ms, decode: %d ms, "
+                + "dispatch: %d ms, bytes: %d, entries: %d (%.1f/s)",
+                getTotalNanos() / 1000000, mIoNanos / 1000000, getTokenizeNanos() / 1000000,
+                mDecodeNanos / 1000000, mDispatchNanos / 1000000, mBytesRead, mEntryCount,
+                getEntriesPerSecond());
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+/**
+ * <p>
+ * Implemented by parsers which tell how far a parse has gone in top-level entries, so that an
+ * interrupted import can resume from there (see {@link VCardImportCheckpoint}).
+ * {@link VCardParser_V21}, {@link VCardParser_V30}, and {@link VCardParser_V40} implement
+ * this.
+ * </p>
+ */
+public interface VCardParseProgress {
+    /**
+     * <p>Returns the number of top-level entries parsed since the current (or last) parse
+     * started. Nested entries are counted as part of their parent. When called from
+     * {@link VCardInterpreter#onEntryEnded()} of a top-level entry, the entry is already
+     * counted.</p>
+     */
+    int getCompletedEntryCount();
+
+    /**
+     * <p>Returns the byte offset right after the last top-level entry counted by
+     * {@link #getCompletedEntryCount()}, relative to where the parse started. Parsing the same
+     * input from there continues with the next entry.</p>
+     */
+    long getLastEntryEndOffset();
+}
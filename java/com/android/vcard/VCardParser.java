@@ -19,9 +19,70 @@ import com.android.vcard.exception.VCardException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 public abstract class VCardParser {
 
+    /**
+     * <p>
+     * Time and/or byte budget for a parse, given to
+     * {@link VCardParser_V21#parse(InputStream, Deadline)} and its counterparts of the other
+     * versions.
+     * </p>
+     * <p>
+     * The budget is checked while lines are read, including lines inside one entry. The time
+     * is checked once in a few dozen lines, so a parse may go slightly over it.
+     * A Deadline is meant for one parse.
+     * </p>
+     */
+    public static final class Deadline {
+        private static final long NO_LIMIT = Long.MAX_VALUE;
+
+        private final long mDeadlineNanos;
+        private final long mMaxBytes;
+        private volatile boolean mExceeded;
+
+        /**
+         * @param timeoutMillis the time allowed from now. Negative means no time limit.
+         * @param maxBytes the number of input bytes allowed. Negative means no byte limit.
+         */
+        public Deadline(long timeoutMillis, long maxBytes) {
+            mDeadlineNanos = (timeoutMillis >= 0
+                    ? System.nanoTime() + timeoutMillis * 1000000L : NO_LIMIT);
+            mMaxBytes = (maxBytes >= 0 ? maxBytes : NO_LIMIT);
+        }
+
+        public static Deadline ofTimeout(long timeoutMillis) {
+            return new Deadline(timeoutMillis, -1);
+        }
+
+        public static Deadline ofBytes(long maxBytes) {
+            return new Deadline(-1, maxBytes);
+        }
+
+        /**
+         * @return true when a parse stopped because of this budget.
+         */
+        public boolean isExceeded() {
+            return mExceeded;
+        }
+
+        /* package */ boolean checkBytesExceeded(long bytesRead) {
+            if (bytesRead > mMaxBytes) {
+                mExceeded = true;
+            }
+            return mExceeded;
+        }
+
+        /* package */ boolean checkTimeExceeded() {
+            if (mDeadlineNanos != NO_LIMIT && System.nanoTime() - mDeadlineNanos > 0) {
+                mExceeded = true;
+            }
+            return mExceeded;
+        }
+    }
+
     /**
      * Registers one {@link VCardInterpreter} instance, which receives events along with
      * vCard parsing.
@@ -42,6 +103,21 @@ public abstract class VCardParser {
      */
     public abstract void parse(InputStream is) throws IOException, VCardException;
 
+    /**
+     * <p>Parses a whole file as a vCard file, starting from the current position of the given
+     * channel, and lets registered {@link VCardInterpreter} instances handle callbacks.</p>
+     *
+     * <p>Implementations may map the file into memory and scan it without copying it into an
+     * intermediate buffer, which is faster than {@link #parse(InputStream)} for large files.
+     * The channel is not closed by this method.</p>
+     *
+     * @param channel The source to parse.
+     * @throws IOException, VCardException
+     */
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        parse(Channels.newInputStream(channel));
+    }
+
     /**
      * <p>Parses the first vCard entry in InputStream and lets registered {@link VCardInterpreter}
      * instances handle callbacks.</p>
@@ -73,6 +149,24 @@ public abstract class VCardParser {
      */
     public abstract void parseOne(InputStream is) throws IOException, VCardException;
 
+    /**
+     * <p>Parses only the entry at the given position of the index, in the same manner as
+     * {@link #parseOne(InputStream)}. Entries before it are not read at all.</p>
+     *
+     * <p>The index must have been built with {@link VCardEntryIndex#build(FileChannel)} against
+     * the same file. The position of the channel is moved, and the channel is not closed.</p>
+     *
+     * @param channel The file to parse.
+     * @param index The index of the file.
+     * @param entryIndex The zero-based position of a top-level entry in the file.
+     * @throws IOException, VCardException
+     */
+    public void parseAt(FileChannel channel, VCardEntryIndex index, int entryIndex)
+            throws IOException, VCardException {
+        channel.position(index.getOffset(entryIndex));
+        parseOne(Channels.newInputStream(channel));
+    }
+
     /**
      * @deprecated use {@link #addInterpreter(VCardInterpreter)} and
      * {@link #parse(InputStream)}
@@ -89,7 +183,14 @@ public abstract class VCardParser {
      * Cancel parsing vCard. Useful when you want to stop the parse in the other threads.
      * </p>
      * <p>
-     * Actual cancel is done after parsing the current vcard.
+     * Actual cancel is done when the parser reads the next line, which may be in the middle
+     * of a vCard entry. In that case, registered {@link VCardInterpreter} instances don't
+     * receive {@link VCardInterpreter#onEntryEnded()} for the entry, while they still receive
+     * {@link VCardInterpreter#onVCardEnded()}.
+     * </p>
+     * <p>
+     * Interrupting the parsing thread has the same effect as this method. The interrupted
+     * status of the thread is kept.
      * </p>
      */
     public abstract void cancel();
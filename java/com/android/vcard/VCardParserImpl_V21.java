@@ -25,12 +25,21 @@ import com.android.vcard.exception.VCardInvalidCommentLineException;
 import com.android.vcard.exception.VCardInvalidLineException;
 import com.android.vcard.exception.VCardVersionException;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -45,8 +54,77 @@ import java.util.Set;
 /* package */ class VCardParserImpl_V21 {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
 
-    protected static final class CustomBufferedReader extends BufferedReader {
-        private long mTime;
+    /**
+     * <p>
+     * Line reader working directly on the bytes of the underlying stream.
+     * </p>
+     * <p>
+     * Line breaks (CR, LF, and CRLF) are detected in the byte buffer and each line is turned
+     * into a String with the intermediate charset in one step, so that we don't need
+     * {@link java.io.InputStreamReader} and {@link java.io.BufferedReader}, both of which
+     * copy every char into their own buffer before a line is built.
+     * </p>
+     * <p>
+     * When constructed with a {@link FileChannel}, the file is mapped into memory window by
+     * window and scanned in place, without copying it into an intermediate buffer.
+     * </p>
+     */
+    protected static final class CustomBufferedReader {
+        private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+        /**
+         * The size of each region mapped from a {@link FileChannel}. A single
+         * {@link MappedByteBuffer} cannot exceed 2GB, and smaller windows keep the address space
+         * usage moderate on 32bit devices.
+         */
+        private static final int MAP_WINDOW_SIZE = 32 * 1024 * 1024;
+
+        private final Charset mCharset;
+
+        // Used when reading from InputStream.
+        private final InputStream mIn;
+        private final byte[] mArray;
+
+        // Used when reading from FileChannel.
+        private final FileChannel mChannel;
+        private long mChannelPosition;
+        private final long mChannelSize;
+        private MappedByteBuffer mMappedBuffer;
+
+        /**
+         * mArray or mMappedBuffer, in the byte order {@link VCardLineScanner} requires.
+         */
+        private ByteBuffer mScanBuffer;
+
+        private int mPosition;
+        private int mLimit;
+
+        /**
+         * The number of bytes put into the buffer so far.
+         */
+        private long mFilledBytes;
+
+        /**
+         * Used when one line spans over multiple buffer fills.
+         */
+        private byte[] mLineBuffer;
+
+        /**
+         * Used to decode a line in the mapped window directly. Lazily created.
+         */
+        private CharsetDecoder mDecoder;
+        private CharBuffer mLineChars;
+
+        /**
+         * True when the last line ended with CR, in which case the following LF must be
+         * dropped.
+         */
+        private boolean mSkipLf;
+
+        /**
+         * Null unless a {@link VCardParseListener} is set to the parser.
+         */
+        private VCardParseMetrics mMetrics;
 
         /**
          * Needed since "next line" may be null due to end of line.
@@ -54,23 +132,59 @@ import java.util.Set;
         private boolean mNextLineIsValid;
         private String mNextLine;
 
-        public CustomBufferedReader(Reader in) {
-            super(in);
+        /**
+         * Byte offsets where the line last returned by {@link #readLine()} and the peeked
+         * line start.
+         */
+        private long mLineStart;
+        private long mNextLineStart;
+
+        /**
+         * Byte offset where the line last read by {@link #readLineInternal()} starts, after
+         * the LF left from the previous line.
+         */
+        private long mReadLineStart;
+
+        /**
+         * Lines given back via {@link #unreadLine(String, long)}, returned before the rest of
+         * the input. Lazily created.
+         */
+        private ArrayDeque<UnreadLine> mUnreadLines;
+
+        public CustomBufferedReader(InputStream in, Charset charset) {
+            mCharset = charset;
+            mIn = in;
+            mArray = new byte[DEFAULT_BUFFER_SIZE];
+            mScanBuffer = VCardLineScanner.wrap(mArray);
+            mChannel = null;
+            mChannelSize = 0;
+        }
+
+        public CustomBufferedReader(FileChannel channel, Charset charset) throws IOException {
+            mCharset = charset;
+            mIn = null;
+            mArray = null;
+            mChannel = channel;
+            mChannelPosition = channel.position();
+            mChannelSize = channel.size();
         }
 
-        @Override
         public String readLine() throws IOException {
             if (mNextLineIsValid) {
                 final String ret = mNextLine;
                 mNextLine = null;
                 mNextLineIsValid = false;
+                mLineStart = mNextLineStart;
                 return ret;
             }
+            if (mUnreadLines != null && !mUnreadLines.isEmpty()) {
+                final UnreadLine unreadLine = mUnreadLines.removeFirst();
+                mLineStart = unreadLine.mStart;
+                return unreadLine.mLine;
+            }
 
-            final long start = System.currentTimeMillis();
-            final String line = super.readLine();
-            final long end = System.currentTimeMillis();
-            mTime += end - start;
+            final String line = readLineInternal();
+            mLineStart = mReadLineStart;
             return line;
         }
 
@@ -78,31 +192,402 @@ import java.util.Set;
          * Read one line, but make this object store it in its queue.
          */
         public String peekLine() throws IOException {
-            if (!mNextLineIsValid) {
-                final long start = System.currentTimeMillis();
-                final String line = super.readLine();
-                final long end = System.currentTimeMillis();
-                mTime += end - start;
-
-                mNextLine = line;
+            if (!mNextLineIsValid && mUnreadLines != null && !mUnreadLines.isEmpty()) {
+                final UnreadLine unreadLine = mUnreadLines.removeFirst();
+                mNextLineStart = unreadLine.mStart;
+                mNextLine = unreadLine.mLine;
+                mNextLineIsValid = true;
+            } else if (!mNextLineIsValid) {
+                mNextLine = readLineInternal();
+                mNextLineStart = mReadLineStart;
                 mNextLineIsValid = true;
             }
 
             return mNextLine;
         }
 
-        public long getTotalmillisecond() {
-            return mTime;
+        /**
+         * @return the number of bytes consumed by lines returned so far, and by a peeked line.
+         */
+        public long getBytesConsumed() {
+            return mFilledBytes - (mLimit - mPosition);
+        }
+
+        /**
+         * @return the byte offset where the line last returned by {@link #readLine()} starts.
+         */
+        public long getLineStart() {
+            return mLineStart;
+        }
+
+        /**
+         * @return the number of bytes consumed by lines returned so far, excluding a peeked
+         * line.
+         */
+        public long getBytesConsumedByReadLines() {
+            if (mNextLineIsValid) {
+                return mNextLineStart;
+            } else if (mUnreadLines != null && !mUnreadLines.isEmpty()) {
+                return mUnreadLines.peekFirst().mStart;
+            }
+            return getBytesConsumed();
+        }
+
+        /**
+         * Gives back a line, which is returned again by the next {@link #readLine()}. Lines
+         * given back multiple times are returned in the reverse order.
+         *
+         * @param lineStart The byte offset of the line, given by {@link #getLineStart()} when
+         * it was read.
+         */
+        public void unreadLine(String line, long lineStart) {
+            if (mNextLineIsValid) {
+                throw new IllegalStateException("A line is peeked");
+            }
+            if (mUnreadLines == null) {
+                mUnreadLines = new ArrayDeque<UnreadLine>();
+            }
+            mUnreadLines.addFirst(new UnreadLine(line, lineStart));
+        }
+
+        /**
+         * Makes this object record the time spent reading the input and the number of bytes
+         * read. With a FileChannel, the time covers mapping the file, while reading the mapped
+         * pages happens during the scan.
+         */
+        public void setMetrics(VCardParseMetrics metrics) {
+            mMetrics = metrics;
+        }
+
+        /**
+         * Same semantics as {@link java.io.BufferedReader#readLine()}: returns null at the end
+         * of the stream, and accepts CR, LF, or CRLF as a line terminator.
+         */
+        private String readLineInternal() throws IOException {
+            mReadLineStart = getBytesConsumed();
+            int lineLength = 0;
+            while (true) {
+                if (mPosition >= mLimit && !fill()) {
+                    return (lineLength > 0 ? new String(mLineBuffer, 0, lineLength, mCharset)
+                            : null);
+                }
+                if (mSkipLf) {
+                    mSkipLf = false;
+                    if (byteAt(mPosition) == '\n') {
+                        mPosition++;
+                        mReadLineStart++;
+                        continue;
+                    }
+                }
+
+                final int start = mPosition;
+                final int end = indexOfLineBreak(start, mLimit);
+                if (end < mLimit) {
+                    final String line;
+                    if (lineLength == 0 && mArray != null) {
+                        line = new String(mArray, start, end - start, mCharset);
+                    } else if (lineLength == 0) {
+                        line = decodeMappedBuffer(start, end);
+                    } else {
+                        lineLength = appendToLineBuffer(lineLength, start, end);
+                        line = new String(mLineBuffer, 0, lineLength, mCharset);
+                    }
+                    mPosition = end + 1;
+                    if (byteAt(end) == '\r') {
+                        // Takes the LF of CRLF now when it is in the buffer, so that
+                        // getBytesConsumed() counts it.
+                        if (mPosition < mLimit) {
+                            if (byteAt(mPosition) == '\n') {
+                                mPosition++;
+                            }
+                        } else {
+                            mSkipLf = true;
+                        }
+                    }
+                    return line;
+                }
+                lineLength = appendToLineBuffer(lineLength, start, mLimit);
+                mPosition = mLimit;
+            }
+        }
+
+        /**
+         * Decodes [start, end) of the mapped window into a String, without copying the bytes
+         * into the line buffer first.
+         */
+        private String decodeMappedBuffer(int start, int end) {
+            if (mDecoder == null) {
+                mDecoder = mCharset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            final int capacity = (int) ((end - start) * (double) mDecoder.maxCharsPerByte()) + 1;
+            if (mLineChars == null || mLineChars.capacity() < capacity) {
+                mLineChars = CharBuffer.allocate(Math.max(capacity, DEFAULT_BUFFER_SIZE));
+            }
+            mLineChars.clear();
+            mDecoder.reset();
+            mMappedBuffer.limit(end);
+            mMappedBuffer.position(start);
+            try {
+                mDecoder.decode(mMappedBuffer, mLineChars, true);
+                mDecoder.flush(mLineChars);
+            } finally {
+                // The line scanner reads the window up to its limit.
+                mMappedBuffer.limit(mLimit);
+            }
+            return new String(mLineChars.array(), 0, mLineChars.position());
+        }
+
+        private byte byteAt(int index) {
+            return (mArray != null ? mArray[index] : mMappedBuffer.get(index));
+        }
+
+        /**
+         * @return the index of the first CR or LF in [start, limit), or limit if there's none.
+         */
+        private int indexOfLineBreak(int start, int limit) {
+            return VCardLineScanner.indexOfLineBreak(mScanBuffer, start, limit);
+        }
+
+        private int appendToLineBuffer(int lineLength, int start, int end) {
+            final int newLength = lineLength + (end - start);
+            if (mLineBuffer == null) {
+                mLineBuffer = new byte[Math.max(newLength, DEFAULT_BUFFER_SIZE)];
+            } else if (newLength > mLineBuffer.length) {
+                final byte[] newBuffer = new byte[Math.max(newLength, mLineBuffer.length * 2)];
+                System.arraycopy(mLineBuffer, 0, newBuffer, 0, lineLength);
+                mLineBuffer = newBuffer;
+            }
+            if (mArray != null) {
+                System.arraycopy(mArray, start, mLineBuffer, lineLength, end - start);
+            } else {
+                mMappedBuffer.position(start);
+                mMappedBuffer.get(mLineBuffer, lineLength, end - start);
+            }
+            return newLength;
+        }
+
+        /**
+         * @return false when the stream reached its end.
+         */
+        private boolean fill() throws IOException {
+            if (mMetrics == null) {
+                return fillInternal();
+            }
+            final long start = System.nanoTime();
+            try {
+                final boolean filled = fillInternal();
+                if (filled) {
+                    mMetrics.mBytesRead += mLimit;
+                }
+                return filled;
+            } finally {
+                mMetrics.mIoNanos += System.nanoTime() - start;
+            }
+        }
+
+        private boolean fillInternal() throws IOException {
+            if (mChannel != null) {
+                if (mChannelPosition >= mChannelSize) {
+                    mPosition = mLimit = 0;
+                    return false;
+                }
+                final int size = (int) Math.min(MAP_WINDOW_SIZE, mChannelSize - mChannelPosition);
+                mMappedBuffer = mChannel.map(FileChannel.MapMode.READ_ONLY, mChannelPosition, size);
+                mMappedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+                mScanBuffer = mMappedBuffer;
+                mChannelPosition += size;
+                mFilledBytes += size;
+                mPosition = 0;
+                mLimit = size;
+                return true;
+            }
+
+            int count;
+            do {
+                count = mIn.read(mArray, 0, mArray.length);
+            } while (count == 0);
+            if (count < 0) {
+                mPosition = mLimit = 0;
+                return false;
+            }
+            mFilledBytes += count;
+            mPosition = 0;
+            mLimit = count;
+            return true;
+        }
+    }
+
+    /**
+     * A line given back to {@link CustomBufferedReader}, with the byte offset where it starts.
+     */
+    private static final class UnreadLine {
+        public final String mLine;
+        public final long mStart;
+
+        public UnreadLine(String line, long start) {
+            mLine = line;
+            mStart = start;
+        }
+    }
+
+    /**
+     * <p>
+     * Decodes BASE64 text given piece by piece (typically line by line) and writes the result
+     * to an OutputStream, so that the whole encoded text is never held in memory.
+     * </p>
+     * <p>
+     * Same as {@link Base64#decode(String, int)}, characters outside the BASE64 alphabet are
+     * ignored. The text is decoded every time a few KB of full 4-character groups are
+     * collected.
+     * </p>
+     */
+    protected static final class Base64LineDecoder {
+        private static final int BUFFER_SIZE = 4096;
+
+        private final OutputStream mOut;
+        private final byte[] mBuffer = new byte[BUFFER_SIZE];
+        private int mLength;
+
+        public Base64LineDecoder(OutputStream out) {
+            mOut = out;
+        }
+
+        /**
+         * @throws IllegalArgumentException when the text is not valid BASE64.
+         */
+        public void decode(String text) throws IOException {
+            final int length = text.length();
+            for (int i = 0; i < length; i++) {
+                final char ch = text.charAt(i);
+                if ((ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z')
+                        || (ch >= '0' && ch <= '9') || ch == '+' || ch == '/' || ch == '=') {
+                    if (mLength == BUFFER_SIZE) {
+                        flush(BUFFER_SIZE);
+                    }
+                    mBuffer[mLength++] = (byte) ch;
+                }
+            }
+        }
+
+        /**
+         * Decodes the remaining text, which may lack its padding.
+         */
+        public void finish() throws IOException {
+            flush(mLength);
+        }
+
+        /**
+         * Decodes the first "length" bytes of the buffer, where "length" must be a multiple
+         * of 4 unless this is the last call.
+         */
+        private void flush(int length) throws IOException {
+            if (length > 0) {
+                mOut.write(Base64.decode(mBuffer, 0, length, Base64.DEFAULT));
+                System.arraycopy(mBuffer, length, mBuffer, 0, mLength - length);
+                mLength -= length;
+            }
         }
     }
 
     private static final String DEFAULT_ENCODING = "8BIT";
     private static final String DEFAULT_CHARSET = "UTF-8";
 
+    /**
+     * Parameter names handled by {@link #handleParams(VCardProperty, String)} itself.
+     */
+    private static final String[] sKnownParamNames = {
+        VCardConstants.PARAM_TYPE, VCardConstants.PARAM_VALUE, VCardConstants.PARAM_ENCODING,
+        VCardConstants.PARAM_CHARSET, VCardConstants.PARAM_LANGUAGE
+    };
+
+    /**
+     * {@link VCardConfig#DEFAULT_INTERMEDIATE_CHARSET}, resolved once. Looking up a charset by
+     * name may take a lock shared among threads when the small caches of {@link Charset} miss.
+     */
+    /* package */ static final Charset INTERMEDIATE_CHARSET =
+            Charset.forName(VCardConfig.DEFAULT_INTERMEDIATE_CHARSET);
+
     protected final String mIntermediateCharset;
 
     private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
-    private boolean mCanceled;
+    private volatile boolean mCanceled;
+
+    /**
+     * The number of top-level entries parsed since the parse started, and the byte offset
+     * right after the last one.
+     */
+    private int mCompletedEntryCount;
+    private long mLastEntryEndOffset;
+
+    /**
+     * Non-null in lenient mode, where a broken entry is reported here and skipped instead of
+     * stopping the parse.
+     */
+    private VCardParseErrorListener mErrorListener;
+
+    /**
+     * The number of entries started but not ended yet, and the byte offset where the current
+     * top-level entry starts. Used in lenient mode.
+     */
+    private int mEntryDepth;
+    private long mEntryStartOffset;
+
+    /**
+     * True when the last line read is an "END" line of an unknown type, which lenient mode
+     * takes as the end of the current entry.
+     */
+    private boolean mBrokenEndLineRead;
+
+    /**
+     * Budget of the current parse. May be null.
+     */
+    private VCardParser.Deadline mDeadline;
+
+    /**
+     * True when {@link #parseNext()} stopped before the end of the input.
+     */
+    private boolean mStopped;
+
+    /**
+     * Counts calls to {@link #checkStopRequested()} so that the more expensive checks are
+     * done only once in a while.
+     */
+    private int mStopCheckCount;
+
+    private VCardBinarySink mBinarySink;
+
+    private VCardParseListener mParseListener;
+
+    /**
+     * Metrics of the current parse. Null when no {@link VCardParseListener} is set, in which
+     * case nothing is measured.
+     */
+    private VCardParseMetrics mMetrics;
+
+    /**
+     * Non-null when the parser reuses one {@link VCardProperty} for all properties.
+     */
+    private VCardProperty mReusableProperty;
+
+    /**
+     * Decoder of the property being created, whose decode time is counted after
+     * {@link #notifyPropertyCreated(VCardProperty)}.
+     */
+    private LazyValueDecoder mLastValueDecoder;
+
+    /**
+     * Non-null when the parser reuses one {@link VCardProperty} for all properties, in which
+     * case the decoder of the values is reused too.
+     */
+    private LazyValueDecoder mReusableValueDecoder;
+
+    /**
+     * False when a VERSION of another version is parsed with the rules of this class instead
+     * of causing {@link VCardVersionException}.
+     */
+    private boolean mVersionCheckEnabled = true;
 
     /**
      * <p>
@@ -162,10 +647,24 @@ import java.util.Set;
     }
 
     /**
+     * @return a parser for the vCard version specified in vcardType.
+     */
+    /* package */ static VCardParserImpl_V21 create(int vcardType) {
+        if (VCardConfig.isVersion40(vcardType)) {
+            return new VCardParserImpl_V40(vcardType);
+        } else if (VCardConfig.isVersion30(vcardType)) {
+            return new VCardParserImpl_V30(vcardType);
+        } else {
+            return new VCardParserImpl_V21(vcardType);
+        }
+    }
+
+    /**
+     * @param propertyNameToken the token of the name given by {@link VCardPropertyNames}.
      * @return true when a given property name is a valid property name.
      */
-    protected boolean isValidPropertyName(final String propertyName) {
-        if (!(getKnownPropertyNameSet().contains(propertyName.toUpperCase()) ||
+    protected boolean isValidPropertyName(int propertyNameToken, final String propertyName) {
+        if (!(VCardPropertyNames.contains(getKnownPropertyNameTokens(), propertyNameToken) ||
                 propertyName.startsWith("X-"))
                 && !mUnknownTypeSet.contains(propertyName)) {
             mUnknownTypeSet.add(propertyName);
@@ -217,16 +716,16 @@ import java.util.Set;
         mCurrentCharset = DEFAULT_CHARSET;
 
         boolean allowGarbage = false;
+        mEntryStartOffset = getConsumedOffset();
         if (!readBeginVCard(allowGarbage)) {
             return false;
         }
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onEntryStarted();
-        }
+        mEntryStartOffset = mReader.getLineStart();
+        notifyEntryStarted();
         parseItems();
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onEntryEnded();
-        }
+        mCompletedEntryCount++;
+        mLastEntryEndOffset = getConsumedOffset();
+        notifyEntryEnded();
         return true;
     }
 
@@ -300,25 +799,29 @@ import java.util.Set;
      * "AGENT" [params] ":" vcard CRLF
      */
     protected boolean parseItem() throws IOException, VCardException {
+        checkStopRequested();
+
         // Reset for an item.
         mCurrentEncoding = DEFAULT_ENCODING;
 
         final String line = getNonEmptyLine();
         final VCardProperty propertyData = constructPropertyData(line);
 
-        final String propertyNameUpper = propertyData.getName().toUpperCase();
+        final String propertyNameUpper = propertyData.getNameUpperCase();
         final String propertyRawValue = propertyData.getRawValue();
+        final int propertyNameToken = propertyData.getNameToken();
 
-        if (propertyNameUpper.equals(VCardConstants.PROPERTY_BEGIN)) {
+        if (propertyNameToken == VCardPropertyNames.BEGIN) {
             if (propertyRawValue.equalsIgnoreCase("VCARD")) {
                 handleNest();
             } else {
                 throw new VCardException("Unknown BEGIN type: " + propertyRawValue);
             }
-        } else if (propertyNameUpper.equals(VCardConstants.PROPERTY_END)) {
+        } else if (propertyNameToken == VCardPropertyNames.END) {
             if (propertyRawValue.equalsIgnoreCase("VCARD")) {
                 return true;  // Ended.
             } else {
+                mBrokenEndLineRead = true;
                 throw new VCardException("Unknown END type: " + propertyRawValue);
             }
         } else {
@@ -330,13 +833,17 @@ import java.util.Set;
     private void parseItemInter(VCardProperty property, String propertyNameUpper)
             throws IOException, VCardException {
         String propertyRawValue = property.getRawValue();
-        if (propertyNameUpper.equals(VCardConstants.PROPERTY_AGENT)) {
+        if (property.getNameToken() == VCardPropertyNames.AGENT) {
             handleAgent(property);
-        } else if (isValidPropertyName(propertyNameUpper)) {
-            if (propertyNameUpper.equals(VCardConstants.PROPERTY_VERSION) &&
+        } else if (isValidPropertyName(property.getNameToken(), propertyNameUpper)) {
+            if (property.getNameToken() == VCardPropertyNames.VERSION &&
                     !propertyRawValue.equals(getVersionString())) {
-                throw new VCardVersionException(
-                        "Incompatible version: " + propertyRawValue + " != " + getVersionString());
+                if (mVersionCheckEnabled) {
+                    throw new VCardVersionException("Incompatible version: "
+                            + propertyRawValue + " != " + getVersionString());
+                }
+                Log.w(LOG_TAG, "Parse an entry of version " + propertyRawValue
+                        + " as version " + getVersionString());
             }
             handlePropertyValue(property, propertyNameUpper);
         } else {
@@ -344,92 +851,270 @@ import java.util.Set;
         }
     }
 
+    /**
+     * @return the byte offset right after the last line given to the parser, e.g. the
+     * "END:VCARD" line just read. Subclasses reading lines ahead must exclude them.
+     */
+    protected long getConsumedOffset() {
+        return mReader.getBytesConsumedByReadLines();
+    }
+
+    /**
+     * Same as {@link #parseOneVCard()}, but in lenient mode, ends a broken entry at the broken
+     * line, skips the rest of it, and reports it to the {@link VCardParseErrorListener}.
+     */
+    private boolean parseOneVCardLeniently() throws IOException, VCardException {
+        if (mErrorListener == null) {
+            return parseOneVCard();
+        }
+        mBrokenEndLineRead = false;
+        try {
+            return parseOneVCard();
+        } catch (ParseStoppedException e) {
+            throw e;
+        } catch (VCardVersionException e) {
+            // Callers retry the whole input with another version.
+            throw e;
+        } catch (VCardException e) {
+            final long startOffset = mEntryStartOffset;
+            // The END line already read closes one entry, and must not make the next
+            // "BEGIN:VCARD" look nested.
+            final long endOffset = skipBrokenEntry(
+                    mBrokenEndLineRead ? mEntryDepth - 1 : mEntryDepth);
+            abortBrokenEntries(endOffset);
+            mErrorListener.onEntryError(startOffset, endOffset, e);
+            return true;
+        }
+    }
+
+    /**
+     * Drops each entry left open by a broken entry. The broken top-level entry counts as
+     * completed, ending where the next entry starts, so that imports resume after it.
+     */
+    private void abortBrokenEntries(long endOffset) {
+        if (mEntryDepth == 0) {
+            // Broken before "BEGIN:VCARD".
+            return;
+        }
+        while (mEntryDepth > 1) {
+            notifyEntryAborted();
+        }
+        mCompletedEntryCount++;
+        mLastEntryEndOffset = endOffset;
+        notifyEntryAborted();
+    }
+
+    /**
+     * Skips lines until a "BEGIN:VCARD" line which starts a top-level entry, without
+     * consuming that line.
+     *
+     * @param depth The number of entries whose "END:VCARD" line is not read yet.
+     * @return the byte offset where the next entry starts, or the end of the input.
+     */
+    protected long skipBrokenEntry(int depth) throws IOException {
+        String line;
+        while ((line = mReader.peekLine()) != null) {
+            if (isEntryBoundary(line, "BEGIN")) {
+                if (depth == 0) {
+                    break;
+                }
+                depth++;
+            } else if (depth > 0 && isEntryBoundary(line, "END")) {
+                depth--;
+            }
+            mReader.readLine();
+        }
+        return mReader.getBytesConsumedByReadLines();
+    }
+
+    /**
+     * @return true when the line is "BEGIN:VCARD" or "END:VCARD" (given as name), in the same
+     * manner as {@link #readBeginVCard(boolean)} does.
+     */
+    /* package */ static boolean isEntryBoundary(String line, String name) {
+        final int colonIndex = line.indexOf(':');
+        return (colonIndex >= 0
+                && line.substring(0, colonIndex).trim().equalsIgnoreCase(name)
+                && line.substring(colonIndex + 1).trim().equalsIgnoreCase("VCARD"));
+    }
+
     private void handleNest() throws IOException, VCardException {
+        notifyEntryStarted();
+        parseItems();
+        notifyEntryEnded();
+    }
+
+    /**
+     * Thrown to unwind the parse when it should stop in the middle. Never thrown out of
+     * this class.
+     */
+    private static class ParseStoppedException extends VCardException {
+        private static final long serialVersionUID = 1L;
+
+        public ParseStoppedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int STOP_CHECK_INTERVAL_MASK = 0x3f;
+
+    /**
+     * Checks {@link #cancel()} and the byte budget on every call, and the interrupted status
+     * of the thread and the time budget once in {@link #STOP_CHECK_INTERVAL_MASK} + 1 calls,
+     * as they cost more than a field read.
+     */
+    protected void checkStopRequested() throws ParseStoppedException {
+        if (mCanceled) {
+            throw new ParseStoppedException("Cancel request has come.");
+        }
+        if (mDeadline != null && mDeadline.checkBytesExceeded(mReader.getBytesConsumed())) {
+            throw new ParseStoppedException("Byte budget exceeded.");
+        }
+        if ((mStopCheckCount++ & STOP_CHECK_INTERVAL_MASK) != 0) {
+            return;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new ParseStoppedException("Thread was interrupted.");
+        }
+        if (mDeadline != null && mDeadline.checkTimeExceeded()) {
+            throw new ParseStoppedException("Time budget exceeded.");
+        }
+    }
+
+    private void notifyEntryStarted() {
+        mEntryDepth++;
+        final long start = (mMetrics != null ? System.nanoTime() : 0);
         for (VCardInterpreter interpreter : mInterpreterList) {
             interpreter.onEntryStarted();
         }
-        parseItems();
+        if (mMetrics != null) {
+            mMetrics.mDispatchNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void notifyEntryEnded() {
+        mEntryDepth--;
+        final long start = (mMetrics != null ? System.nanoTime() : 0);
         for (VCardInterpreter interpreter : mInterpreterList) {
             interpreter.onEntryEnded();
         }
+        if (mMetrics != null) {
+            mMetrics.mDispatchNanos += System.nanoTime() - start;
+            mMetrics.mEntryCount++;
+        }
     }
 
-    // For performance reason, the states for group and property name are merged into one.
-    static private final int STATE_GROUP_OR_PROPERTY_NAME = 0;
-    static private final int STATE_PARAMS = 1;
-    // vCard 3.0 specification allows double-quoted parameters, while vCard 2.1 does not.
-    static private final int STATE_PARAMS_IN_DQUOTE = 2;
+    /**
+     * Calls {@link VCardLenientInterpreter#onEntryAborted()}, or
+     * {@link VCardInterpreter#onEntryEnded()} for interpreters which can't drop an entry.
+     */
+    private void notifyEntryAborted() {
+        mEntryDepth--;
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            if (interpreter instanceof VCardLenientInterpreter) {
+                ((VCardLenientInterpreter) interpreter).onEntryAborted();
+            } else {
+                interpreter.onEntryEnded();
+            }
+        }
+    }
+
+    private void notifyPropertyCreated(VCardProperty property) {
+        if (mMetrics == null) {
+            mLastValueDecoder = null;
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onPropertyCreated(property);
+            }
+            return;
+        }
+
+        // Interpreters may decode values, which is counted as decode time.
+        final LazyValueDecoder decoder = mLastValueDecoder;
+        mLastValueDecoder = null;
+        final long start = System.nanoTime();
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onPropertyCreated(property);
+        }
+        final long decodeNanos = (decoder != null ? decoder.mDecodeNanos : 0);
+        mMetrics.mDecodeNanos += decodeNanos;
+        mMetrics.mDispatchNanos += System.nanoTime() - start - decodeNanos;
+    }
 
     protected VCardProperty constructPropertyData(String line) throws VCardException {
-        final VCardProperty propertyData = new VCardProperty();
+        final VCardProperty propertyData;
+        if (mReusableProperty != null) {
+            propertyData = mReusableProperty;
+            propertyData.clear();
+        } else {
+            propertyData = new VCardProperty();
+        }
 
         final int length = line.length();
         if (length > 0 && line.charAt(0) == '#') {
             throw new VCardInvalidCommentLineException();
         }
 
-        int state = STATE_GROUP_OR_PROPERTY_NAME;
+        // Jump from one delimiter to the next, instead of examining each char in a switch.
+        // The value part after ':', which is often long, is never scanned.
         int nameIndex = 0;
-
-        // This loop is developed so that we don't have to take care of bottle neck here.
-        // Refactor carefully when you need to do so.
-        for (int i = 0; i < length; i++) {
+        int i = -1;
+        while (true) {
+            i = VCardLineScanner.indexOfDelimiter(line, i + 1, VCardLineScanner.NAME_DELIMITERS);
+            if (i < 0) {
+                throw new VCardInvalidLineException("Invalid line: \"" + line + "\"");
+            }
             final char ch = line.charAt(i);
-            switch (state) {
-                case STATE_GROUP_OR_PROPERTY_NAME: {
-                    if (ch == ':') {  // End of a property name.
-                        final String propertyName = line.substring(nameIndex, i);
-                        propertyData.setName(propertyName);
-                        propertyData.setRawValue( i < length - 1 ? line.substring(i + 1) : "");
-                        return propertyData;
-                    } else if (ch == '.') {  // Each group is followed by the dot.
-                        final String groupName = line.substring(nameIndex, i);
-                        if (groupName.length() == 0) {
-                            Log.w(LOG_TAG, "Empty group found. Ignoring.");
-                        } else {
-                            propertyData.addGroup(groupName);
-                        }
-                        nameIndex = i + 1;  // Next should be another group or a property name.
-                    } else if (ch == ';') {  // End of property name and beginneng of parameters.
-                        final String propertyName = line.substring(nameIndex, i);
-                        propertyData.setName(propertyName);
-                        nameIndex = i + 1;
-                        state = STATE_PARAMS;  // Start parameter parsing.
-                    }
-                    // TODO: comma support (in vCard 3.0 and 4.0).
-                    break;
-                }
-                case STATE_PARAMS: {
-                    if (ch == '"') {
-                        if (VCardConstants.VERSION_V21.equalsIgnoreCase(getVersionString())) {
-                            Log.w(LOG_TAG, "Double-quoted params found in vCard 2.1. " +
-                                    "Silently allow it");
-                        }
-                        state = STATE_PARAMS_IN_DQUOTE;
-                    } else if (ch == ';') {  // Starts another param.
-                        handleParams(propertyData, line.substring(nameIndex, i));
-                        nameIndex = i + 1;
-                    } else if (ch == ':') {  // End of param and beginenning of values.
-                        handleParams(propertyData, line.substring(nameIndex, i));
-                        propertyData.setRawValue(i < length - 1 ? line.substring(i + 1) : "");
-                        return propertyData;
-                    }
-                    break;
+            if (ch == '.') {  // Each group is followed by the dot.
+                final String groupName = line.substring(nameIndex, i);
+                if (groupName.length() == 0) {
+                    Log.w(LOG_TAG, "Empty group found. Ignoring.");
+                } else {
+                    propertyData.addGroup(groupName);
                 }
-                case STATE_PARAMS_IN_DQUOTE: {
-                    if (ch == '"') {
-                        if (VCardConstants.VERSION_V21.equalsIgnoreCase(getVersionString())) {
-                            Log.w(LOG_TAG, "Double-quoted params found in vCard 2.1. " +
-                                    "Silently allow it");
-                        }
-                        state = STATE_PARAMS;
-                    }
-                    break;
+                nameIndex = i + 1;  // Next should be another group or a property name.
+                continue;
+            }
+            // TODO: comma support (in vCard 3.0 and 4.0).
+            propertyData.setName(line.substring(nameIndex, i));
+            if (ch == ':') {  // End of a property name.
+                propertyData.setRawValue(i < length - 1 ? line.substring(i + 1) : "");
+                return propertyData;
+            }
+            break;  // End of property name and beginneng of parameters.
+        }
+
+        nameIndex = i + 1;
+        while (true) {
+            i = VCardLineScanner.indexOfDelimiter(line, i + 1, VCardLineScanner.PARAM_DELIMITERS);
+            if (i < 0) {
+                throw new VCardInvalidLineException("Invalid line: \"" + line + "\"");
+            }
+            final char ch = line.charAt(i);
+            if (ch == '"') {
+                // vCard 3.0 specification allows double-quoted parameters, while vCard 2.1
+                // does not.
+                warnDoubleQuotedParams();
+                i = line.indexOf('"', i + 1);
+                if (i < 0) {
+                    throw new VCardInvalidLineException("Invalid line: \"" + line + "\"");
                 }
+                warnDoubleQuotedParams();
+                continue;
+            }
+            handleParams(propertyData, line.substring(nameIndex, i));
+            if (ch == ':') {  // End of param and beginenning of values.
+                propertyData.setRawValue(i < length - 1 ? line.substring(i + 1) : "");
+                return propertyData;
             }
+            nameIndex = i + 1;  // Starts another param.
         }
+    }
 
-        throw new VCardInvalidLineException("Invalid line: \"" + line + "\"");
+    private void warnDoubleQuotedParams() {
+        if (VCardConstants.VERSION_V21.equalsIgnoreCase(getVersionString())) {
+            Log.w(LOG_TAG, "Double-quoted params found in vCard 2.1. " +
+                    "Silently allow it");
+        }
     }
 
     /*
@@ -441,10 +1126,10 @@ import java.util.Set;
      */
     protected void handleParams(VCardProperty propertyData, String params)
             throws VCardException {
-        final String[] strArray = params.split("=", 2);
-        if (strArray.length == 2) {
-            final String paramName = strArray[0].trim().toUpperCase();
-            String paramValue = strArray[1].trim();
+        final int equalIndex = params.indexOf('=');
+        if (equalIndex >= 0) {
+            final String paramName = getParamNameUpperCase(params, equalIndex);
+            String paramValue = params.substring(equalIndex + 1).trim();
             if (paramName.equals("TYPE")) {
                 handleType(propertyData, paramValue);
             } else if (paramName.equals("VALUE")) {
@@ -461,10 +1146,32 @@ import java.util.Set;
                 throw new VCardException("Unknown type \"" + paramName + "\"");
             }
         } else {
-            handleParamWithoutName(propertyData, strArray[0]);
+            handleParamWithoutName(propertyData, params);
         }
     }
 
+    /**
+     * Same as params.substring(0, end).trim().toUpperCase(), while the parameter names
+     * handled by {@link #handleParams(VCardProperty, String)} don't allocate a new String.
+     */
+    private static String getParamNameUpperCase(String params, int end) {
+        int start = 0;
+        while (start < end && params.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && params.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        final int length = end - start;
+        for (String paramName : sKnownParamNames) {
+            if (paramName.length() == length
+                    && paramName.regionMatches(true, 0, params, start, length)) {
+                return paramName;
+            }
+        }
+        return params.substring(start, end).toUpperCase();
+    }
+
     /**
      * vCard 3.0 parser implementation may throw VCardException.
      */
@@ -569,7 +1276,6 @@ import java.util.Set;
 
     protected void handlePropertyValue(VCardProperty property, String propertyName)
             throws IOException, VCardException {
-        final String propertyNameUpper = property.getName().toUpperCase();
         String propertyRawValue = property.getRawValue();
         final String sourceCharset = VCardConfig.DEFAULT_INTERMEDIATE_CHARSET;
         final Collection<String> charsetCollection =
@@ -581,9 +1287,10 @@ import java.util.Set;
         }
 
         // TODO: have "separableProperty" which reflects vCard spec..
-        if (propertyNameUpper.equals(VCardConstants.PROPERTY_ADR)
-                || propertyNameUpper.equals(VCardConstants.PROPERTY_ORG)
-                || propertyNameUpper.equals(VCardConstants.PROPERTY_N)) {
+        final int propertyNameToken = property.getNameToken();
+        if (propertyNameToken == VCardPropertyNames.ADR
+                || propertyNameToken == VCardPropertyNames.ORG
+                || propertyNameToken == VCardPropertyNames.N) {
             handleAdrOrgN(property, propertyRawValue, sourceCharset, targetCharset);
             return;
         }
@@ -592,38 +1299,51 @@ import java.util.Set;
                 // If encoding attribute is missing, then attempt to detect QP encoding.
                 // This is to handle a bug where the android exporter was creating FN properties
                 // with missing encoding.  b/7292017
-                (propertyNameUpper.equals(VCardConstants.PROPERTY_FN) &&
+                (propertyNameToken == VCardPropertyNames.FN &&
                         property.getParameters(VCardConstants.PARAM_ENCODING) == null &&
                         VCardUtils.appearsLikeAndroidVCardQuotedPrintable(propertyRawValue))
                 ) {
             final String quotedPrintablePart = getQuotedPrintablePart(propertyRawValue);
-            final String propertyEncodedValue =
-                    VCardUtils.parseQuotedPrintable(quotedPrintablePart,
-                            false, sourceCharset, targetCharset);
             property.setRawValue(quotedPrintablePart);
-            property.setValues(propertyEncodedValue);
-            for (VCardInterpreter interpreter : mInterpreterList) {
-                interpreter.onPropertyCreated(property);
-            }
+            setValueDecoder(property, VALUE_TYPE_QUOTED_PRINTABLE, quotedPrintablePart,
+                    sourceCharset, targetCharset);
+            notifyPropertyCreated(property);
         } else if (mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_BASE64)
                 || mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_B)) {
-            // It is very rare, but some BASE64 data may be so big that
+            // BASE64 data is decoded line by line, so the encoded string is never held as
+            // a whole. It is very rare, but some data may still be so big that
             // OutOfMemoryError occurs. To ignore such cases, use try-catch.
+            final long decodeStart = (mMetrics != null ? System.nanoTime() : 0);
+            final long ioNanos = (mMetrics != null ? mMetrics.mIoNanos : 0);
             try {
-                final String base64Property = getBase64(propertyRawValue);
                 try {
-                    property.setByteValue(Base64.decode(base64Property, Base64.DEFAULT));
+                    if (mBinarySink != null) {
+                        final OutputStream out = mBinarySink.openBinaryValue(property);
+                        try {
+                            decodeBase64(propertyRawValue, new Base64LineDecoder(out));
+                        } finally {
+                            out.close();
+                        }
+                        property.setByteValueHandle(
+                                mBinarySink.getBinaryValueHandle(property, out));
+                    } else {
+                        final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                                propertyRawValue.length() / 4 * 3 + 3);
+                        decodeBase64(propertyRawValue, new Base64LineDecoder(out));
+                        property.setByteValue(out.toByteArray());
+                    }
                 } catch (IllegalArgumentException e) {
                     throw new VCardException("Decode error on base64 photo: " + propertyRawValue);
                 }
-                for (VCardInterpreter interpreter : mInterpreterList) {
-                    interpreter.onPropertyCreated(property);
+                if (mMetrics != null) {
+                    // Reading following lines is counted as I/O time.
+                    mMetrics.mDecodeNanos += System.nanoTime() - decodeStart
+                            - (mMetrics.mIoNanos - ioNanos);
                 }
+                notifyPropertyCreated(property);
             } catch (OutOfMemoryError error) {
                 Log.e(LOG_TAG, "OutOfMemoryError happened during parsing BASE64 data!");
-                for (VCardInterpreter interpreter : mInterpreterList) {
-                    interpreter.onPropertyCreated(property);
-                }
+                notifyPropertyCreated(property);
             }
         } else {
             if (!(mCurrentEncoding.equals("7BIT") || mCurrentEncoding.equals("8BIT") ||
@@ -684,21 +1404,14 @@ import java.util.Set;
                 }
             }
 
-            ArrayList<String> propertyValueList = new ArrayList<String>();
-            String value = maybeUnescapeText(VCardUtils.convertStringCharset(
-                    propertyRawValue, sourceCharset, targetCharset));
-            propertyValueList.add(value);
-            property.setValues(propertyValueList);
-            for (VCardInterpreter interpreter : mInterpreterList) {
-                interpreter.onPropertyCreated(property);
-            }
+            setValueDecoder(property, VALUE_TYPE_TEXT, propertyRawValue,
+                    sourceCharset, targetCharset);
+            notifyPropertyCreated(property);
         }
     }
 
     private void handleAdrOrgN(VCardProperty property, String propertyRawValue,
             String sourceCharset, String targetCharset) throws VCardException, IOException {
-        List<String> encodedValueList = new ArrayList<String>();
-
         // vCard 2.1 does not allow QUOTED-PRINTABLE here, but some softwares/devices emit
         // such data.
         if (mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_QP)) {
@@ -709,29 +1422,142 @@ import java.util.Set;
             // "Raw value" from the view of users should contain all part of QP string.
             // TODO: add test for this handling
             property.setRawValue(quotedPrintablePart);
+            setValueDecoder(property, VALUE_TYPE_QUOTED_PRINTABLE_LIST, quotedPrintablePart,
+                    sourceCharset, targetCharset);
+        } else {
+            setValueDecoder(property, VALUE_TYPE_LIST, getPotentialMultiline(propertyRawValue),
+                    sourceCharset, targetCharset);
+        }
 
-            // We split Quoted-Printable String using semi-colon before decoding it, as
-            // the Quoted-Printable may have semi-colon, which confuses splitter.
-            final List<String> quotedPrintableValueList =
-                    VCardUtils.constructListFromValue(quotedPrintablePart, getVersion());
-            for (String quotedPrintableValue : quotedPrintableValueList) {
-                String encoded = VCardUtils.parseQuotedPrintable(quotedPrintableValue,
-                        false, sourceCharset, targetCharset);
-                encodedValueList.add(encoded);
-            }
+        notifyPropertyCreated(property);
+    }
+
+    private static final int VALUE_TYPE_TEXT = 0;
+    private static final int VALUE_TYPE_QUOTED_PRINTABLE = 1;
+    /** Semi-colon separated values like ADR, ORG, and N. */
+    private static final int VALUE_TYPE_LIST = 2;
+    private static final int VALUE_TYPE_QUOTED_PRINTABLE_LIST = 3;
+
+    /**
+     * Lets the property decode its value when an interpreter asks for it. The decoder is kept
+     * until {@link #notifyPropertyCreated(VCardProperty)} so that its decode time is counted.
+     */
+    private void setValueDecoder(VCardProperty property, int valueType, String encodedValue,
+            String sourceCharset, String targetCharset) {
+        final LazyValueDecoder decoder;
+        if (mReusableValueDecoder != null) {
+            decoder = mReusableValueDecoder;
         } else {
-            final String propertyValue = VCardUtils.convertStringCharset(
-                    getPotentialMultiline(propertyRawValue), sourceCharset, targetCharset);
-            final List<String> valueList =
-                    VCardUtils.constructListFromValue(propertyValue, getVersion());
-            for (String value : valueList) {
-                encodedValueList.add(value);
+            decoder = new LazyValueDecoder();
+        }
+        decoder.set(valueType, encodedValue, sourceCharset, targetCharset, getVersion(),
+                mMetrics != null);
+        property.setValueDecoder(decoder);
+        mLastValueDecoder = decoder;
+    }
+
+    /**
+     * <p>
+     * Decodes a property value only when an interpreter asks for it, since interpreters like
+     * {@link VCardEntryCounter} and {@link VCardSourceDetector} never look at values.
+     * </p>
+     * <p>
+     * Lines belonging to the value are read from the input beforehand, so this only keeps
+     * the encoded String and how to decode it. Nothing refers to the parser, which may be
+     * reused or gone when a copied property is decoded.
+     * </p>
+     * <p>
+     * When properties are reused, one object is set again for every property, and
+     * {@link #copy()} gives copied properties their own decoders.
+     * </p>
+     */
+    private static final class LazyValueDecoder implements VCardProperty.ValueDecoder {
+        private int mValueType;
+        private String mEncodedValue;
+        private String mSourceCharset;
+        private String mTargetCharset;
+        private int mVersion;
+        private boolean mTimed;
+
+        /**
+         * Time spent in {@link #decodeValues()}, measured when mTimed is true.
+         */
+        private long mDecodeNanos;
+
+        public void set(int valueType, String encodedValue,
+                String sourceCharset, String targetCharset, int version, boolean timed) {
+            mValueType = valueType;
+            mEncodedValue = encodedValue;
+            mSourceCharset = sourceCharset;
+            mTargetCharset = targetCharset;
+            mVersion = version;
+            mTimed = timed;
+            mDecodeNanos = 0;
+        }
+
+        @Override
+        public LazyValueDecoder copy() {
+            final LazyValueDecoder decoder = new LazyValueDecoder();
+            decoder.set(mValueType, mEncodedValue, mSourceCharset, mTargetCharset, mVersion,
+                    false);
+            return decoder;
+        }
+
+        @Override
+        public List<String> decodeValues() {
+            if (!mTimed) {
+                return decodeValuesInternal();
+            }
+            final long start = System.nanoTime();
+            try {
+                return decodeValuesInternal();
+            } finally {
+                mDecodeNanos += System.nanoTime() - start;
             }
         }
 
-        property.setValues(encodedValueList);
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onPropertyCreated(property);
+        private List<String> decodeValuesInternal() {
+            switch (mValueType) {
+                case VALUE_TYPE_QUOTED_PRINTABLE: {
+                    return Arrays.asList(VCardUtils.parseQuotedPrintable(mEncodedValue,
+                            false, mSourceCharset, mTargetCharset));
+                }
+                case VALUE_TYPE_LIST: {
+                    final String propertyValue = VCardUtils.convertStringCharset(
+                            mEncodedValue, mSourceCharset, mTargetCharset);
+                    return VCardUtils.constructListFromValue(propertyValue, mVersion);
+                }
+                case VALUE_TYPE_QUOTED_PRINTABLE_LIST: {
+                    // We split Quoted-Printable String using semi-colon before decoding it, as
+                    // the Quoted-Printable may have semi-colon, which confuses splitter.
+                    final List<String> quotedPrintableValueList =
+                            VCardUtils.constructListFromValue(mEncodedValue, mVersion);
+                    final List<String> encodedValueList = new ArrayList<String>();
+                    for (String quotedPrintableValue : quotedPrintableValueList) {
+                        encodedValueList.add(VCardUtils.parseQuotedPrintable(
+                                quotedPrintableValue, false, mSourceCharset, mTargetCharset));
+                    }
+                    return encodedValueList;
+                }
+                default: {
+                    final List<String> propertyValueList = new ArrayList<String>();
+                    propertyValueList.add(unescapeText(VCardUtils.convertStringCharset(
+                            mEncodedValue, mSourceCharset, mTargetCharset)));
+                    return propertyValueList;
+                }
+            }
+        }
+
+        /**
+         * vCard 2.1 has no escaping in text values, while vCard 3.0 and 4.0 have.
+         */
+        private String unescapeText(String text) {
+            if (mVersion == VCardConfig.VERSION_40) {
+                return VCardParserImpl_V40.unescapeText(text);
+            } else if (mVersion == VCardConfig.VERSION_30) {
+                return VCardParserImpl_V30.unescapeText(text);
+            }
+            return text;
         }
     }
 
@@ -767,6 +1593,7 @@ import java.util.Set;
             // remove "transport-padding"
             int pos = firstString.length() - 1;
             while (firstString.charAt(pos) != '=') {
+                pos--;
             }
             StringBuilder builder = new StringBuilder();
             builder.append(firstString.substring(0, pos + 1));
@@ -777,10 +1604,12 @@ import java.util.Set;
                 if (line == null) {
                     throw new VCardException("File ended during parsing a Quoted-Printable String");
                 }
+                checkStopRequested();
                 if (line.trim().endsWith("=")) {
                     // remove "transport-padding"
                     pos = line.length() - 1;
                     while (line.charAt(pos) != '=') {
+                        pos--;
                     }
                     builder.append(line.substring(0, pos + 1));
                     builder.append("\r\n");
@@ -829,9 +1658,13 @@ import java.util.Set;
         return builder.toString();
     }
 
-    protected String getBase64(String firstString) throws IOException, VCardException {
-        final StringBuilder builder = new StringBuilder();
-        builder.append(firstString);
+    /**
+     * Reads the BASE64 value starting with firstString, which may continue to following lines,
+     * and gives it to the decoder line by line.
+     */
+    protected void decodeBase64(String firstString, Base64LineDecoder decoder)
+            throws IOException, VCardException {
+        decoder.decode(firstString);
 
         while (true) {
             final String line = peekLine();
@@ -846,9 +1679,9 @@ import java.util.Set;
             //      TEL;TYPE=WORK:+5555555
             // or
             //      END:VCARD
-            String propertyName = getPropertyNameUpperCase(line);
-            if (getKnownPropertyNameSet().contains(propertyName) ||
-                    VCardConstants.PROPERTY_X_ANDROID_CUSTOM.equals(propertyName)) {
+            final int propertyNameToken = getPropertyNameToken(line);
+            if (VCardPropertyNames.contains(getKnownPropertyNameTokens(), propertyNameToken) ||
+                    propertyNameToken == VCardPropertyNames.X_ANDROID_CUSTOM) {
                 Log.w(LOG_TAG, "Found a next property during parsing a BASE64 string, " +
                         "which must not contain semi-colon or colon. Treat the line as next "
                         + "property.");
@@ -862,13 +1695,14 @@ import java.util.Set;
             if (line.length() == 0) {
                 break;
             }
+            checkStopRequested();
             // Trim off any extraneous whitespace to handle 2.1 implementations
             // that use 3.0 style line continuations. This is safe because space
             // isn't a Base64 encoding value.
-            builder.append(line.trim());
+            decoder.decode(line.trim());
         }
 
-        return builder.toString();
+        decoder.finish();
     }
 
     /**
@@ -885,22 +1719,36 @@ import java.util.Set;
      * @return The property name portion. {@literal null} if no property name found.
      */
     private String getPropertyNameUpperCase(String line) {
+        final int end = getPropertyNameEnd(line);
+        return (end >= 0 ? VCardPropertyNames.toUpperCase(line, 0, end) : null);
+    }
+
+    /**
+     * Same as {@link #getPropertyNameUpperCase(String)}, but returns the token for the name
+     * given by {@link VCardPropertyNames}, without allocating a String for an unknown name.
+     */
+    private int getPropertyNameToken(String line) {
+        final int end = getPropertyNameEnd(line);
+        return (end >= 0 ? VCardPropertyNames.getToken(line, 0, end) : VCardPropertyNames.UNKNOWN);
+    }
+
+    /**
+     * @return the index where the property name of the line ends, or -1 when the line has
+     * no colon.
+     */
+    private static int getPropertyNameEnd(String line) {
         final int colonIndex = line.indexOf(":");
         if (colonIndex > -1) {
             final int semiColonIndex = line.indexOf(";");
 
             // Find the minimum index that is greater than -1.
-            final int minIndex;
-            if (colonIndex == -1) {
-                minIndex = semiColonIndex;
-            } else if (semiColonIndex == -1) {
-                minIndex = colonIndex;
+            if (semiColonIndex == -1) {
+                return colonIndex;
             } else {
-                minIndex = Math.min(colonIndex, semiColonIndex);
+                return Math.min(colonIndex, semiColonIndex);
             }
-            return line.substring(0, minIndex).toUpperCase();
         }
-        return null;
+        return -1;
     }
 
     /*
@@ -914,22 +1762,13 @@ import java.util.Set;
     protected void handleAgent(final VCardProperty property) throws VCardException {
         if (!property.getRawValue().toUpperCase().contains("BEGIN:VCARD")) {
             // Apparently invalid line seen in Windows Mobile 6.5. Ignore them.
-            for (VCardInterpreter interpreter : mInterpreterList) {
-                interpreter.onPropertyCreated(property);
-            }
+            notifyPropertyCreated(property);
             return;
         } else {
             throw new VCardAgentNotSupportedException("AGENT Property is not supported now.");
         }
     }
 
-    /**
-     * For vCard 3.0.
-     */
-    protected String maybeUnescapeText(final String text) {
-        return text;
-    }
-
     /**
      * Returns unescaped String if the character should be unescaped. Return
      * null otherwise. e.g. In vCard 2.1, "\;" should be unescaped into ";"
@@ -965,8 +1804,12 @@ import java.util.Set;
         return VCardConstants.VERSION_V21;
     }
 
-    protected Set<String> getKnownPropertyNameSet() {
-        return VCardParser_V21.sKnownPropertyNameSet;
+    /**
+     * @return bits for the tokens of the known property names, given by
+     * {@link VCardPropertyNames#toTokenBits(java.util.Collection)}.
+     */
+    protected long[] getKnownPropertyNameTokens() {
+        return VCardParser_V21.sKnownPropertyNameTokens;
     }
 
     protected Set<String> getKnownTypeSet() {
@@ -1002,51 +1845,242 @@ import java.util.Set;
             throw new NullPointerException("InputStream must not be null.");
         }
 
-        final InputStreamReader tmpReader = new InputStreamReader(is, mIntermediateCharset);
-        mReader = new CustomBufferedReader(tmpReader);
+        mReader = new CustomBufferedReader(is, INTERMEDIATE_CHARSET);
+        resetEntryProgress();
+        parseAllVCards();
+    }
 
-        final long start = System.currentTimeMillis();
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onVCardStarted();
+    /**
+     * Parses the file behind the given channel from its current position, scanning the
+     * memory-mapped file directly. The channel is not closed by this method.
+     */
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        if (channel == null) {
+            throw new NullPointerException("FileChannel must not be null.");
         }
 
-        // vcard_file = [wsls] vcard [wsls]
-        while (true) {
-            synchronized (this) {
-                if (mCanceled) {
-                    Log.i(LOG_TAG, "Cancel request has come. exitting parse operation.");
-                    break;
+        mReader = new CustomBufferedReader(channel, INTERMEDIATE_CHARSET);
+        resetEntryProgress();
+        parseAllVCards();
+    }
+
+    /**
+     * Same as {@link #parse(InputStream)}, but stops when the deadline is exceeded.
+     */
+    public void parse(InputStream is, VCardParser.Deadline deadline)
+            throws IOException, VCardException {
+        mDeadline = deadline;
+        try {
+            parse(is);
+        } finally {
+            mDeadline = null;
+        }
+    }
+
+    private void parseAllVCards() throws IOException, VCardException {
+        startMetrics();
+        try {
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardStarted();
+            }
+
+            // vcard_file = [wsls] vcard [wsls]
+            try {
+                while (true) {
+                    checkStopRequested();
+                    if (!parseOneVCardLeniently()) {
+                        break;
+                    }
                 }
+            } catch (ParseStoppedException e) {
+                Log.i(LOG_TAG, e.getMessage() + " exitting parse operation.");
             }
-            if (!parseOneVCard()) {
-                break;
+
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardEnded();
             }
+        } finally {
+            finishMetrics();
         }
+    }
 
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onVCardEnded();
+    public void parseOne(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+
+        mReader = new CustomBufferedReader(is, INTERMEDIATE_CHARSET);
+        resetEntryProgress();
+
+        startMetrics();
+        try {
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardStarted();
+            }
+            try {
+                parseOneVCard();
+            } catch (ParseStoppedException e) {
+                Log.i(LOG_TAG, e.getMessage() + " exitting parse operation.");
+            }
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardEnded();
+            }
+        } finally {
+            finishMetrics();
         }
     }
 
-    public void parseOne(InputStream is) throws IOException, VCardException {
+    /**
+     * @return the number of top-level entries parsed since the current parse started.
+     * Nested entries are counted as part of their parent.
+     */
+    public int getCompletedEntryCount() {
+        return mCompletedEntryCount;
+    }
+
+    /**
+     * @return the byte offset, relative to where the current parse started, right after the
+     * last top-level entry parsed. A parse started there continues with the next entry.
+     */
+    public long getLastEntryEndOffset() {
+        return mLastEntryEndOffset;
+    }
+
+    private void resetEntryProgress() {
+        mCompletedEntryCount = 0;
+        mLastEntryEndOffset = 0;
+        mEntryDepth = 0;
+        mEntryStartOffset = 0;
+        mStopped = false;
+    }
+
+    private void startMetrics() {
+        if (mParseListener != null) {
+            mMetrics = new VCardParseMetrics();
+            mMetrics.mStartNanos = System.nanoTime();
+            mReader.setMetrics(mMetrics);
+        }
+    }
+
+    private void finishMetrics() {
+        if (mMetrics != null) {
+            final VCardParseMetrics metrics = mMetrics;
+            metrics.mEndNanos = System.nanoTime();
+            mMetrics = null;
+            // Nothing adds to the metrics once they are reported.
+            mReader.setMetrics(null);
+            mParseListener.onParseFinished(metrics);
+        }
+    }
+
+    /**
+     * Makes the parser measure each parse and report it to the listener. Null disables
+     * the measurement.
+     */
+    public void setParseListener(VCardParseListener listener) {
+        mParseListener = listener;
+    }
+
+    /**
+     * Enables lenient mode when non-null. See {@link VCardParseErrorListener}.
+     */
+    public void setErrorListener(VCardParseErrorListener listener) {
+        mErrorListener = listener;
+    }
+
+    /**
+     * Used by {@link VCardMultiVersionParser}, which gives an entry to the parser for the
+     * default version when the VERSION of the entry comes late.
+     */
+    /* package */ void setVersionCheckEnabled(boolean versionCheckEnabled) {
+        mVersionCheckEnabled = versionCheckEnabled;
+    }
+
+    /**
+     * Makes BASE64 values be decoded into the given sink instead of byte arrays set to
+     * {@link VCardProperty}. Null restores the default behavior.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mBinarySink = sink;
+    }
+
+    /**
+     * When true, one {@link VCardProperty} object and its value decoder are reused for all
+     * the properties, so interpreters must use {@link VCardProperty#copy()} to keep one after
+     * {@link VCardInterpreter#onPropertyCreated(VCardProperty)} returns.
+     */
+    public void setReuseProperty(boolean reuseProperty) {
+        mReusableProperty = (reuseProperty ? new VCardProperty() : null);
+        mReusableValueDecoder = (reuseProperty ? new LazyValueDecoder() : null);
+    }
+
+    /**
+     * Prepares for {@link #parseNext()}, which parses the input one entry at a time.
+     * Unlike {@link #parse(InputStream)}, no {@link VCardInterpreter#onVCardStarted()} /
+     * {@link VCardInterpreter#onVCardEnded()} is called.
+     */
+    /* package */ void setInput(InputStream is) {
         if (is == null) {
             throw new NullPointerException("InputStream must not be null.");
         }
 
-        final InputStreamReader tmpReader = new InputStreamReader(is, mIntermediateCharset);
-        mReader = new CustomBufferedReader(tmpReader);
+        setInput(new CustomBufferedReader(is, INTERMEDIATE_CHARSET));
+    }
 
-        final long start = System.currentTimeMillis();
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onVCardStarted();
+    /**
+     * Same as {@link #setInput(InputStream)}, but reads lines from the given reader, which may
+     * be shared with other parsers. See also {@link #unreadLineReadAhead()}.
+     */
+    /* package */ void setInput(CustomBufferedReader reader) {
+        mReader = reader;
+        resetEntryProgress();
+    }
+
+    /**
+     * Gives lines read ahead but not parsed yet back to the reader, so that another parser
+     * sharing the reader can parse them.
+     */
+    protected void unreadLineReadAhead() {
+    }
+
+    /**
+     * Parses the next entry of the input given to {@link #setInput(InputStream)}.
+     *
+     * @return False when reaching end of file.
+     */
+    /* package */ boolean parseNext() throws IOException, VCardException {
+        try {
+            return parseOneVCardLeniently();
+        } catch (ParseStoppedException e) {
+            Log.i(LOG_TAG, e.getMessage() + " exitting parse operation.");
+            mStopped = true;
+            return false;
         }
-        parseOneVCard();
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onVCardEnded();
+    }
+
+    /**
+     * @return true when the last {@link #parseNext()} or {@link #parseNextStrictly()} returned
+     * false because the parse was canceled, interrupted, or out of its budget, rather than
+     * because the input reached its end.
+     */
+    /* package */ boolean wasStopped() {
+        return mStopped;
+    }
+
+    /**
+     * Same as {@link #parseNext()}, but never skips a broken entry even in lenient mode.
+     */
+    /* package */ boolean parseNextStrictly() throws IOException, VCardException {
+        try {
+            return parseOneVCard();
+        } catch (ParseStoppedException e) {
+            Log.i(LOG_TAG, e.getMessage() + " exitting parse operation.");
+            mStopped = true;
+            return false;
         }
     }
 
-    public final synchronized void cancel() {
+    public final void cancel() {
         Log.i(LOG_TAG, "ParserImpl received cancel operation.");
         mCanceled = true;
     }
@@ -20,7 +20,6 @@ import android.util.Log;
 import com.android.vcard.exception.VCardException;
 
 import java.io.IOException;
-import java.util.Set;
 
 /**
  * <p>
@@ -39,6 +38,11 @@ import java.util.Set;
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
 
     private String mPreviousLine;
+    /**
+     * True while the continuation lines of a BASE64 value returned unfolded by
+     * {@link #getNonEmptyLine()} are left for {@link #decodeBase64(String, Base64LineDecoder)}.
+     */
+    private boolean mBase64ValuePending;
     private boolean mEmittedAgentWarning = false;
 
     public VCardParserImpl_V30() {
@@ -70,15 +74,66 @@ import java.util.Set;
         }
     }
 
+    /**
+     * Excludes the line read ahead by {@link #getNonEmptyLine()}, if any.
+     */
+    @Override
+    protected long getConsumedOffset() {
+        return (mPreviousLine != null ? mReader.getLineStart() : super.getConsumedOffset());
+    }
+
+    @Override
+    protected void unreadLineReadAhead() {
+        if (mPreviousLine != null) {
+            mReader.unreadLine(mPreviousLine, mReader.getLineStart());
+            mPreviousLine = null;
+        }
+    }
+
+    @Override
+    protected long skipBrokenEntry(int depth) throws IOException {
+        mBase64ValuePending = false;
+        if (mPreviousLine != null) {
+            // The line read ahead is the first one to examine.
+            if (isEntryBoundary(mPreviousLine, "BEGIN")) {
+                if (depth == 0) {
+                    return mReader.getLineStart();
+                }
+                depth++;
+            } else if (depth > 0 && isEntryBoundary(mPreviousLine, "END")) {
+                depth--;
+            }
+            mPreviousLine = null;
+        }
+        return super.skipBrokenEntry(depth);
+    }
+
     /**
      * vCard 3.0 requires that the line with space at the beginning of the line
      * must be combined with previous line.
      */
     @Override
     protected String getNonEmptyLine() throws IOException, VCardException {
+        if (mBase64ValuePending) {
+            // The property was not decoded, e.g. because of an error in its parameters.
+            // Its continuation lines don't belong to the next property.
+            mBase64ValuePending = false;
+            skipContinuationLines();
+        }
         String line;
         StringBuilder builder = null;
-        while ((line = mReader.readLine()) != null) {
+        while (true) {
+            if (builder == null && mPreviousLine != null && isBase64PropertyLine(mPreviousLine)) {
+                // Leave the continuation lines to decodeBase64(), so that the encoded value
+                // is decoded line by line instead of being concatenated into one String.
+                final String ret = mPreviousLine;
+                mPreviousLine = null;
+                mBase64ValuePending = true;
+                return ret;
+            }
+            if ((line = mReader.readLine()) == null) {
+                break;
+            }
             // Skip empty lines in order to accomodate implementations that
             // send line termination variations such as \r\r\n.
             if (line.length() == 0) {
@@ -290,16 +345,67 @@ import java.util.Set;
     }
 
     /**
+     * <p>
      * This is only called from handlePropertyValue(), which has already
-     * read the first line of this property. With v3.0, the getNonEmptyLine()
-     * routine has already concatenated all following continuation lines.
-     * The routine is implemented in the V21 parser to concatenate v2.1 style
-     * data blocks, but is unnecessary here.
+     * read the first line of this property. Unless the line was folded before its value,
+     * getNonEmptyLine() has left the following continuation lines, which are given to the
+     * decoder one by one here.
+     * </p>
      */
     @Override
-    protected String getBase64(final String firstString)
+    protected void decodeBase64(final String firstString, final Base64LineDecoder decoder)
             throws IOException, VCardException {
-        return firstString;
+        decoder.decode(firstString);
+        if (mBase64ValuePending) {
+            mBase64ValuePending = false;
+            String line;
+            while ((line = mReader.peekLine()) != null) {
+                if (line.length() == 0) {
+                    mReader.readLine();
+                } else if (line.charAt(0) == ' ' || line.charAt(0) == '\t') {
+                    mReader.readLine();
+                    checkStopRequested();
+                    decoder.decode(line.substring(1));
+                } else {
+                    break;
+                }
+            }
+        }
+        decoder.finish();
+    }
+
+    private void skipContinuationLines() throws IOException {
+        String line;
+        while ((line = mReader.peekLine()) != null
+                && (line.length() == 0 || line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+            mReader.readLine();
+        }
+    }
+
+    /**
+     * @return true when the line starts a property with "ENCODING=b" or "ENCODING=BASE64"
+     * among the parameters before its first colon.
+     */
+    private static boolean isBase64PropertyLine(String line) {
+        final int colonIndex = line.indexOf(':');
+        if (colonIndex < 0) {
+            return false;
+        }
+        int start = line.indexOf(';');
+        while (start >= 0 && start < colonIndex) {
+            int end = line.indexOf(';', start + 1);
+            if (end < 0 || end > colonIndex) {
+                end = colonIndex;
+            }
+            final int length = end - start - 1;
+            if ((length == 10 && line.regionMatches(true, start + 1, "ENCODING=B", 0, 10))
+                    || (length == 15
+                            && line.regionMatches(true, start + 1, "ENCODING=BASE64", 0, 15))) {
+                return true;
+            }
+            start = (end < colonIndex ? end : -1);
+        }
+        return false;
     }
 
     /**
@@ -309,11 +415,6 @@ import java.util.Set;
      *
      * Note: Apple escapes ':' into '\:' while does not escape '\'
      */
-    @Override
-    protected String maybeUnescapeText(final String text) {
-        return unescapeText(text);
-    }
-
     public static String unescapeText(final String text) {
         StringBuilder builder = new StringBuilder();
         final int length = text.length();
@@ -347,7 +448,7 @@ import java.util.Set;
     }
 
     @Override
-    protected Set<String> getKnownPropertyNameSet() {
-        return VCardParser_V30.sKnownPropertyNameSet;
+    protected long[] getKnownPropertyNameTokens() {
+        return VCardParser_V30.sKnownPropertyNameTokens;
     }
 }
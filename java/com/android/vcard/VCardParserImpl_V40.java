@@ -15,9 +15,6 @@
  */
 package com.android.vcard;
 
-import java.util.Set;
-
-
 /**
  * <p>
  * Basic implementation parsing vCard 4.0.
@@ -51,11 +48,6 @@ import java.util.Set;
     /**
      * We escape "\N" into new line for safety.
      */
-    @Override
-    protected String maybeUnescapeText(final String text) {
-        return unescapeText(text);
-    }
-
     public static String unescapeText(final String text) {
         // TODO: more strictly, vCard 4.0 requires different type of unescaping rule
         //       toward each property.
@@ -86,7 +78,7 @@ import java.util.Set;
     }
 
     @Override
-    protected Set<String> getKnownPropertyNameSet() {
-        return VCardParser_V40.sKnownPropertyNameSet;
+    protected long[] getKnownPropertyNameTokens() {
+        return VCardParser_V40.sKnownPropertyNameTokens;
     }
 }
\ No newline at end of file
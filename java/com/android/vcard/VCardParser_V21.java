@@ -19,6 +19,7 @@ import com.android.vcard.exception.VCardException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -40,7 +41,7 @@ import java.util.Set;
  * (possible in Japanese mobile phones).
  * </p>
  */
-public final class VCardParser_V21 extends VCardParser {
+public final class VCardParser_V21 extends VCardParser implements VCardParseProgress {
     /**
      * A unmodifiable Set storing the property names available in the vCard 2.1 specification.
      */
@@ -50,6 +51,12 @@ public final class VCardParser_V21 extends VCardParser {
                             "VERSION", "TEL", "EMAIL", "TZ", "GEO", "NOTE", "URL",
                             "BDAY", "ROLE", "REV", "UID", "KEY", "MAILER")));
 
+    /**
+     * Tokens given by {@link VCardPropertyNames} for {@link #sKnownPropertyNameSet}.
+     */
+    /* package */ static final long[] sKnownPropertyNameTokens =
+            VCardPropertyNames.toTokenBits(sKnownPropertyNameSet);
+
     /**
      * A unmodifiable Set storing the types known in vCard 2.1.
      */
@@ -108,11 +115,83 @@ public final class VCardParser_V21 extends VCardParser {
         mVCardParserImpl.parse(is);
     }
 
+    /**
+     * <p>Same as {@link #parse(InputStream)}, but stops when the given budget runs out, in the
+     * same manner as {@link #cancel()}. Use {@link Deadline#isExceeded()} to know whether the
+     * parse stopped early.</p>
+     *
+     * @param is The source to parse.
+     * @param deadline The budget for this parse.
+     * @throws IOException, VCardException
+     */
+    public void parse(InputStream is, Deadline deadline) throws IOException, VCardException {
+        mVCardParserImpl.parse(is, deadline);
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        mVCardParserImpl.parse(channel);
+    }
+
     @Override
     public void parseOne(InputStream is) throws IOException, VCardException {
         mVCardParserImpl.parseOne(is);
     }
 
+    /**
+     * <p>Makes binary values (BASE64 encoded ones) be decoded into the given sink while they are
+     * being read, instead of being set to {@link VCardProperty} as byte arrays. Null restores
+     * the default behavior.</p>
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mVCardParserImpl.setBinarySink(sink);
+    }
+
+    /**
+     * <p>Makes the parser reuse one {@link VCardProperty} object for all the properties, along
+     * with the collections of its parameter values and the object decoding its values, which
+     * avoids allocating them for every line. Strings such as names and values are still
+     * created for each property. Disabled by default.</p>
+     *
+     * <p>When enabled, a property given to
+     * {@link VCardInterpreter#onPropertyCreated(VCardProperty)}, and the collections it
+     * returns, are valid only until the method returns. Interpreters which need to keep it
+     * must use {@link VCardProperty#copy()}, which is not affected by the following
+     * properties.</p>
+     */
+    public void setReuseProperty(boolean reuseProperty) {
+        mVCardParserImpl.setReuseProperty(reuseProperty);
+    }
+
+    /**
+     * <p>Makes the parser measure time spent in each phase of a parse and report it to the
+     * listener when the parse finishes. Null disables the measurement, which is the
+     * default.</p>
+     */
+    public void setParseListener(VCardParseListener listener) {
+        mVCardParserImpl.setParseListener(listener);
+    }
+
+    /**
+     * <p>Enables lenient mode, where an entry which causes {@link VCardException} is dropped
+     * at the broken line (see {@link VCardLenientInterpreter}), skipped, and then reported to
+     * the listener, instead of stopping the whole parse. Null restores the default strict behavior. {@link #parseOne(InputStream)} is
+     * always strict.</p>
+     */
+    public void setErrorListener(VCardParseErrorListener listener) {
+        mVCardParserImpl.setErrorListener(listener);
+    }
+
+    @Override
+    public int getCompletedEntryCount() {
+        return mVCardParserImpl.getCompletedEntryCount();
+    }
+
+    @Override
+    public long getLastEntryEndOffset() {
+        return mVCardParserImpl.getLastEntryEndOffset();
+    }
+
     @Override
     public void cancel() {
         mVCardParserImpl.cancel();
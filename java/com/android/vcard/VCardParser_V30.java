@@ -19,6 +19,7 @@ import com.android.vcard.exception.VCardException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -38,7 +39,7 @@ import java.util.Set;
  * but it is not a must. We silently allow "CHARSET".
  * </p>
  */
-public class VCardParser_V30 extends VCardParser {
+public class VCardParser_V30 extends VCardParser implements VCardParseProgress {
     /* package */ static final Set<String> sKnownPropertyNameSet =
             Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
                     "BEGIN", "END", "LOGO", "PHOTO", "LABEL", "FN", "TITLE", "SOUND",
@@ -67,6 +68,12 @@ public class VCardParser_V30 extends VCardParser {
                     VCardConstants.PARAM_ENCODING_BASE64,
                     VCardConstants.PARAM_ENCODING_B)));
 
+    /**
+     * Tokens given by {@link VCardPropertyNames} for {@link #sKnownPropertyNameSet}.
+     */
+    /* package */ static final long[] sKnownPropertyNameTokens =
+            VCardPropertyNames.toTokenBits(sKnownPropertyNameSet);
+
     private final VCardParserImpl_V30 mVCardParserImpl;
 
     public VCardParser_V30() {
@@ -87,11 +94,61 @@ public class VCardParser_V30 extends VCardParser {
         mVCardParserImpl.parse(is);
     }
 
+    /**
+     * Same as {@link VCardParser_V21#parse(InputStream, Deadline)}.
+     */
+    public void parse(InputStream is, Deadline deadline) throws IOException, VCardException {
+        mVCardParserImpl.parse(is, deadline);
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        mVCardParserImpl.parse(channel);
+    }
+
     @Override
     public void parseOne(InputStream is) throws IOException, VCardException {
         mVCardParserImpl.parseOne(is);
     }
 
+    /**
+     * Same as {@link VCardParser_V21#setBinarySink(VCardBinarySink)}.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mVCardParserImpl.setBinarySink(sink);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setReuseProperty(boolean)}.
+     */
+    public void setReuseProperty(boolean reuseProperty) {
+        mVCardParserImpl.setReuseProperty(reuseProperty);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setParseListener(VCardParseListener)}.
+     */
+    public void setParseListener(VCardParseListener listener) {
+        mVCardParserImpl.setParseListener(listener);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setErrorListener(VCardParseErrorListener)}.
+     */
+    public void setErrorListener(VCardParseErrorListener listener) {
+        mVCardParserImpl.setErrorListener(listener);
+    }
+
+    @Override
+    public int getCompletedEntryCount() {
+        return mVCardParserImpl.getCompletedEntryCount();
+    }
+
+    @Override
+    public long getLastEntryEndOffset() {
+        return mVCardParserImpl.getLastEntryEndOffset();
+    }
+
     @Override
     public void cancel() {
         mVCardParserImpl.cancel();
@@ -19,6 +19,7 @@ import com.android.vcard.exception.VCardException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -34,7 +35,7 @@ import java.util.Set;
  * (e.g. PHOTO has data parameter in rev 15 while this implementation requires "ENCODING=b")
  * </p>
  */
-public class VCardParser_V40 extends VCardParser {
+public class VCardParser_V40 extends VCardParser implements VCardParseProgress {
     /* package */ static final Set<String> sKnownPropertyNameSet =
             Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
                     "BEGIN", "END", "VERSION",
@@ -45,6 +46,12 @@ public class VCardParser_V40 extends VCardParser {
                     "NOTE", "PRODID", "REV", "SOUND", "UID", "CLIENTPIDMAP",
                     "URL", "KEY", "FBURL", "CALENDRURI", "CALURI", "XML")));
 
+    /**
+     * Tokens given by {@link VCardPropertyNames} for {@link #sKnownPropertyNameSet}.
+     */
+    /* package */ static final long[] sKnownPropertyNameTokens =
+            VCardPropertyNames.toTokenBits(sKnownPropertyNameSet);
+
     /**
      * <p>
      * A unmodifiable Set storing the values for the type "ENCODING", available in vCard 4.0.
@@ -75,11 +82,61 @@ public class VCardParser_V40 extends VCardParser {
         mVCardParserImpl.parse(is);
     }
 
+    /**
+     * Same as {@link VCardParser_V21#parse(InputStream, Deadline)}.
+     */
+    public void parse(InputStream is, Deadline deadline) throws IOException, VCardException {
+        mVCardParserImpl.parse(is, deadline);
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        mVCardParserImpl.parse(channel);
+    }
+
     @Override
     public void parseOne(InputStream is) throws IOException, VCardException {
         mVCardParserImpl.parseOne(is);
     }
 
+    /**
+     * Same as {@link VCardParser_V21#setBinarySink(VCardBinarySink)}.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mVCardParserImpl.setBinarySink(sink);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setReuseProperty(boolean)}.
+     */
+    public void setReuseProperty(boolean reuseProperty) {
+        mVCardParserImpl.setReuseProperty(reuseProperty);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setParseListener(VCardParseListener)}.
+     */
+    public void setParseListener(VCardParseListener listener) {
+        mVCardParserImpl.setParseListener(listener);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setErrorListener(VCardParseErrorListener)}.
+     */
+    public void setErrorListener(VCardParseErrorListener listener) {
+        mVCardParserImpl.setErrorListener(listener);
+    }
+
+    @Override
+    public int getCompletedEntryCount() {
+        return mVCardParserImpl.getCompletedEntryCount();
+    }
+
+    @Override
+    public long getLastEntryEndOffset() {
+        return mVCardParserImpl.getLastEntryEndOffset();
+    }
+
     @Override
     public void cancel() {
         mVCardParserImpl.cancel();
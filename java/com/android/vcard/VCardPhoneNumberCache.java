@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Cache of phone numbers formatted by {@link VCardEntry} during one import, keyed by the
+ * number in the vCard and the formatting type from {@link VCardUtils#getPhoneNumberFormat(int)}.
+ * Exports of corporate directories repeat the same switchboard and fax numbers in thousands of
+ * entries, which are formatted only once with this cache.
+ * </p>
+ * <p>
+ * Least recently used numbers are evicted.
+ * </p>
+ * <p>
+ * This object is not thread-safe.
+ * </p>
+ */
+public class VCardPhoneNumberCache {
+    public static final int DEFAULT_MAX_SIZE = 512;
+
+    /**
+     * Map key holding a number and its formatting type.
+     */
+    private static final class Key {
+        private final String mNumber;
+        private final int mFormattingType;
+
+        public Key(String number, int formattingType) {
+            mNumber = number;
+            mFormattingType = formattingType;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) obj;
+            return mFormattingType == key.mFormattingType && mNumber.equals(key.mNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return mNumber.hashCode() * 31 + mFormattingType;
+        }
+    }
+
+    private final Map<Key, String> mNumberMap;
+    private int mHitCount;
+    private int mMissCount;
+
+    public VCardPhoneNumberCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The number of phone numbers held at most.
+     */
+    public VCardPhoneNumberCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        mNumberMap = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the formatted number, or null when it is not in the cache.
+     */
+    /* package */ String get(String number, int formattingType) {
+        final String formattedNumber = mNumberMap.get(new Key(number, formattingType));
+        if (formattedNumber != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return formattedNumber;
+    }
+
+    /* package */ void put(String number, int formattingType, String formattedNumber) {
+        mNumberMap.put(new Key(number, formattingType), formattedNumber);
+    }
+
+    /**
+     * @return the number of phone numbers found in the cache since this object was created or
+     * cleared.
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of phone numbers not found in the cache since this object was created
+     * or cleared.
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    public void clear() {
+        mNumberMap.clear();
+        mHitCount = 0;
+        mMissCount = 0;
+    }
+
+    /**
+     * Drops the cached numbers, while the counts stay readable.
+     */
+    public void evictAll() {
+        mNumberMap.clear();
+    }
+}
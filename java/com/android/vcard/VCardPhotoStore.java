@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.util.Base64;
+import android.util.Log;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Content-addressed store of photos used during one import or export, keyed by the SHA-1
+ * digest of their bytes. Exports of corporate directories often attach the same logo to
+ * thousands of contacts; with this store {@link VCardEntry.PhotoData} objects of those
+ * contacts share one byte array, and {@link VCardBuilder} encodes the logo into Base64 once.
+ * </p>
+ * <p>
+ * Least recently used photos are evicted, so that photos appearing only once don't stay in
+ * memory until the end of an import.
+ * </p>
+ * <p>
+ * This object is not thread-safe.
+ * </p>
+ */
+public class VCardPhotoStore {
+    private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    /**
+     * A photo in the store, shared by all the users of the same bytes.
+     */
+    /* package */ static final class SharedPhoto {
+        public final byte[] bytes;
+        // The sum of the bytes, used by VCardEntry.PhotoData#hashCode().
+        public final int byteSum;
+        private String mEncodedValue;
+
+        private SharedPhoto(byte[] bytes) {
+            this.bytes = bytes;
+            int sum = 0;
+            for (byte b : bytes) {
+                sum += b;
+            }
+            byteSum = sum;
+        }
+
+        /**
+         * @return the bytes encoded into Base64 without line breaks.
+         */
+        public String getEncodedValue() {
+            if (mEncodedValue == null) {
+                mEncodedValue = new String(Base64.encode(bytes, Base64.NO_WRAP));
+            }
+            return mEncodedValue;
+        }
+    }
+
+    /**
+     * Map key holding a digest.
+     */
+    private static final class Digest {
+        private final byte[] mDigest;
+        private final int mHashCode;
+
+        public Digest(byte[] digest) {
+            mDigest = digest;
+            mHashCode = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Digest && Arrays.equals(mDigest, ((Digest) obj).mDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    private final Map<Digest, SharedPhoto> mPhotoMap;
+    private MessageDigest mMessageDigest;
+    private int mSharedCount;
+
+    public VCardPhotoStore() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The number of photos held at most.
+     */
+    public VCardPhotoStore(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        mPhotoMap = new LinkedHashMap<Digest, SharedPhoto>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Digest, SharedPhoto> eldest) {
+                return size() > maxSize;
+            }
+        };
+        try {
+            mMessageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            Log.w(LOG_TAG, DIGEST_ALGORITHM + " is not available. Photos are not shared.");
+        }
+    }
+
+    /**
+     * @return the photo with the same content as the given bytes.
+     */
+    /* package */ SharedPhoto getSharedPhoto(byte[] bytes) {
+        if (mMessageDigest == null) {
+            return new SharedPhoto(bytes);
+        }
+        final Digest digest = new Digest(mMessageDigest.digest(bytes));
+        SharedPhoto photo = mPhotoMap.get(digest);
+        // Compare the bytes too, as digests of different contents may collide.
+        if (photo != null && Arrays.equals(photo.bytes, bytes)) {
+            mSharedCount++;
+            return photo;
+        }
+        photo = new SharedPhoto(bytes);
+        mPhotoMap.put(digest, photo);
+        return photo;
+    }
+
+    /**
+     * @return the number of photos found in the store since this object was created or
+     * cleared.
+     */
+    public int getSharedCount() {
+        return mSharedCount;
+    }
+
+    public void clear() {
+        mPhotoMap.clear();
+        mSharedCount = 0;
+    }
+}
@@ -60,14 +60,96 @@ import java.util.Map;
 public class VCardProperty {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
     private String mName;
+    /**
+     * Token for {@link #mName} given by {@link VCardPropertyNames}.
+     */
+    private int mNameToken = VCardPropertyNames.UNKNOWN;
     private List<String> mGroupList;
 
     private Map<String, Collection<String>> mParameterMap =
             new HashMap<String, Collection<String>>();
+
+    /**
+     * Emptied collections of parameter values, which {@link #clear()} keeps for
+     * {@link #addParameter(String, String)}. Null until they are needed.
+     */
+    private List<HashSet<String>> mSpareSetList;
+    private List<ArrayList<String>> mSpareListList;
     private String mRawValue;
 
     private List<String> mValueList;
     private byte[] mByteValue;
+    /**
+     * Given by {@link VCardBinarySink#getBinaryValueHandle(VCardProperty, java.io.OutputStream)}
+     * when the binary value went to the sink.
+     */
+    private Object mByteValueHandle;
+
+    /**
+     * Decodes the raw value into {@link #mValueList} the first time values are requested.
+     * Null when the values are already available.
+     */
+    private ValueDecoder mValueDecoder;
+
+    /**
+     * Used by parsers to postpone charset conversion and unescaping of property values,
+     * which are not needed by interpreters only looking at property names.
+     */
+    /* package */ interface ValueDecoder {
+        List<String> decodeValues();
+
+        /**
+         * @return a decoder giving the same values, which is not affected when a parser
+         * reuses this object for another property.
+         */
+        ValueDecoder copy();
+    }
+
+    /**
+     * Resets this object so that a parser can reuse it for the next property.
+     * The parameter map keeps its capacity, and the collections of parameter values are
+     * emptied and used again, so collections given by {@link #getParameterMap()} and
+     * {@link #getParameters(String)} must not be kept after this call.
+     */
+    public void clear() {
+        mName = null;
+        mNameToken = VCardPropertyNames.UNKNOWN;
+        mGroupList = null;
+        clearParameters();
+        mRawValue = null;
+        mValueList = null;
+        mByteValue = null;
+        mByteValueHandle = null;
+        mValueDecoder = null;
+    }
+
+    /**
+     * @return a copy of this object, which stays intact while the parser reuses this object
+     * for following properties.
+     * @see VCardParser_V21#setReuseProperty(boolean)
+     */
+    public VCardProperty copy() {
+        final VCardProperty property = new VCardProperty();
+        property.mName = mName;
+        property.mNameToken = mNameToken;
+        if (mGroupList != null) {
+            property.mGroupList = new ArrayList<String>(mGroupList);
+        }
+        for (Map.Entry<String, Collection<String>> entry : mParameterMap.entrySet()) {
+            final Collection<String> values = entry.getValue();
+            property.mParameterMap.put(entry.getKey(), (values instanceof HashSet
+                    ? new HashSet<String>(values) : new ArrayList<String>(values)));
+        }
+        property.mRawValue = mRawValue;
+        if (mValueList != null) {
+            property.mValueList = new ArrayList<String>(mValueList);
+        }
+        // A parser may reuse the decoder for the next property.
+        property.mValueDecoder = (mValueDecoder != null ? mValueDecoder.copy() : null);
+        property.mByteValue = mByteValue;
+        property.mByteValueHandle = mByteValueHandle;
+        return property;
+    }
 
     public void setName(String name) {
         if (mName != null) {
@@ -75,6 +157,7 @@ public class VCardProperty {
                     "(existing: %s, requested: %s", mName, name));
         }
         mName = name;
+        mNameToken = VCardPropertyNames.getToken(name);
     }
 
     public void addGroup(String group) {
@@ -85,7 +168,7 @@ public class VCardProperty {
     }
 
     public void setParameter(final String paramName, final String paramValue) {
-        mParameterMap.clear();
+        clearParameters();
         addParameter(paramName, paramValue);
     }
 
@@ -93,9 +176,13 @@ public class VCardProperty {
         Collection<String> values;
         if (!mParameterMap.containsKey(paramName)) {
             if (paramName.equals("TYPE")) {
-                values = new HashSet<String>();
+                values = (mSpareSetList != null && !mSpareSetList.isEmpty()
+                        ? mSpareSetList.remove(mSpareSetList.size() - 1)
+                        : new HashSet<String>());
             } else {
-                values = new ArrayList<String>();
+                values = (mSpareListList != null && !mSpareListList.isEmpty()
+                        ? mSpareListList.remove(mSpareListList.size() - 1)
+                        : new ArrayList<String>());
             }
             mParameterMap.put(paramName, values);
         } else {
@@ -104,6 +191,30 @@ public class VCardProperty {
         values.add(paramValue);
     }
 
+    /**
+     * Empties the parameter map, keeping the collections of values for later use.
+     */
+    private void clearParameters() {
+        if (mParameterMap.isEmpty()) {
+            return;
+        }
+        for (Collection<String> values : mParameterMap.values()) {
+            values.clear();
+            if (values instanceof HashSet) {
+                if (mSpareSetList == null) {
+                    mSpareSetList = new ArrayList<HashSet<String>>();
+                }
+                mSpareSetList.add((HashSet<String>) values);
+            } else if (values instanceof ArrayList) {
+                if (mSpareListList == null) {
+                    mSpareListList = new ArrayList<ArrayList<String>>();
+                }
+                mSpareListList.add((ArrayList<String>) values);
+            }
+        }
+        mParameterMap.clear();
+    }
+
     public void setRawValue(String rawValue) {
         mRawValue = rawValue;
     }
@@ -112,14 +223,25 @@ public class VCardProperty {
     // VCardParserImpl does this job.
 
     public void setValues(String... propertyValues) {
+        mValueDecoder = null;
         mValueList = Arrays.asList(propertyValues);
     }
 
     public void setValues(List<String> propertyValueList) {
+        mValueDecoder = null;
         mValueList = propertyValueList;
     }
 
+    /**
+     * Lets the decoder create values when they are requested for the first time.
+     */
+    /* package */ void setValueDecoder(ValueDecoder valueDecoder) {
+        mValueList = null;
+        mValueDecoder = valueDecoder;
+    }
+
     public void addValues(String... propertyValues) {
+        decodeValuesIfNeeded();
         if (mValueList == null) {
             mValueList = Arrays.asList(propertyValues);
         } else {
@@ -128,6 +250,7 @@ public class VCardProperty {
     }
 
     public void addValues(List<String> propertyValueList) {
+        decodeValuesIfNeeded();
         if (mValueList == null) {
             mValueList = new ArrayList<String>(propertyValueList);
         } else {
@@ -139,10 +262,37 @@ public class VCardProperty {
         mByteValue = byteValue;
     }
 
+    /**
+     * Sets the object identifying the binary value of this property written to a
+     * {@link VCardBinarySink} instead of being set as a byte array.
+     */
+    public void setByteValueHandle(Object byteValueHandle) {
+        mByteValueHandle = byteValueHandle;
+    }
+
     public String getName() {
         return mName;
     }
 
+    /**
+     * @return the token for the property name, or {@link VCardPropertyNames#UNKNOWN} when
+     * the name is not known to this library.
+     */
+    /* package */ int getNameToken() {
+        return mNameToken;
+    }
+
+    /**
+     * @return the property name in upper case, which is one of the constants in
+     * {@link VCardConstants} when the name is known.
+     */
+    /* package */ String getNameUpperCase() {
+        if (mNameToken != VCardPropertyNames.UNKNOWN) {
+            return VCardPropertyNames.getName(mNameToken);
+        }
+        return (mName != null ? mName.toUpperCase() : null);
+    }
+
     public List<String> getGroupList() {
         return mGroupList;
     }
@@ -160,12 +310,31 @@ public class VCardProperty {
     }
 
     public List<String> getValueList() {
+        decodeValuesIfNeeded();
         return mValueList;
     }
 
+    private void decodeValuesIfNeeded() {
+        if (mValueDecoder != null) {
+            mValueList = mValueDecoder.decodeValues();
+            mValueDecoder = null;
+        }
+    }
+
     public byte[] getByteValue() {
         return mByteValue;
     }
+
+    public boolean isByteValueInSink() {
+        return mByteValueHandle != null;
+    }
+
+    /**
+     * @return the object set by {@link #setByteValueHandle(Object)}, or null.
+     */
+    public Object getByteValueHandle() {
+        return mByteValueHandle;
+    }
 }
 
 
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * <p>
+ * Table of property names known to this library, mapping a name in any case to an int token
+ * and to its upper-case String, without allocating a new String.
+ * </p>
+ * <p>
+ * Upper-case Strings returned from this class are the constants in {@link VCardConstants}
+ * (or in the known property name sets of the parsers), so callers can compare them with
+ * those constants cheaply.
+ * </p>
+ * <p>
+ * The lookup table is built once with a multiplier chosen so that no two known names share
+ * a slot, so a lookup is one hash computation and at most one comparison.
+ * </p>
+ */
+/* package */ final class VCardPropertyNames {
+    /**
+     * Token for names not in this table, including null.
+     */
+    static final int UNKNOWN = -1;
+
+    static final int BEGIN = 0;
+    static final int END = 1;
+    static final int VERSION = 2;
+    static final int N = 3;
+    static final int FN = 4;
+    static final int ADR = 5;
+    static final int EMAIL = 6;
+    static final int NOTE = 7;
+    static final int ORG = 8;
+    static final int SOUND = 9;
+    static final int TEL = 10;
+    static final int TITLE = 11;
+    static final int ROLE = 12;
+    static final int PHOTO = 13;
+    static final int LOGO = 14;
+    static final int URL = 15;
+    static final int BDAY = 16;
+    static final int ANNIVERSARY = 17;
+    static final int NAME = 18;
+    static final int NICKNAME = 19;
+    static final int SORT_STRING = 20;
+    static final int IMPP = 21;
+    static final int REV = 22;
+    static final int AGENT = 23;
+    static final int GENDER = 24;
+    static final int XML = 25;
+    static final int FBURL = 26;
+    static final int PRODID = 27;
+    static final int RELATED = 28;
+    static final int CATEGORIES = 29;
+    static final int CLIENTPIDMAP = 30;
+    static final int CALURI = 31;
+    static final int X_SIP = 32;
+    static final int X_PHONETIC_FIRST_NAME = 33;
+    static final int X_PHONETIC_MIDDLE_NAME = 34;
+    static final int X_PHONETIC_LAST_NAME = 35;
+    static final int X_AIM = 36;
+    static final int X_MSN = 37;
+    static final int X_YAHOO = 38;
+    static final int X_ICQ = 39;
+    static final int X_JABBER = 40;
+    static final int X_GOOGLE_TALK = 41;
+    static final int X_SKYPE_USERNAME = 42;
+    static final int X_QQ = 43;
+    static final int X_NETMEETING = 44;
+    static final int X_SKYPE_PSTNNUMBER = 45;
+    static final int X_ANDROID_CUSTOM = 46;
+    static final int X_CLASS = 47;
+    static final int X_REDUCTION = 48;
+    static final int X_NO = 49;
+    static final int X_DCM_HMN_MODE = 50;
+    static final int X_NICKNAME = 51;
+    static final int X_GOOGLE_TALK_WITH_SPACE = 52;
+    static final int LABEL = 53;
+    static final int TZ = 54;
+    static final int GEO = 55;
+    static final int UID = 56;
+    static final int KEY = 57;
+    static final int MAILER = 58;
+    static final int PROFILE = 59;
+    static final int SOURCE = 60;
+    static final int CLASS = 61;
+    static final int KIND = 62;
+    static final int LANG = 63;
+    static final int MEMBER = 64;
+    static final int CALENDRURI = 65;
+
+    private static final String[] NAMES = {
+        VCardConstants.PROPERTY_BEGIN,
+        VCardConstants.PROPERTY_END,
+        VCardConstants.PROPERTY_VERSION,
+        VCardConstants.PROPERTY_N,
+        VCardConstants.PROPERTY_FN,
+        VCardConstants.PROPERTY_ADR,
+        VCardConstants.PROPERTY_EMAIL,
+        VCardConstants.PROPERTY_NOTE,
+        VCardConstants.PROPERTY_ORG,
+        VCardConstants.PROPERTY_SOUND,
+        VCardConstants.PROPERTY_TEL,
+        VCardConstants.PROPERTY_TITLE,
+        VCardConstants.PROPERTY_ROLE,
+        VCardConstants.PROPERTY_PHOTO,
+        VCardConstants.PROPERTY_LOGO,
+        VCardConstants.PROPERTY_URL,
+        VCardConstants.PROPERTY_BDAY,
+        VCardConstants.PROPERTY_ANNIVERSARY,
+        VCardConstants.PROPERTY_NAME,
+        VCardConstants.PROPERTY_NICKNAME,
+        VCardConstants.PROPERTY_SORT_STRING,
+        VCardConstants.PROPERTY_IMPP,
+        VCardConstants.PROPERTY_REV,
+        VCardConstants.PROPERTY_AGENT,
+        VCardConstants.PROPERTY_GENDER,
+        VCardConstants.PROPERTY_XML,
+        VCardConstants.PROPERTY_FBURL,
+        VCardConstants.PROPERTY_PRODID,
+        VCardConstants.PROPERTY_RELATED,
+        VCardConstants.PROPERTY_CATEGORIES,
+        VCardConstants.PROPERTY_CLIENTPIDMAP,
+        VCardConstants.PROPERTY_CALURI,
+        VCardConstants.PROPERTY_X_SIP,
+        VCardConstants.PROPERTY_X_PHONETIC_FIRST_NAME,
+        VCardConstants.PROPERTY_X_PHONETIC_MIDDLE_NAME,
+        VCardConstants.PROPERTY_X_PHONETIC_LAST_NAME,
+        VCardConstants.PROPERTY_X_AIM,
+        VCardConstants.PROPERTY_X_MSN,
+        VCardConstants.PROPERTY_X_YAHOO,
+        VCardConstants.PROPERTY_X_ICQ,
+        VCardConstants.PROPERTY_X_JABBER,
+        VCardConstants.PROPERTY_X_GOOGLE_TALK,
+        VCardConstants.PROPERTY_X_SKYPE_USERNAME,
+        VCardConstants.PROPERTY_X_QQ,
+        VCardConstants.PROPERTY_X_NETMEETING,
+        VCardConstants.PROPERTY_X_SKYPE_PSTNNUMBER,
+        VCardConstants.PROPERTY_X_ANDROID_CUSTOM,
+        VCardConstants.PROPERTY_X_CLASS,
+        VCardConstants.PROPERTY_X_REDUCTION,
+        VCardConstants.PROPERTY_X_NO,
+        VCardConstants.PROPERTY_X_DCM_HMN_MODE,
+        VCardConstants.ImportOnly.PROPERTY_X_NICKNAME,
+        VCardConstants.ImportOnly.PROPERTY_X_GOOGLE_TALK_WITH_SPACE,
+        "LABEL",
+        "TZ",
+        "GEO",
+        "UID",
+        "KEY",
+        "MAILER",
+        "PROFILE",
+        "SOURCE",
+        "CLASS",
+        "KIND",
+        "LANG",
+        "MEMBER",
+        "CALENDRURI"
+    };
+
+    private static final int TABLE_SIZE = 256;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    /**
+     * Slot to token. {@link #UNKNOWN} for an empty slot.
+     */
+    private static final int[] TABLE = new int[TABLE_SIZE];
+    private static final int MULTIPLIER;
+
+    static {
+        int multiplier = 31;
+        while (!buildTable(multiplier)) {
+            multiplier += 2;
+        }
+        MULTIPLIER = multiplier;
+    }
+
+    private VCardPropertyNames() {
+    }
+
+    private static boolean buildTable(int multiplier) {
+        Arrays.fill(TABLE, UNKNOWN);
+        for (int token = 0; token < NAMES.length; token++) {
+            final String name = NAMES[token];
+            final int slot = hash(name, 0, name.length(), multiplier) & TABLE_MASK;
+            if (TABLE[slot] != UNKNOWN) {
+                return false;
+            }
+            TABLE[slot] = token;
+        }
+        return true;
+    }
+
+    /**
+     * Case-insensitive hash of str.substring(start, end). Only ASCII letters are folded,
+     * which is enough as known names consist of ASCII characters.
+     */
+    private static int hash(String str, int start, int end, int multiplier) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            char ch = str.charAt(i);
+            if (ch >= 'a' && ch <= 'z') {
+                ch -= 'a' - 'A';
+            }
+            hash = hash * multiplier + ch;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return the token for str.substring(start, end) compared case-insensitively,
+     * or {@link #UNKNOWN}.
+     */
+    static int getToken(String str, int start, int end) {
+        final int token = TABLE[hash(str, start, end, MULTIPLIER) & TABLE_MASK];
+        if (token == UNKNOWN) {
+            return UNKNOWN;
+        }
+        final String name = NAMES[token];
+        if (name.length() == end - start && name.regionMatches(true, 0, str, start, end - start)) {
+            return token;
+        }
+        return UNKNOWN;
+    }
+
+    static int getToken(String name) {
+        return (name == null ? UNKNOWN : getToken(name, 0, name.length()));
+    }
+
+    /**
+     * @return the upper-case name for the token, or null for {@link #UNKNOWN}.
+     */
+    static String getName(int token) {
+        return (token == UNKNOWN ? null : NAMES[token]);
+    }
+
+    /**
+     * @return bits indexed by the tokens for the names, for {@link #contains(long[], int)}.
+     * @throws IllegalArgumentException when one of the names is not in this table.
+     */
+    static long[] toTokenBits(Collection<String> names) {
+        final long[] bits = new long[(NAMES.length + 63) >>> 6];
+        for (String name : names) {
+            final int token = getToken(name);
+            if (token == UNKNOWN) {
+                throw new IllegalArgumentException("Unknown property name: " + name);
+            }
+            bits[token >>> 6] |= 1L << token;
+        }
+        return bits;
+    }
+
+    /**
+     * @return true when the bit for the token is set in bits given by
+     * {@link #toTokenBits(Collection)}. Always false for {@link #UNKNOWN}.
+     */
+    static boolean contains(long[] bits, int token) {
+        return token != UNKNOWN && (bits[token >>> 6] & (1L << token)) != 0;
+    }
+
+    /**
+     * Same as str.substring(start, end).toUpperCase(), while known names don't allocate
+     * a new String.
+     */
+    static String toUpperCase(String str, int start, int end) {
+        final int token = getToken(str, start, end);
+        return (token != UNKNOWN ? NAMES[token] : str.substring(start, end).toUpperCase());
+    }
+}
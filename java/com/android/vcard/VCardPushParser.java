@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.util.Log;
+
+import com.android.vcard.exception.VCardException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * vCard parser which is given its input chunk by chunk via {@link #feed(ByteBuffer)}, instead
+ * of reading it from a blocking {@link InputStream}. Useful when the input comes from a
+ * non-blocking channel, as no thread needs to wait for the rest of the input.
+ * </p>
+ * <p>
+ * Chunks may be split anywhere, even in the middle of a line or a CRLF. Partial lines and
+ * the current top-level entry are kept in this object between calls. Once the "END:VCARD"
+ * line of a top-level entry arrives, the entry is parsed and registered
+ * {@link VCardInterpreter} instances receive its events on the thread calling
+ * {@link #feed(ByteBuffer)}. {@link VCardInterpreter#onVCardStarted()} is called with the first
+ * chunk, and {@link VCardInterpreter#onVCardEnded()} with {@link #endOfInput()}.
+ * </p>
+ * <p>
+ * As with {@link VCardParallelParser}, callers must specify the version of the input via
+ * vcardType. One object parses one input. It is not thread-safe, except for {@link #cancel()}.
+ * </p>
+ */
+public class VCardPushParser extends VCardParser {
+    private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    // Don't keep a buffer grown for an unusually large entry, typically one with a photo.
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final int mVCardType;
+    private final VCardParserImpl_V21 mParserImpl;
+    private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
+
+    /**
+     * Lines of the current top-level entry with CRLF line terminators, followed by the
+     * partial line which started at mLineStart.
+     */
+    private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+    private int mLength;
+    private int mLineStart;
+    private int mDepth;
+
+    /**
+     * True when the last chunk ended with CR, in which case LF at the beginning of the next
+     * chunk must be dropped.
+     */
+    private boolean mSkipLf;
+
+    private boolean mStarted;
+    private boolean mEnded;
+    private volatile boolean mCanceled;
+
+    public VCardPushParser(int vcardType) {
+        mVCardType = vcardType;
+        mParserImpl = VCardParserImpl_V21.create(vcardType);
+    }
+
+    @Override
+    public void addInterpreter(VCardInterpreter interpreter) {
+        mInterpreterList.add(interpreter);
+        mParserImpl.addInterpreter(interpreter);
+    }
+
+    /**
+     * <p>
+     * Consumes all the remaining bytes of the given buffer, from its position to its limit.
+     * Entries completed by them are parsed before this method returns.
+     * </p>
+     * <p>
+     * When an entry fails to parse, {@link VCardException} is thrown from this method and the
+     * entry is dropped, while the following chunks can still be fed. With
+     * {@link #setErrorListener(VCardParseErrorListener)}, the failure is reported to the
+     * listener instead.
+     * </p>
+     */
+    public void feed(ByteBuffer input) throws IOException, VCardException {
+        if (mEnded) {
+            throw new IllegalStateException("endOfInput() has been already called.");
+        }
+        notifyVCardStartedIfNeeded();
+
+        // Use a duplicate, which has its own byte order and position.
+        final ByteBuffer buffer = input.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int limit = buffer.limit();
+        int i = buffer.position();
+        input.position(limit);
+        while (i < limit && !mCanceled) {
+            if (mSkipLf) {
+                mSkipLf = false;
+                if (buffer.get(i) == '\n') {
+                    i++;
+                    continue;
+                }
+            }
+            final int end = VCardLineScanner.indexOfLineBreak(buffer, i, limit);
+            ensureCapacity(mLength + (end - i) + 2);
+            buffer.position(i);
+            buffer.get(mBuffer, mLength, end - i);
+            mLength += end - i;
+            if (end == limit) {
+                break;
+            }
+            mSkipLf = (buffer.get(end) == '\r');
+            i = end + 1;
+            handleLine();
+        }
+    }
+
+    /**
+     * Tells that the whole input has been given. The last line doesn't need a line
+     * terminator. An entry without "END:VCARD" is parsed as is, which typically causes
+     * {@link VCardException}.
+     */
+    public void endOfInput() throws IOException, VCardException {
+        if (mEnded) {
+            return;
+        }
+        notifyVCardStartedIfNeeded();
+        mEnded = true;
+        try {
+            if (!mCanceled) {
+                if (mLength > mLineStart) {
+                    ensureCapacity(mLength + 2);
+                    handleLine();
+                }
+                if (mLength > 0) {
+                    parseEntry();
+                }
+            } else {
+                Log.i(LOG_TAG, "Cancel request has come. exitting parse operation.");
+            }
+        } finally {
+            clearBuffer();
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardEnded();
+            }
+        }
+    }
+
+    /**
+     * Feeds the whole stream, in the same manner as the other parsers. This blocks while
+     * reading the stream, of course.
+     */
+    @Override
+    public void parse(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        final byte[] bytes = new byte[READ_BUFFER_SIZE];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int count;
+        while (!mCanceled && (count = is.read(bytes)) >= 0) {
+            buffer.clear();
+            buffer.limit(count);
+            feed(buffer);
+        }
+        endOfInput();
+    }
+
+    @Override
+    public void parseOne(InputStream is) throws IOException, VCardException {
+        final VCardParserImpl_V21 parserImpl = VCardParserImpl_V21.create(mVCardType);
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            parserImpl.addInterpreter(interpreter);
+        }
+        parserImpl.parseOne(is);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setBinarySink(VCardBinarySink)}.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mParserImpl.setBinarySink(sink);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setReuseProperty(boolean)}.
+     */
+    public void setReuseProperty(boolean reuseProperty) {
+        mParserImpl.setReuseProperty(reuseProperty);
+    }
+
+    /**
+     * Same as {@link VCardParser_V21#setErrorListener(VCardParseErrorListener)}.
+     */
+    public void setErrorListener(VCardParseErrorListener listener) {
+        mParserImpl.setErrorListener(listener);
+    }
+
+    @Override
+    public void cancel() {
+        Log.i(LOG_TAG, "PushParser received cancel operation.");
+        mCanceled = true;
+        mParserImpl.cancel();
+    }
+
+    private void notifyVCardStartedIfNeeded() {
+        if (!mStarted) {
+            mStarted = true;
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardStarted();
+            }
+        }
+    }
+
+    /**
+     * Called when the line from mLineStart to mLength is completed. Parses the current entry
+     * when the line ends it, in the same manner as {@link VCardParallelParser} splits its
+     * input.
+     */
+    private void handleLine() throws IOException, VCardException {
+        final int start = mLineStart;
+        final int end = mLength;
+        if (mDepth == 0 && isBlank(mBuffer, start, end)) {
+            mLength = start;
+            return;
+        }
+        mBuffer[mLength++] = '\r';
+        mBuffer[mLength++] = '\n';
+        mLineStart = mLength;
+        if (isEntryBoundary(mBuffer, start, end, "BEGIN")) {
+            mDepth++;
+        } else if (mDepth == 0
+                || (isEntryBoundary(mBuffer, start, end, "END") && --mDepth == 0)) {
+            // A line outside of any entry is parsed on its own, so that the parser reports
+            // it in the same way as a sequential parse does.
+            parseEntry();
+        }
+    }
+
+    private void parseEntry() throws IOException, VCardException {
+        try {
+            mParserImpl.setInput(new ByteArrayInputStream(mBuffer, 0, mLength));
+            while (mParserImpl.parseNext()) {
+            }
+        } finally {
+            clearBuffer();
+        }
+    }
+
+    private void clearBuffer() {
+        mLength = 0;
+        mLineStart = 0;
+        mDepth = 0;
+        if (mBuffer.length > MAX_RETAINED_BUFFER_SIZE) {
+            mBuffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mBuffer.length) {
+            final byte[] newBuffer = new byte[Math.max(capacity, mBuffer.length * 2)];
+            System.arraycopy(mBuffer, 0, newBuffer, 0, mLength);
+            mBuffer = newBuffer;
+        }
+    }
+
+    private static boolean isBlank(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((bytes[i] & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link VCardParserImpl_V21#isEntryBoundary(String, String)}, without creating
+     * a String for each line. Each byte is a char in the intermediate charset.
+     */
+    private static boolean isEntryBoundary(byte[] bytes, int start, int end, String name) {
+        int colonIndex = start;
+        while (colonIndex < end && bytes[colonIndex] != ':') {
+            colonIndex++;
+        }
+        return (colonIndex < end
+                && equalsIgnoreCaseTrimmed(bytes, start, colonIndex, name)
+                && equalsIgnoreCaseTrimmed(bytes, colonIndex + 1, end, "VCARD"));
+    }
+
+    private static boolean equalsIgnoreCaseTrimmed(
+            byte[] bytes, int start, int end, String expected) {
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        final int length = expected.length();
+        if (end - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            // The expected strings consist of ASCII upper-case letters.
+            final int ch = bytes[start + i] & 0xFF;
+            if (ch != expected.charAt(i) && ch != Character.toLowerCase(expected.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -18,6 +18,10 @@ package com.android.vcard;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -38,6 +42,11 @@ import java.util.Set;
  * This class is usually used for the "first scan", in which we can understand which vCard
  * version is used (and how many entries exist in a file).
  * </p>
+ * <p>
+ * When the cost of the first scan matters more than the accuracy, use
+ * {@link #sniff(InputStream, int, int)} instead, which looks only at the beginning of the
+ * input without parsing it, and check {@link #getConfidence()}.
+ * </p>
  */
 public class VCardSourceDetector implements VCardInterpreter {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
@@ -75,8 +84,28 @@ public class VCardSourceDetector implements VCardInterpreter {
     // For Japanese Windows Mobile phones. It's version is supposed to be 6.5.
     private static final int PARSE_TYPE_WINDOWS_MOBILE_V65_JP = 4;
 
+    /**
+     * Neither the version nor the source is known.
+     */
+    public static final int CONFIDENCE_NONE = 0;
+    /**
+     * Only the version is known from a part of the input. The rest may contain signs of a
+     * specific source.
+     */
+    public static final int CONFIDENCE_LOW = 1;
+    /**
+     * A sign of a specific source was found, or the whole input was examined.
+     */
+    public static final int CONFIDENCE_HIGH = 2;
+
+    private static final int SNIFF_BUFFER_SIZE = 4096;
+    private static final Charset SNIFF_CHARSET =
+            Charset.forName(VCardConfig.DEFAULT_INTERMEDIATE_CHARSET);
+
     private int mParseType = PARSE_TYPE_UNKNOWN;
 
+    private boolean mWholeInputExamined;
+
     private int mVersion = -1;  // -1 == unknown
 
     // Some mobile phones (like FOMA) tells us the charset of the data.
@@ -88,6 +117,7 @@ public class VCardSourceDetector implements VCardInterpreter {
 
     @Override
     public void onVCardEnded() {
+        mWholeInputExamined = true;
     }
 
     @Override
@@ -100,12 +130,18 @@ public class VCardSourceDetector implements VCardInterpreter {
 
     @Override
     public void onPropertyCreated(VCardProperty property) {
-        final String propertyName = property.getName();
         final List<String> valueList = property.getValueList();
+        handleProperty(property.getName(), (valueList != null && valueList.size() > 0
+                ? valueList.get(0) : null));
+    }
 
+    /**
+     * @param firstValue The first value of the property. May be null.
+     */
+    private void handleProperty(String propertyName, String firstValue) {
         if (propertyName.equalsIgnoreCase(VCardConstants.PROPERTY_VERSION)
-                && valueList.size() > 0) {
-            final String versionString = valueList.get(0);
+                && firstValue != null) {
+            final String versionString = firstValue;
             if (versionString.equals(VCardConstants.VERSION_V21)) {
                 mVersion = VCardConfig.VERSION_21;
             } else if (versionString.equals(VCardConstants.VERSION_V30)) {
@@ -117,8 +153,8 @@ public class VCardSourceDetector implements VCardInterpreter {
             }
         } else if (propertyName.equalsIgnoreCase(TYPE_FOMA_CHARSET_SIGN)) {
             mParseType = PARSE_TYPE_DOCOMO_FOMA;
-            if (valueList.size() > 0) {
-                mSpecifiedCharset = valueList.get(0);
+            if (firstValue != null) {
+                mSpecifiedCharset = firstValue;
             }
         }
         if (mParseType != PARSE_TYPE_UNKNOWN) {
@@ -135,6 +171,133 @@ public class VCardSourceDetector implements VCardInterpreter {
         }
     }
 
+    /**
+     * <p>
+     * Estimates the source from at most maxBytes bytes or maxEntries entries at the
+     * beginning of the input, whichever comes first, without parsing it. Only property names,
+     * VERSION, and X-SD-CHAR_CODE are examined, on the raw bytes of each line. Must be called
+     * on a new instance, which is not used as a {@link VCardInterpreter}.
+     * </p>
+     * <p>
+     * The input is not closed.
+     * </p>
+     *
+     * @param maxBytes The number of bytes to examine at most. Must be positive.
+     * @param maxEntries The number of top-level entries to examine at most. Zero or negative
+     * means no limit.
+     * @return the same value as {@link #getConfidence()}.
+     */
+    public int sniff(InputStream is, int maxBytes, int maxEntries) throws IOException {
+        final byte[] buffer = new byte[Math.min(maxBytes, SNIFF_BUFFER_SIZE)];
+        final ByteBuffer scanBuffer = VCardLineScanner.wrap(buffer);
+        // Holds the beginning of a line spanning over reads.
+        byte[] lineBuffer = new byte[256];
+        int lineLength = 0;
+        int remainingBytes = maxBytes;
+        int depth = 0;
+        int entryCount = 0;
+        boolean reachedEnd = false;
+        while (remainingBytes > 0) {
+            final int count = is.read(buffer, 0, Math.min(buffer.length, remainingBytes));
+            if (count < 0) {
+                reachedEnd = true;
+                break;
+            }
+            remainingBytes -= count;
+            int i = 0;
+            while (i < count) {
+                final int end = VCardLineScanner.indexOfLineBreak(scanBuffer, i, count);
+                if (end > i) {
+                    if (lineLength + (end - i) > lineBuffer.length) {
+                        lineBuffer = Arrays.copyOf(lineBuffer,
+                                Math.max(lineLength + (end - i), lineBuffer.length * 2));
+                    }
+                    System.arraycopy(buffer, i, lineBuffer, lineLength, end - i);
+                    lineLength += end - i;
+                }
+                if (end == count) {
+                    break;
+                }
+                if (lineLength > 0) {
+                    depth = handleSniffedLine(lineBuffer, lineLength, depth);
+                    lineLength = 0;
+                    if (depth == 0 && ++entryCount == maxEntries) {
+                        return getConfidence();
+                    }
+                }
+                i = end + 1;
+            }
+        }
+        if (reachedEnd) {
+            if (lineLength > 0) {
+                handleSniffedLine(lineBuffer, lineLength, depth);
+            }
+            mWholeInputExamined = true;
+        }
+        return getConfidence();
+    }
+
+    /**
+     * @return the depth of entries after the line, where an "END:VCARD" line closing a
+     * top-level entry makes it zero, and any other line outside of entries makes it -1.
+     */
+    private int handleSniffedLine(byte[] line, int length, int depth) {
+        // Property names are ASCII. Lines with values only (e.g. BASE64) don't have a colon.
+        int colonIndex = -1;
+        int nameEnd = -1;
+        for (int i = 0; i < length; i++) {
+            final byte b = line[i];
+            if (b == ':') {
+                colonIndex = i;
+                if (nameEnd < 0) {
+                    nameEnd = i;
+                }
+                break;
+            } else if (b == ';' && nameEnd < 0) {
+                nameEnd = i;
+            }
+        }
+        if (colonIndex < 0) {
+            return (depth > 0 ? depth : -1);
+        }
+        int nameStart = 0;
+        for (int i = nameEnd - 1; i >= 0; i--) {
+            if (line[i] == '.') {  // Group, e.g. "item1.X-ABADR"
+                nameStart = i + 1;
+                break;
+            }
+        }
+        final String propertyName = new String(line, nameStart, nameEnd - nameStart,
+                SNIFF_CHARSET).trim().toUpperCase();
+        if (propertyName.equals(VCardConstants.PROPERTY_BEGIN)) {
+            return (depth > 0 ? depth + 1 : 1);
+        } else if (propertyName.equals(VCardConstants.PROPERTY_END)) {
+            return (depth > 0 ? depth - 1 : -1);
+        }
+        // Values of the other properties are not needed.
+        final String value = (propertyName.equals(VCardConstants.PROPERTY_VERSION)
+                || propertyName.equals(TYPE_FOMA_CHARSET_SIGN)
+                ? new String(line, colonIndex + 1, length - colonIndex - 1, SNIFF_CHARSET).trim()
+                : null);
+        handleProperty(propertyName, value);
+        return (depth > 0 ? depth : -1);
+    }
+
+    /**
+     * @return {@link #CONFIDENCE_HIGH}, {@link #CONFIDENCE_LOW}, or {@link #CONFIDENCE_NONE},
+     * which tells how much {@link #getEstimatedType()} and {@link #getEstimatedCharset()} can
+     * be trusted.
+     */
+    public int getConfidence() {
+        if (mParseType != PARSE_TYPE_UNKNOWN || (mWholeInputExamined && mVersion >= 0)) {
+            return CONFIDENCE_HIGH;
+        } else if (mVersion >= 0) {
+            return CONFIDENCE_LOW;
+        } else {
+            return CONFIDENCE_NONE;
+        }
+    }
+
     /**
      * @return The available type can be used with vCard parser. You probably need to
      * use {{@link #getEstimatedCharset()} to understand the charset to be used.
@@ -169,7 +332,7 @@ public class VCardSourceDetector implements VCardInterpreter {
      * @return Charset String. Null is returned if guessing the source fails.
      */
     public String getEstimatedCharset() {
-        if (TextUtils.isEmpty(mSpecifiedCharset)) {
+        if (!TextUtils.isEmpty(mSpecifiedCharset)) {
             return mSpecifiedCharset;
         }
         switch (mParseType) {
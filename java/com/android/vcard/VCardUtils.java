@@ -25,9 +25,7 @@ import android.util.Log;
 import com.android.vcard.exception.VCardException;
 
 import java.io.ByteArrayOutputStream;
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -84,6 +82,139 @@ public class VCardUtils {
         }
     }
 
+    /**
+     * <p>
+     * Decodes Quoted-Printable read with {@link VCardConfig#DEFAULT_INTERMEDIATE_CHARSET}, where
+     * each char holds one byte, in one pass over the value. The result is the same as the
+     * steps in {@link VCardUtils#parseQuotedPrintableWithSourceCharset}: "= " and "=\t" become
+     * " " and "\t", line breaks and "=" just before them (soft line breaks) are removed, and
+     * the rest is decoded. An invalid escape makes the whole value kept undecoded.
+     * </p>
+     * <p>
+     * Holds a byte buffer reused among calls, so each thread has its own.
+     * </p>
+     */
+    private static class QuotedPrintableDecoder {
+        private static final int INITIAL_BUFFER_SIZE = 256;
+        // Don't keep a buffer grown for an unusually large value.
+        private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+        private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+        private int mLength;
+
+        public String decode(String value, boolean strictLineBreaking, String targetCharset) {
+            if (!unquote(value, strictLineBreaking, true)) {
+                Log.e(LOG_TAG, "DecoderException is thrown.");
+                unquote(value, strictLineBreaking, false);
+            }
+            if (mLength == 0) {
+                Log.w(LOG_TAG, "Given raw string is empty.");
+            }
+            final String result = decodeBuffer(targetCharset);
+            if (mBuffer.length > MAX_RETAINED_BUFFER_SIZE) {
+                mBuffer = new byte[INITIAL_BUFFER_SIZE];
+            }
+            return result;
+        }
+
+        /**
+         * Puts the bytes of the value into the buffer, removing soft line breaks.
+         *
+         * @param decode If true, "=XX" escapes are decoded too.
+         * @return false when decode is true and the value has an invalid escape.
+         */
+        private boolean unquote(String value, boolean strictLineBreaking, boolean decode) {
+            final int length = value.length();
+            if (mBuffer.length < length) {
+                mBuffer = new byte[length];
+            }
+            mLength = 0;
+
+            // The first hex digit of "=XX", or -2 when not in an escape. -1 means "=" came.
+            int upperDigit = -2;
+            for (int i = 0; i < length; i++) {
+                int ch = value.charAt(i);
+                if (ch == '=' && i < length - 1
+                        && (value.charAt(i + 1) == ' ' || value.charAt(i + 1) == '\t')) {
+                    ch = value.charAt(++i);
+                } else if (ch == '=' && isLineBreakOrEnd(value, i + 1, strictLineBreaking)) {
+                    continue;
+                } else if (ch == '\r' && (!strictLineBreaking
+                        || (i < length - 1 && value.charAt(i + 1) == '\n'))) {
+                    if (i < length - 1 && value.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    continue;
+                } else if (ch == '\n' && !strictLineBreaking) {
+                    continue;
+                }
+
+                // Chars which don't fit in a byte become '?', as String#getBytes() does. It also
+                // makes a surrogate pair one '?'.
+                if (Character.isHighSurrogate((char) ch) && i < length - 1
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+                final byte b = (byte) (ch <= 0xFF ? ch : '?');
+                if (!decode) {
+                    mBuffer[mLength++] = b;
+                } else if (upperDigit == -2) {
+                    if (b == '=') {
+                        upperDigit = -1;
+                    } else {
+                        mBuffer[mLength++] = b;
+                    }
+                } else {
+                    final int digit = (b >= 0 ? Character.digit((char) b, 16) : -1);
+                    if (digit < 0) {
+                        return false;
+                    } else if (upperDigit == -1) {
+                        upperDigit = digit;
+                    } else {
+                        mBuffer[mLength++] = (byte) ((upperDigit << 4) + digit);
+                        upperDigit = -2;
+                    }
+                }
+            }
+            return (upperDigit == -2);
+        }
+
+        /**
+         * @return true when the position is at the end of the value or a line break, where
+         * "=" just before it is a soft line break.
+         */
+        private static boolean isLineBreakOrEnd(String value, int index,
+                boolean strictLineBreaking) {
+            if (index >= value.length()) {
+                return true;
+            }
+            final char ch = value.charAt(index);
+            if (strictLineBreaking) {
+                return (ch == '\r' && index < value.length() - 1
+                        && value.charAt(index + 1) == '\n');
+            }
+            return (ch == '\r' || ch == '\n');
+        }
+
+        private String decodeBuffer(String targetCharset) {
+            try {
+                return VCardCharsetCoders.get().decode(mBuffer, 0, mLength, targetCharset);
+            } catch (IllegalArgumentException e) {
+                // Includes IllegalCharsetNameException and UnsupportedCharsetException.
+                Log.e(LOG_TAG, "Failed to encode: charset=" + targetCharset);
+                return new String(mBuffer, 0, mLength);
+            }
+        }
+    }
+
+    private static final ThreadLocal<QuotedPrintableDecoder> sQuotedPrintableDecoder =
+            new ThreadLocal<QuotedPrintableDecoder>() {
+                @Override
+                protected QuotedPrintableDecoder initialValue() {
+                    return new QuotedPrintableDecoder();
+                }
+            };
+
     /**
      * Ported methods which are hidden in {@link PhoneNumberUtils}.
      */
@@ -726,6 +857,21 @@ public class VCardUtils {
     public static String parseQuotedPrintable(
             final String value, boolean strictLineBreaking,
             String sourceCharset, String targetCharset) {
+        if (VCardConfig.DEFAULT_INTERMEDIATE_CHARSET.equalsIgnoreCase(sourceCharset)) {
+            return sQuotedPrintableDecoder.get().decode(
+                    value, strictLineBreaking, targetCharset);
+        }
+        return parseQuotedPrintableWithSourceCharset(
+                value, strictLineBreaking, sourceCharset, targetCharset);
+    }
+
+    /**
+     * Same as {@link #parseQuotedPrintable(String, boolean, String, String)}, for source
+     * charsets in which a char may not be a byte.
+     */
+    private static String parseQuotedPrintableWithSourceCharset(
+            final String value, boolean strictLineBreaking,
+            String sourceCharset, String targetCharset) {
         // "= " -> " ", "=\t" -> "\t".
         // Previous code had done this replacement. Keep on the safe side.
         final String quotedPrintable;
@@ -792,10 +938,13 @@ public class VCardUtils {
             Log.w(LOG_TAG, "Given raw string is empty.");
         }
 
+        final VCardCharsetCoders coders = VCardCharsetCoders.get();
         byte[] rawBytes = null;
         try {
-            rawBytes = rawString.getBytes(sourceCharset);
-        } catch (UnsupportedEncodingException e) {
+            final ByteBuffer byteBuffer = coders.encode(rawString, sourceCharset);
+            rawBytes = new byte[byteBuffer.remaining()];
+            byteBuffer.get(rawBytes);
+        } catch (IllegalArgumentException e) {
             Log.w(LOG_TAG, "Failed to decode: " + sourceCharset);
             rawBytes = rawString.getBytes();
         }
@@ -809,8 +958,8 @@ public class VCardUtils {
         }
 
         try {
-            return new String(decodedBytes, targetCharset);
-        } catch (UnsupportedEncodingException e) {
+            return coders.decode(decodedBytes, 0, decodedBytes.length, targetCharset);
+        } catch (IllegalArgumentException e) {
             Log.e(LOG_TAG, "Failed to encode: charset=" + targetCharset);
             return new String(decodedBytes);
         }
@@ -834,20 +983,53 @@ public class VCardUtils {
         if (sourceCharset.equalsIgnoreCase(targetCharset)) {
             return originalString;
         }
-        final Charset charset = Charset.forName(sourceCharset);
-        final ByteBuffer byteBuffer = charset.encode(originalString);
-        // byteBuffer.array() "may" return byte array which is larger than
-        // byteBuffer.remaining(). Here, we keep on the safe side.
-        final byte[] bytes = new byte[byteBuffer.remaining()];
-        byteBuffer.get(bytes);
+        final VCardCharsetCoders coders = VCardCharsetCoders.get();
+        final byte[] bytes;
+        final int length;
+        if (VCardConfig.DEFAULT_INTERMEDIATE_CHARSET.equalsIgnoreCase(sourceCharset)) {
+            // Each char of the String read with the intermediate charset holds exactly one byte
+            // of the original input. Take the bytes back without a round trip via an encoder,
+            // and decode them only once.
+            length = originalString.length();
+            bytes = coders.getScratchBytes(length);
+            if (!getIntermediateBytes(originalString, bytes, targetCharset)) {
+                return originalString;
+            }
+        } else {
+            final ByteBuffer byteBuffer = coders.encode(originalString, sourceCharset);
+            bytes = byteBuffer.array();
+            length = byteBuffer.limit();
+        }
         try {
-            return new String(bytes, targetCharset);
-        } catch (UnsupportedEncodingException e) {
+            return coders.decode(bytes, 0, length, targetCharset);
+        } catch (IllegalArgumentException e) {
             Log.e(LOG_TAG, "Failed to encode: charset=" + targetCharset);
             return null;
         }
     }
 
+    /**
+     * Puts the raw bytes behind a String read with
+     * {@link VCardConfig#DEFAULT_INTERMEDIATE_CHARSET} into the given array. Returns false when
+     * no conversion is needed at all, that is, the String only contains US-ASCII and the target
+     * charset (UTF-8) is a superset of it.
+     */
+    private static boolean getIntermediateBytes(
+            String originalString, byte[] bytes, String targetCharset) {
+        final int length = originalString.length();
+        boolean asciiOnly = true;
+        for (int i = 0; i < length; i++) {
+            final char ch = originalString.charAt(i);
+            if (ch >= 0x80) {
+                asciiOnly = false;
+            }
+            // Chars outside ISO-8859-1 never come from the parser. Keep the behavior of
+            // Charset#encode(), which replaces them with '?'.
+            bytes[i] = (ch <= 0xFF ? (byte) ch : (byte) '?');
+        }
+        return !(asciiOnly && "UTF-8".equalsIgnoreCase(targetCharset));
+    }
+
     // TODO: utilities for vCard 4.0: datetime, timestamp, integer, float, and boolean
 
     private VCardUtils() {
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Compares {@link VCardLineScanner#indexOfLineBreak(ByteBuffer, int, int)} with a byte-by-byte
+ * scan. Lives in the package of {@link VCardLineScanner}, which is package-private.
+ */
+public class VCardLineScannerTests extends TestCase {
+    private static final int WORD = 8;
+
+    /**
+     * Bytes which share their low seven bits with CR or LF, bytes around them, and plain ones.
+     */
+    private static final byte[] FILLERS = {
+        'A', '0', '=', ' ', '\t', 0x00, 0x0B, 0x0C, 0x0E, 0x09,
+        (byte) 0x8A, (byte) 0x8D, (byte) 0x80, (byte) 0xFF, (byte) 0x7F
+    };
+
+    private static int naiveIndexOfLineBreak(byte[] bytes, int start, int limit) {
+        for (int i = start; i < limit; i++) {
+            if (bytes[i] == '\r' || bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private static ByteBuffer toDirectBuffer(byte[] bytes, ByteOrder order) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).order(order);
+        buffer.put(bytes);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Checks every start and limit of the bytes in heap and direct buffers of both orders.
+     */
+    private static void assertSameAsNaiveScan(byte[] bytes) {
+        final ByteBuffer[] buffers = {
+                ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN),
+                ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN),
+                VCardLineScanner.wrap(bytes),
+                toDirectBuffer(bytes, ByteOrder.LITTLE_ENDIAN),
+                toDirectBuffer(bytes, ByteOrder.BIG_ENDIAN)
+        };
+        for (ByteBuffer buffer : buffers) {
+            assertSameAsNaiveScan(bytes, buffer);
+        }
+    }
+
+    private static void assertSameAsNaiveScan(byte[] bytes, ByteBuffer buffer) {
+        for (int start = 0; start <= bytes.length; start++) {
+            for (int limit = start; limit <= bytes.length; limit++) {
+                final int expected = naiveIndexOfLineBreak(bytes, start, limit);
+                final int actual = VCardLineScanner.indexOfLineBreak(buffer, start, limit);
+                if (expected != actual) {
+                    fail("start=" + start + ", limit=" + limit + ", order=" + buffer.order()
+                            + ", direct=" + buffer.isDirect() + ": expected " + expected
+                            + " but was " + actual);
+                }
+            }
+        }
+        assertEquals(0, buffer.position());
+        assertEquals(bytes.length, buffer.limit());
+    }
+
+    private static byte[] filledBytes(int length, byte filler) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = filler;
+        }
+        return bytes;
+    }
+
+    public void testNoLineBreak() {
+        for (byte filler : FILLERS) {
+            // Lengths shorter than, equal to, and longer than a word.
+            for (int length = 0; length <= 3 * WORD + 1; length++) {
+                assertSameAsNaiveScan(filledBytes(length, filler));
+            }
+        }
+    }
+
+    public void testLineBreakAtEachPositionOfWord() {
+        final byte[] breaks = {'\r', '\n'};
+        for (byte filler : FILLERS) {
+            for (byte lineBreak : breaks) {
+                // The first and last bytes of the first and second words, and in the tail.
+                for (int position = 0; position < 2 * WORD + 5; position++) {
+                    final byte[] bytes = filledBytes(2 * WORD + 5, filler);
+                    bytes[position] = lineBreak;
+                    assertSameAsNaiveScan(bytes);
+                }
+            }
+        }
+    }
+
+    public void testHighBitLookAlikes() {
+        // 0x8D and 0x8A only differ from CR and LF in the highest bit, and must not match.
+        final byte[] bytes = {
+            (byte) 0x8D, (byte) 0x8A, (byte) 0x8D, (byte) 0x8A,
+            (byte) 0x8A, (byte) 0x8D, (byte) 0x8A, (byte) 0x8D,
+            (byte) 0x8D, (byte) 0x8A, '\r', '\n', (byte) 0x8D
+        };
+        assertSameAsNaiveScan(bytes);
+        assertEquals(10, VCardLineScanner.indexOfLineBreak(
+                VCardLineScanner.wrap(bytes), 0, bytes.length));
+        assertEquals(11, VCardLineScanner.indexOfLineBreak(
+                VCardLineScanner.wrap(bytes), 11, bytes.length));
+    }
+
+    public void testCrlfAcrossWords() {
+        // CR as the last byte of a word, followed by LF as the first byte of the next one.
+        final byte[] bytes = filledBytes(3 * WORD, (byte) 'A');
+        bytes[WORD - 1] = '\r';
+        bytes[WORD] = '\n';
+        assertSameAsNaiveScan(bytes);
+        assertEquals(WORD - 1, VCardLineScanner.indexOfLineBreak(
+                VCardLineScanner.wrap(bytes), 1, bytes.length));
+        assertEquals(WORD, VCardLineScanner.indexOfLineBreak(
+                VCardLineScanner.wrap(bytes), WORD, bytes.length));
+    }
+
+    public void testRandomBytes() {
+        final Random random = new Random(0);
+        for (int round = 0; round < 50; round++) {
+            final byte[] bytes = new byte[random.nextInt(4 * WORD)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = random.nextInt(8) == 0
+                        ? (random.nextBoolean() ? (byte) '\r' : (byte) '\n')
+                        : FILLERS[random.nextInt(FILLERS.length)];
+            }
+            assertSameAsNaiveScan(bytes);
+        }
+    }
+
+    public void testMappedBuffer() throws IOException {
+        final byte[] bytes = filledBytes(3 * WORD + 3, (byte) 0x8D);
+        bytes[2 * WORD - 1] = '\n';
+        bytes[3 * WORD + 1] = '\r';
+        final File file = File.createTempFile("vcard", ".vcf");
+        try {
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            final RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                final ByteBuffer buffer = in.getChannel().map(
+                        FileChannel.MapMode.READ_ONLY, 0, bytes.length);
+                assertSameAsNaiveScan(bytes, buffer.order(ByteOrder.BIG_ENDIAN));
+                assertSameAsNaiveScan(bytes, buffer.order(ByteOrder.LITTLE_ENDIAN));
+            } finally {
+                in.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testIndexOfDelimiter() {
+        final String line = "item1.TEL;TYPE=\"WORK\":123";
+        assertEquals(5, VCardLineScanner.indexOfDelimiter(
+                line, 0, VCardLineScanner.NAME_DELIMITERS));
+        assertEquals(9, VCardLineScanner.indexOfDelimiter(
+                line, 6, VCardLineScanner.NAME_DELIMITERS));
+        assertEquals(21, VCardLineScanner.indexOfDelimiter(
+                line, 10, VCardLineScanner.NAME_DELIMITERS));
+        assertEquals(15, VCardLineScanner.indexOfDelimiter(
+                line, 10, VCardLineScanner.PARAM_DELIMITERS));
+        assertEquals(-1, VCardLineScanner.indexOfDelimiter(
+                line, 22, VCardLineScanner.PARAM_DELIMITERS));
+        assertEquals(-1, VCardLineScanner.indexOfDelimiter(
+                "あ.い", 2, VCardLineScanner.NAME_DELIMITERS));
+    }
+}
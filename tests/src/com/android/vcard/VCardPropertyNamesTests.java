@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Lives in the package of {@link VCardPropertyNames}, which is package-private.
+ */
+public class VCardPropertyNamesTests extends TestCase {
+    public void testKnownNamesRoundTrip() {
+        for (int token = 0; token <= VCardPropertyNames.CALENDRURI; token++) {
+            final String name = VCardPropertyNames.getName(token);
+            assertNotNull(name);
+            assertEquals(name.toUpperCase(Locale.US), name);
+            assertEquals(token, VCardPropertyNames.getToken(name));
+            assertSame(name, VCardPropertyNames.toUpperCase(name, 0, name.length()));
+
+            // In the middle of a line.
+            final String line = "item1." + name + ";TYPE=WORK:";
+            final int start = "item1.".length();
+            assertEquals(token, VCardPropertyNames.getToken(line, start, start + name.length()));
+        }
+        assertNull(VCardPropertyNames.getName(VCardPropertyNames.UNKNOWN));
+    }
+
+    public void testLookupIgnoresCase() {
+        for (int token = 0; token <= VCardPropertyNames.CALENDRURI; token++) {
+            final String name = VCardPropertyNames.getName(token);
+            final String lowerName = name.toLowerCase(Locale.US);
+            assertEquals(token, VCardPropertyNames.getToken(lowerName));
+            assertSame(name, VCardPropertyNames.toUpperCase(lowerName, 0, lowerName.length()));
+
+            final char[] mixedName = name.toCharArray();
+            for (int i = 0; i < mixedName.length; i += 2) {
+                mixedName[i] = Character.toLowerCase(mixedName[i]);
+            }
+            assertEquals(token, VCardPropertyNames.getToken(new String(mixedName)));
+        }
+    }
+
+    public void testUnknownNamesMiss() {
+        assertEquals(VCardPropertyNames.UNKNOWN, VCardPropertyNames.getToken(null));
+        for (String name : new String[] {
+                "", "FOO", "TE", "TELX", "TEL;", "PHOTOS", "E-MAIL",
+                "X-", "X-FOO", "X-CUSTOM-PROPERTY", "x-android", "X-ANDROID-CUSTOMS"}) {
+            assertEquals(name, VCardPropertyNames.UNKNOWN, VCardPropertyNames.getToken(name));
+            assertEquals(name.toUpperCase(Locale.US),
+                    VCardPropertyNames.toUpperCase(name, 0, name.length()));
+        }
+        assertEquals(VCardPropertyNames.UNKNOWN, VCardPropertyNames.getToken("TELEPHONE", 0, 4));
+    }
+
+    public void testTokenBits() {
+        final long[] bits21 = VCardPropertyNames.toTokenBits(VCardParser_V21.sKnownPropertyNameSet);
+        assertTrue(VCardPropertyNames.contains(bits21, VCardPropertyNames.TEL));
+        assertTrue(VCardPropertyNames.contains(bits21, VCardPropertyNames.MAILER));
+        assertFalse(VCardPropertyNames.contains(bits21, VCardPropertyNames.NICKNAME));
+        assertFalse(VCardPropertyNames.contains(bits21, VCardPropertyNames.UNKNOWN));
+
+        // The tokens of vCard 4.0 go beyond the first 64 bits.
+        final long[] bits40 = VCardPropertyNames.toTokenBits(VCardParser_V40.sKnownPropertyNameSet);
+        assertTrue(VCardPropertyNames.contains(bits40, VCardPropertyNames.CALENDRURI));
+        assertFalse(VCardPropertyNames.contains(bits40, VCardPropertyNames.MAILER));
+
+        for (String name : VCardParser_V30.sKnownPropertyNameSet) {
+            assertTrue(name, VCardPropertyNames.contains(VCardParser_V30.sKnownPropertyNameTokens,
+                    VCardPropertyNames.getToken(name)));
+        }
+        int count = 0;
+        for (int token = 0; token <= VCardPropertyNames.CALENDRURI; token++) {
+            if (VCardPropertyNames.contains(VCardParser_V30.sKnownPropertyNameTokens, token)) {
+                count++;
+            }
+        }
+        assertEquals(VCardParser_V30.sKnownPropertyNameSet.size(), count);
+
+        try {
+            VCardPropertyNames.toTokenBits(Arrays.asList("TEL", "X-FOO"));
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests;
+
+import com.android.vcard.VCardBatchParser;
+import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardEntryCounter;
+import com.android.vcard.VCardInterpreter;
+import com.android.vcard.tests.testutils.VCardParserTestsBase;
+
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures how {@link VCardBatchParser} scales with the number of concurrent parses. Results
+ * are written to the log with the tag "VCardBatchParserBenchmark".
+ *
+ * Takes much longer than the other tests, so it is marked as a large test. Runs limited to
+ * small tests ("-e size small") skip it.
+ */
+@LargeTest
+public class VCardBatchParserBenchmarkTests extends VCardParserTestsBase {
+    private static final String LOG_TAG = "VCardBatchParserBenchmark";
+
+    private static final int[] CONCURRENCY_LEVELS = {1, 4, 16, 64, 256};
+    private static final int INPUT_COUNT = 1024;
+
+    /**
+     * Input which waits for a while before each read, like a slow network connection.
+     */
+    private static class SlowInputStream extends ByteArrayInputStream {
+        private static final int MAX_READ_SIZE = 256;
+        private static final long DELAY_MILLIS = 1;
+
+        public SlowInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            try {
+                Thread.sleep(DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.read(buffer, offset, Math.min(length, MAX_READ_SIZE));
+        }
+    }
+
+    public void testInMemoryInputs() throws IOException, InterruptedException {
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        for (int concurrency : CONCURRENCY_LEVELS) {
+            final List<InputStream> inputList = new ArrayList<InputStream>();
+            for (int i = 0; i < INPUT_COUNT; i++) {
+                inputList.add(new ByteArrayInputStream(data));
+            }
+            runBenchmark("in-memory", concurrency, inputList, 3);
+        }
+    }
+
+    public void testBlockingInputs() throws IOException, InterruptedException {
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        for (int concurrency : CONCURRENCY_LEVELS) {
+            final List<InputStream> inputList = new ArrayList<InputStream>();
+            for (int i = 0; i < INPUT_COUNT; i++) {
+                inputList.add(new SlowInputStream(data));
+            }
+            runBenchmark("blocking", concurrency, inputList, 3);
+        }
+    }
+
+    private void runBenchmark(String name, int concurrency, List<InputStream> inputList,
+            int expectedEntryCount) throws InterruptedException {
+        final List<VCardEntryCounter> counterList = new ArrayList<VCardEntryCounter>();
+        for (int i = 0; i < inputList.size(); i++) {
+            counterList.add(new VCardEntryCounter());
+        }
+        final VCardBatchParser.InterpreterFactory factory =
+                new VCardBatchParser.InterpreterFactory() {
+                    @Override
+                    public VCardInterpreter createInterpreter(int index) {
+                        return counterList.get(index);
+                    }
+                };
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            final long start = System.nanoTime();
+            final List<Exception> failureList = new VCardBatchParser(
+                    VCardConfig.VCARD_TYPE_V21_GENERIC, executor).parse(inputList, factory);
+            final long elapsedNanos = System.nanoTime() - start;
+            Log.i(LOG_TAG, String.format("%s: concurrency=%d, %d parses in %d ms (%d parses/s)",
+                    name, concurrency, inputList.size(), elapsedNanos / 1000000,
+                    inputList.size() * 1000000000L / Math.max(elapsedNanos, 1)));
+
+            for (int i = 0; i < inputList.size(); i++) {
+                assertNull(failureList.get(i));
+                assertEquals(expectedEntryCount, counterList.get(i).getCount());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
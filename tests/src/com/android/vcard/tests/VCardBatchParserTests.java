@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests;
+
+import com.android.vcard.VCardBatchParser;
+import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardInterpreter;
+import com.android.vcard.VCardParser_V21;
+import com.android.vcard.exception.VCardException;
+import com.android.vcard.tests.testutils.RecordingVCardInterpreter;
+import com.android.vcard.tests.testutils.VCardParserTestsBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests for {@link VCardBatchParser}.
+ */
+public class VCardBatchParserTests extends VCardParserTestsBase {
+    public void testBatchParse() throws IOException, VCardException, InterruptedException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        final List<InputStream> inputList = new ArrayList<InputStream>();
+        final List<RecordingVCardInterpreter> interpreterList =
+                new ArrayList<RecordingVCardInterpreter>();
+        for (int i = 0; i < 16; i++) {
+            // Every fourth input is truncated in the middle of an entry.
+            inputList.add(new ByteArrayInputStream(data, 0,
+                    (i % 4 == 3 ? data.length / 2 : data.length)));
+            interpreterList.add(new RecordingVCardInterpreter());
+        }
+        final VCardBatchParser.InterpreterFactory factory =
+                new VCardBatchParser.InterpreterFactory() {
+                    @Override
+                    public VCardInterpreter createInterpreter(int index) {
+                        return interpreterList.get(index);
+                    }
+                };
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Exception> failureList = new VCardBatchParser(
+                    VCardConfig.VCARD_TYPE_V21_GENERIC, executor).parse(inputList, factory);
+            assertEquals(inputList.size(), failureList.size());
+            for (int i = 0; i < inputList.size(); i++) {
+                if (i % 4 == 3) {
+                    assertTrue(failureList.get(i) instanceof VCardException);
+                } else {
+                    assertNull(failureList.get(i));
+                    assertEquals(expected, interpreterList.get(i).mEventList);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
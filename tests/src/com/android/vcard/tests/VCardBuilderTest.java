@@ -21,6 +21,7 @@ import android.provider.ContactsContract;
 
 import com.android.vcard.VCardBuilder;
 import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardPhotoStore;
 import com.google.android.collect.Lists;
 
 import junit.framework.TestCase;
@@ -54,5 +55,28 @@ public class VCardBuilderTest extends TestCase {
         assertTrue("Actual value:\n" + actual + " expected to contain\n" + expectedFullName +
                 "\nbut does not.", actual.contains(expectedFullName));
     }
-}
 
+    public void testPhotosWithPhotoStore() {
+        final VCardPhotoStore photoStore = new VCardPhotoStore();
+        final byte[] photo = new byte[] { (byte) 0xff, (byte) 0xd8, 1, 2, 3 };
+        String expected = null;
+        for (int i = 0; i < 3; i++) {
+            final ArrayList<ContentValues> contentList = Lists.newArrayList();
+            final ContentValues values = new ContentValues();
+            values.put(ContactsContract.CommonDataKinds.Photo.PHOTO, photo.clone());
+            contentList.add(values);
+
+            final VCardBuilder builder = new VCardBuilder(VCardConfig.VCARD_TYPE_DEFAULT);
+            if (i > 0) {
+                builder.setPhotoStore(photoStore);
+            }
+            builder.appendPhotos(contentList);
+            if (expected == null) {
+                expected = builder.toString();
+            } else {
+                assertEquals(expected, builder.toString());
+            }
+        }
+        assertEquals(1, photoStore.getSharedCount());
+    }
+}
@@ -34,8 +34,10 @@ import com.android.vcard.VCardEntry.PhotoData;
 import com.android.vcard.VCardEntry.PostalData;
 import com.android.vcard.VCardEntry.SipData;
 import com.android.vcard.VCardEntryConstructor;
+import com.android.vcard.VCardEntryDeduplicator;
 import com.android.vcard.VCardEntryHandler;
 import com.android.vcard.VCardInterpreter;
+import com.android.vcard.VCardPhoneNumberCache;
 import com.android.vcard.VCardProperty;
 
 import android.content.ContentProviderOperation;
@@ -332,6 +334,297 @@ public class VCardEntryTests extends AndroidTestCase {
         assertTrue(result.contains("Suffix"));
     }
 
+    /**
+     * Tests lists returned by getters, including "ORG" which fills the organization created by
+     * an earlier "TITLE".
+     */
+    public void testElementLists() {
+        VCardEntry entry = new VCardEntry();
+        VCardProperty property = new VCardProperty();
+        property.setName("TITLE");
+        property.setValues("title");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("TEL");
+        property.setParameter("TYPE", "HOME");
+        property.setValues("1");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("EMAIL");
+        property.setParameter("TYPE", "WORK");
+        property.setValues("email");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("TEL");
+        property.setParameter("TYPE", "PREF");
+        property.setValues("2");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("ORG");
+        property.setValues("organization", "");
+        entry.addProperty(property);
+        entry.consolidateFields();
+
+        List<PhoneData> phoneList = entry.getPhoneList();
+        assertEquals(2, phoneList.size());
+        assertEquals(new PhoneData("1", Phone.TYPE_HOME, null, false), phoneList.get(0));
+        assertEquals(new PhoneData("2", Phone.TYPE_MAIN, null, true), phoneList.get(1));
+        assertEquals(Arrays.asList(new EmailData("email", Email.TYPE_WORK, null, false)),
+                entry.getEmailList());
+        assertEquals(Arrays.asList(new OrganizationData(
+                "organization", "", "title", null, Organization.TYPE_WORK, false)),
+                entry.getOrganizationList());
+        assertNull(entry.getPostalList());
+        assertNull(entry.getNotes());
+        assertEquals("email", entry.getDisplayName());
+
+        try {
+            phoneList.add(new PhoneData("3", Phone.TYPE_HOME, null, false));
+            fail("Lists of elements must be read-only.");
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    /**
+     * Tests TYPE values in lower case, which iOS emits, are handled as in upper case.
+     */
+    public void testLowerCaseTypeParams() {
+        VCardEntry entry = new VCardEntry();
+        VCardProperty property = new VCardProperty();
+        property.setName("TEL");
+        property.addParameter("TYPE", "cell");
+        property.setValues("1");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("ADR");
+        property.addParameter("TYPE", "company");
+        property.addParameter("TYPE", "pref");
+        property.setValues(null, null, "street");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("X-SIP");
+        property.addParameter("TYPE", "x-private");
+        property.setValues("sipdata");
+        entry.addProperty(property);
+
+        assertEquals(Arrays.asList(new PhoneData("1", Phone.TYPE_MOBILE, null, false)),
+                entry.getPhoneList());
+        assertEquals(Arrays.asList(new PostalData(null, null, "street", null, null, null,
+                null, StructuredPostal.TYPE_WORK, null, true, VCardConfig.VCARD_TYPE_DEFAULT)),
+                entry.getPostalList());
+        MockEntryElementIterator iterator = new MockEntryElementIterator();
+        iterator.addExpectedElement(new NameData());
+        iterator.addExpectedElement(new PhoneData("1", Phone.TYPE_MOBILE, null, false));
+        iterator.addExpectedElement(new PostalData(null, null, "street", null, null, null,
+                null, StructuredPostal.TYPE_WORK, null, true, VCardConfig.VCARD_TYPE_DEFAULT));
+        iterator.addExpectedElement(
+                new SipData("sipdata", SipAddress.TYPE_CUSTOM, "private", false));
+        entry.iterateAllData(iterator);
+    }
+
+    /**
+     * Tests "PREF" and property names in lower case are handled as in upper case.
+     */
+    public void testLowerCasePrefAndPropertyNames() {
+        VCardEntry entry = new VCardEntry();
+        VCardProperty property = new VCardProperty();
+        property.setName("tel");
+        property.addParameter("TYPE", "cell");
+        property.addParameter("TYPE", "pref");
+        property.setValues("1");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("X-AIM");
+        property.addParameter("TYPE", "work");
+        property.addParameter("TYPE", "Pref");
+        property.setValues("aim");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("Org");
+        property.addParameter("TYPE", "pref");
+        property.setValues("company");
+        entry.addProperty(property);
+
+        assertEquals(Arrays.asList(new PhoneData("1", Phone.TYPE_MOBILE, null, true)),
+                entry.getPhoneList());
+        assertEquals(Arrays.asList(new ImData(Im.PROTOCOL_AIM, null, "aim", Im.TYPE_WORK, true)),
+                entry.getImList());
+        assertEquals(Arrays.asList(new OrganizationData("company", null, null, null,
+                Organization.TYPE_WORK, true)), entry.getOrganizationList());
+        assertNull(entry.getUnknownXData());
+    }
+
+    /**
+     * Tests that entries of one import format a phone number once.
+     */
+    public void testPhoneNumberCache() {
+        VCardEntryConstructor entryConstructor = new VCardEntryConstructor();
+        MockVCardEntryHandler entryHandler = new MockVCardEntryHandler();
+        entryConstructor.addEntryHandler(entryHandler);
+        VCardPhoneNumberCache cache = entryConstructor.getPhoneNumberCache();
+
+        importPhoneNumbers(entryConstructor, 3);
+        // The counts are kept after the import, for callers reporting them.
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        List<VCardEntry> entries = entryHandler.getEntries();
+        assertEquals(3, entries.size());
+        PhoneData phone0 = entries.get(0).getPhoneList().get(0);
+        assertEquals(phone0, entries.get(1).getPhoneList().get(0));
+        assertEquals(phone0, entries.get(2).getPhoneList().get(0));
+
+        // The next import starts with no numbers and new counts.
+        entryConstructor = new VCardEntryConstructor();
+        cache = entryConstructor.getPhoneNumberCache();
+        importPhoneNumbers(entryConstructor, 3);
+        importPhoneNumbers(entryConstructor, 2);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    private void importPhoneNumbers(VCardEntryConstructor entryConstructor, int entryCount) {
+        entryConstructor.onVCardStarted();
+        for (int i = 0; i < entryCount; i++) {
+            entryConstructor.onEntryStarted();
+            VCardProperty property = new VCardProperty();
+            property.setName(VCardConstants.PROPERTY_TEL);
+            property.setValues("650-555-0199");
+            entryConstructor.onPropertyCreated(property);
+            entryConstructor.onEntryEnded();
+        }
+        entryConstructor.onVCardEnded();
+    }
+
+    private VCardEntry createEntry(String name, String phone, String email, String street) {
+        VCardEntry entry = new VCardEntry();
+        VCardProperty property = new VCardProperty();
+        property.setName("N");
+        property.setValues(name);
+        entry.addProperty(property);
+        if (phone != null) {
+            property = new VCardProperty();
+            property.setName("TEL");
+            property.setValues(phone);
+            entry.addProperty(property);
+        }
+        if (email != null) {
+            property = new VCardProperty();
+            property.setName("EMAIL");
+            property.setValues(email);
+            entry.addProperty(property);
+        }
+        if (street != null) {
+            property = new VCardProperty();
+            property.setName("ADR");
+            property.setValues(null, null, street);
+            entry.addProperty(property);
+        }
+        entry.consolidateFields();
+        return entry;
+    }
+
+    public void testDeduplicator() {
+        MockVCardEntryHandler entryHandler = new MockVCardEntryHandler();
+        VCardEntryDeduplicator deduplicator = new VCardEntryDeduplicator(entryHandler);
+        deduplicator.onStart();
+        deduplicator.onEntryCreated(createEntry("test1", "1", "email1", null));
+        deduplicator.onEntryCreated(createEntry("test2", "1", "email1", null));
+        deduplicator.onEntryCreated(createEntry("test1", "1", "email1", "street1"));
+        deduplicator.onEntryCreated(createEntry("test1", "2", "email1", null));
+        deduplicator.onEntryCreated(createEntry("test1", "1", "email1", "street2"));
+        // Entries are passed on at the end.
+        assertEquals(0, entryHandler.getEntries().size());
+        deduplicator.onEnd();
+
+        List<VCardEntry> entries = entryHandler.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(2, deduplicator.getMergedCount());
+        assertEquals("test1", entries.get(0).getDisplayName());
+        assertEquals(1, entries.get(0).getPhoneList().size());
+        List<PostalData> postalList = entries.get(0).getPostalList();
+        assertEquals(2, postalList.size());
+        assertEquals("street1", postalList.get(0).getStreet());
+        assertEquals("street2", postalList.get(1).getStreet());
+        assertEquals("test2", entries.get(1).getDisplayName());
+        assertEquals("2", entries.get(2).getPhoneList().get(0).getNumber());
+    }
+
+    public void testDeduplicatorWindow() {
+        MockVCardEntryHandler entryHandler = new MockVCardEntryHandler();
+        VCardEntryDeduplicator deduplicator = new VCardEntryDeduplicator(entryHandler, 1);
+        deduplicator.onStart();
+        deduplicator.onEntryCreated(createEntry("test1", "1", null, null));
+        deduplicator.onEntryCreated(createEntry("test1", "1", null, null));
+        deduplicator.onEntryCreated(createEntry("test2", "1", null, null));
+        assertEquals(1, entryHandler.getEntries().size());
+        // The first entry has left the window.
+        deduplicator.onEntryCreated(createEntry("test1", "1", null, null));
+        deduplicator.onEnd();
+        assertEquals(3, entryHandler.getEntries().size());
+        assertEquals(1, deduplicator.getMergedCount());
+    }
+
+    /**
+     * Tests that entries with the same name but no phone or email are not merged.
+     */
+    public void testDeduplicatorWithNameOnlyEntries() {
+        MockVCardEntryHandler entryHandler = new MockVCardEntryHandler();
+        VCardEntryDeduplicator deduplicator = new VCardEntryDeduplicator(entryHandler);
+        deduplicator.onStart();
+        deduplicator.onEntryCreated(createEntry("test1", null, null, "street1"));
+        deduplicator.onEntryCreated(createEntry("test1", null, null, "street2"));
+        deduplicator.onEntryCreated(createEntry("test1", null, null, null));
+        deduplicator.onEnd();
+
+        List<VCardEntry> entries = entryHandler.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(0, deduplicator.getMergedCount());
+        assertEquals("street1", entries.get(0).getPostalList().get(0).getStreet());
+        assertEquals(1, entries.get(0).getPostalList().size());
+        assertEquals("street2", entries.get(1).getPostalList().get(0).getStreet());
+        assertNull(entries.get(2).getPostalList());
+    }
+
+    /**
+     * Tests that entries of one import share the bytes of identical photos.
+     */
+    public void testSharedPhotoBytes() {
+        VCardEntryConstructor entryConstructor = new VCardEntryConstructor();
+        MockVCardEntryHandler entryHandler = new MockVCardEntryHandler();
+        entryConstructor.addEntryHandler(entryHandler);
+
+        entryConstructor.onVCardStarted();
+        for (int i = 0; i < 3; i++) {
+            entryConstructor.onEntryStarted();
+            VCardProperty property = new VCardProperty();
+            property.setName(VCardConstants.PROPERTY_PHOTO);
+            property.setByteValue(new byte[] { (byte) 0xff, (byte) 0xd8, (byte) (i / 2) });
+            entryConstructor.onPropertyCreated(property);
+            entryConstructor.onEntryEnded();
+        }
+        entryConstructor.onVCardEnded();
+
+        List<VCardEntry> entries = entryHandler.getEntries();
+        assertEquals(3, entries.size());
+        PhotoData photo0 = entries.get(0).getPhotoList().get(0);
+        PhotoData photo1 = entries.get(1).getPhotoList().get(0);
+        PhotoData photo2 = entries.get(2).getPhotoList().get(0);
+        assertSame(photo0.getBytes(), photo1.getBytes());
+        assertNotSame(photo0.getBytes(), photo2.getBytes());
+        assertEquals(photo0, photo1);
+        assertEquals(new PhotoData(null, photo0.getBytes().clone(), false).hashCode(),
+                photo0.hashCode());
+    }
+
     /**
      * Tests that VCardEntry emits correct insert operation for name field.
      */
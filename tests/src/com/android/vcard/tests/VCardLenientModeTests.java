@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests;
+
+import com.android.vcard.VCardEntry;
+import com.android.vcard.VCardEntryConstructor;
+import com.android.vcard.VCardEntryHandler;
+import com.android.vcard.VCardParseErrorListener;
+import com.android.vcard.VCardParser;
+import com.android.vcard.VCardParser_V30;
+import com.android.vcard.exception.VCardException;
+import com.android.vcard.tests.testutils.RecordingVCardInterpreter;
+import com.android.vcard.tests.testutils.VCardParserTestsBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the lenient mode of {@link VCardParser}, which skips broken entries when
+ * a {@link VCardParseErrorListener} is set, and for the strict mode without it.
+ */
+public class VCardLenientModeTests extends VCardParserTestsBase {
+    public void testLenientModeSkipsBrokenEntry() throws IOException, VCardException {
+        final VCardEntryConstructor constructor = new VCardEntryConstructor();
+        final List<VCardEntry> entries = new ArrayList<VCardEntry>();
+        constructor.addEntryHandler(new VCardEntryHandler() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onEntryCreated(VCardEntry entry) {
+                entries.add(entry);
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        });
+        final List<Long> errorOffsets = new ArrayList<Long>();
+        final VCardParser_V30 parser = new VCardParser_V30();
+        parser.addInterpreter(constructor);
+        parser.setErrorListener(new VCardParseErrorListener() {
+            @Override
+            public void onEntryError(long startOffset, long endOffset, VCardException exception) {
+                // The broken entry is dropped before the listener hears about it.
+                assertEquals(1, entries.size());
+                errorOffsets.add(startOffset);
+                errorOffsets.add(endOffset);
+            }
+        });
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v30_broken_entry);
+        try {
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        // The broken entry is dropped, and the entries around it are kept.
+        assertEquals(2, entries.size());
+        assertEquals("Roid Ando", entries.get(0).getDisplayName());
+        assertEquals("Roid2 Ando", entries.get(1).getDisplayName());
+        // The second entry spans from byte 67 up to the third entry at byte 164. It still
+        // counts as completed, so that imports resume after it.
+        assertEquals(Arrays.asList(67L, 164L), errorOffsets);
+        assertEquals(3, parser.getCompletedEntryCount());
+    }
+
+    /**
+     * An END line of an unknown type ends the entry, and must not hide the next one.
+     */
+    public void testLenientModeWithBrokenEndLine() throws IOException, VCardException {
+        final String vcard = "BEGIN:VCARD\r\nVERSION:3.0\r\nFN:A\r\nEND:FOO\r\n"
+                + "BEGIN:VCARD\r\nVERSION:3.0\r\nFN:B\r\nEND:VCARD\r\n";
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final List<Long> errorOffsets = new ArrayList<Long>();
+        final VCardParser_V30 parser = new VCardParser_V30();
+        parser.addInterpreter(interpreter);
+        parser.setErrorListener(new VCardParseErrorListener() {
+            @Override
+            public void onEntryError(long startOffset, long endOffset, VCardException exception) {
+                errorOffsets.add(startOffset);
+                errorOffsets.add(endOffset);
+            }
+        });
+        parser.parse(new ByteArrayInputStream(vcard.getBytes("US-ASCII")));
+
+        assertEquals(Arrays.asList("START", "START_ENTRY", "VERSION:[3.0]", "FN:[A]",
+                "ABORT_ENTRY", "START_ENTRY", "VERSION:[3.0]", "FN:[B]", "END_ENTRY", "END"),
+                interpreter.mEventList);
+        assertEquals(Arrays.asList(0L, 41L), errorOffsets);
+    }
+
+    public void testStrictModeStopsAtBrokenEntry() throws IOException {
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v30_broken_entry);
+        try {
+            new VCardParser_V30().parse(inputStream);
+            fail("VCardException must be thrown.");
+        } catch (VCardException e) {
+        } finally {
+            inputStream.close();
+        }
+    }
+}
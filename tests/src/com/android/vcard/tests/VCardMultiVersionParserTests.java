@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests;
+
+import com.android.vcard.VCardMultiVersionParser;
+import com.android.vcard.VCardParser;
+import com.android.vcard.VCardParser_V21;
+import com.android.vcard.VCardParser_V30;
+import com.android.vcard.exception.VCardException;
+import com.android.vcard.tests.testutils.RecordingVCardInterpreter;
+import com.android.vcard.tests.testutils.VCardParserTestsBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link VCardMultiVersionParser}, which detects the version of each entry.
+ */
+public class VCardMultiVersionParserTests extends VCardParserTestsBase {
+    public void testMultiVersionParserParsesMixedVersions() throws IOException, VCardException {
+        final List<String> expected = new ArrayList<String>();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final List<String> events21 =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final List<String> events30 = parseWithRecording(new VCardParser_V30(), R.raw.v30_simple);
+        expected.add("START");
+        expected.addAll(events21.subList(1, events21.size() - 1));
+        expected.addAll(events30.subList(1, events30.size() - 1));
+        expected.addAll(events21.subList(1, events21.size() - 1));
+        expected.add("END");
+        outputStream.write(readRawResource(R.raw.v21_multiple_entry));
+        outputStream.write(readRawResource(R.raw.v30_simple));
+        outputStream.write(readRawResource(R.raw.v21_multiple_entry));
+
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardParser parser = new VCardMultiVersionParser();
+        parser.addInterpreter(interpreter);
+        parser.parse(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(expected, interpreter.mEventList);
+    }
+
+    /**
+     * An entry whose VERSION comes after the lines the parser looks at is parsed as the
+     * default version, instead of stopping the parse.
+     */
+    public void testMultiVersionParserWithLateVersion() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder();
+        final List<String> expected = new ArrayList<String>();
+        expected.add("START");
+        expected.add("START_ENTRY");
+        builder.append("BEGIN:VCARD\r\n");
+        // VERSION comes on line 17.
+        for (int i = 0; i < 15; i++) {
+            builder.append("NOTE:note ").append(i).append("\r\n");
+            expected.add("NOTE:[note " + i + "]");
+        }
+        builder.append("VERSION:3.0\r\nFN:Late\r\nEND:VCARD\r\n");
+        builder.append("BEGIN:VCARD\r\nVERSION:3.0\r\nFN:Next\r\nEND:VCARD\r\n");
+        expected.add("VERSION:[3.0]");
+        expected.add("FN:[Late]");
+        expected.add("END_ENTRY");
+        expected.add("START_ENTRY");
+        expected.add("VERSION:[3.0]");
+        expected.add("FN:[Next]");
+        expected.add("END_ENTRY");
+        expected.add("END");
+
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardParser parser = new VCardMultiVersionParser();
+        parser.addInterpreter(interpreter);
+        parser.parse(new ByteArrayInputStream(builder.toString().getBytes("UTF-8")));
+        assertEquals(expected, interpreter.mEventList);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests;
+
+import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardParallelParser;
+import com.android.vcard.VCardParser;
+import com.android.vcard.VCardParser_V21;
+import com.android.vcard.VCardProperty;
+import com.android.vcard.exception.VCardException;
+import com.android.vcard.tests.testutils.RecordingVCardInterpreter;
+import com.android.vcard.tests.testutils.VCardParserTestsBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests for {@link VCardParallelParser}, whose events must be the same as those of a
+ * sequential parse.
+ */
+public class VCardParallelParserTests extends VCardParserTestsBase {
+    public void testParallelParsePreservesOrder() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<String> actual = parseWithRecording(new VCardParallelParser(
+                    VCardConfig.VCARD_TYPE_V21_GENERIC, executor, true),
+                    R.raw.v21_multiple_entry);
+            assertEquals(expected, actual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testParallelParseNest() throws IOException, VCardException {
+        final List<String> expected = parseWithRecording(new VCardParser_V21(), R.raw.v21_nest);
+        final List<String> actual = parseWithRecording(
+                new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC), R.raw.v21_nest);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * The thread pool of the default constructor lives only during one parse.
+     */
+    public void testParallelParserParsesTwice() throws IOException, VCardException {
+        final List<String> expected = parseWithRecording(new VCardParser_V21(), R.raw.v21_nest);
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardParser parser =
+                new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.addInterpreter(interpreter);
+        final byte[] data = readRawResource(R.raw.v21_nest);
+        for (int i = 0; i < 2; i++) {
+            interpreter.mEventList.clear();
+            parser.parse(new ByteArrayInputStream(data));
+            assertEquals(expected, interpreter.mEventList);
+        }
+    }
+
+    /**
+     * Property values are decoded on the worker threads, before the future of their chunk
+     * completes, and not lazily on the thread calling interpreters.
+     */
+    public void testParallelParserDecodesOnWorkerThreads() throws Exception {
+        final Field decoderField = VCardProperty.class.getDeclaredField("mValueDecoder");
+        decoderField.setAccessible(true);
+        final List<VCardProperty> properties = new ArrayList<VCardProperty>();
+        final VCardParser parser =
+                new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.addInterpreter(new RecordingVCardInterpreter() {
+            @Override
+            public void onPropertyCreated(VCardProperty property) {
+                // Keeps the property without asking for its values.
+                properties.add(property);
+            }
+        });
+        parser.parse(new ByteArrayInputStream(readRawResource(R.raw.v21_multiple_entry)));
+        assertFalse(properties.isEmpty());
+        for (VCardProperty property : properties) {
+            assertNull(property.getName(), decoderField.get(property));
+        }
+    }
+
+    private List<String> parseWithCancelAtFirstProperty(final VCardParser parser)
+            throws IOException, VCardException {
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter() {
+            @Override
+            public void onPropertyCreated(VCardProperty property) {
+                super.onPropertyCreated(property);
+                parser.cancel();
+            }
+        };
+        parser.addInterpreter(interpreter);
+        parser.parse(new ByteArrayInputStream(readRawResource(R.raw.v21_multiple_entry)));
+        return interpreter.mEventList;
+    }
+
+    /**
+     * Entries already parsed on worker threads are not delivered after cancel(), nor the rest
+     * of the entry being delivered.
+     */
+    public void testParallelParserCancel() throws IOException, VCardException {
+        final List<String> expected = parseWithCancelAtFirstProperty(new VCardParser_V21());
+        assertEquals(4, expected.size());
+        assertEquals("END", expected.get(3));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(expected, parseWithCancelAtFirstProperty(new VCardParallelParser(
+                    VCardConfig.VCARD_TYPE_V21_GENERIC, executor, true)));
+            assertEquals(expected, parseWithCancelAtFirstProperty(new VCardParallelParser(
+                    VCardConfig.VCARD_TYPE_V21_GENERIC, executor, false)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
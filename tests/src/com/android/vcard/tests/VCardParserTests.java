@@ -15,26 +15,51 @@
  */
 package com.android.vcard.tests;
 
+import com.android.vcard.VCardBinarySink;
+import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardConstants;
+import com.android.vcard.VCardEntry;
+import com.android.vcard.VCardEntry.PhotoData;
+import com.android.vcard.VCardEntryConstructor;
+import com.android.vcard.VCardEntryCounter;
+import com.android.vcard.VCardEntryHandler;
+import com.android.vcard.VCardEntryIndex;
+import com.android.vcard.VCardEntryReader;
+import com.android.vcard.VCardImportCheckpoint;
 import com.android.vcard.VCardInterpreter;
+import com.android.vcard.VCardParseListener;
+import com.android.vcard.VCardParseMetrics;
 import com.android.vcard.VCardParser;
 import com.android.vcard.VCardParser_V21;
 import com.android.vcard.VCardParser_V30;
 import com.android.vcard.VCardProperty;
+import com.android.vcard.VCardSourceDetector;
 import com.android.vcard.exception.VCardException;
+import com.android.vcard.tests.testutils.RecordingVCardInterpreter;
+import com.android.vcard.tests.testutils.VCardParserTestsBase;
 
-import android.test.AndroidTestCase;
+import android.net.Uri;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 
 /**
  * Tests for basic {@link VCardParser} capability (e.g. if it calls callbacks
  * in {@link VCardInterpreter}}.
  */
-public class VCardParserTests extends AndroidTestCase {
+public class VCardParserTests extends VCardParserTestsBase {
     private enum Order {
         START,
         END,
@@ -108,6 +133,583 @@ public class VCardParserTests extends AndroidTestCase {
         }
     }
 
+    public void testParseFileChannel() throws IOException, VCardException {
+        final File file = copyRawResourceToFile(R.raw.v21_simple_1);
+        try {
+            FileInputStream fileInputStream = new FileInputStream(file);
+            try {
+                VCardParser parser = new VCardParser_V21();
+                MockVCardInterpreter interpreter = new MockVCardInterpreter();
+                interpreter.addExpectedOrder(Order.START)
+                        .addExpectedOrder(Order.START_ENTRY)
+                        .addExpectedOrder(Order.PROPERTY_CREATED)
+                        .addExpectedOrder(Order.END_ENTRY)
+                        .addExpectedOrder(Order.END);
+                parser.addInterpreter(interpreter);
+                parser.parse(fileInputStream.getChannel());
+                interpreter.verify();
+            } finally {
+                fileInputStream.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testParseAtEntryIndex() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final File file = copyRawResourceToFile(R.raw.v21_multiple_entry);
+        try {
+            FileInputStream fileInputStream = new FileInputStream(file);
+            try {
+                final FileChannel channel = fileInputStream.getChannel();
+                final VCardEntryIndex builtIndex = VCardEntryIndex.build(channel);
+                assertEquals(3, builtIndex.size());
+                assertEquals(file.length(), builtIndex.getFileSize());
+
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                builtIndex.writeTo(outputStream);
+                final VCardEntryIndex index = VCardEntryIndex.readFrom(
+                        new ByteArrayInputStream(outputStream.toByteArray()));
+                assertEquals(builtIndex.size(), index.size());
+
+                // Parse the entries backward, which must produce the same events per entry.
+                final List<String> actual = new ArrayList<String>();
+                for (int i = index.size() - 1; i >= 0; i--) {
+                    assertEquals(builtIndex.getOffset(i), index.getOffset(i));
+                    assertEquals(builtIndex.getLength(i), index.getLength(i));
+                    final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+                    final VCardParser parser = new VCardParser_V21();
+                    parser.addInterpreter(interpreter);
+                    parser.parseAt(channel, index, i);
+                    final List<String> events = interpreter.mEventList;
+                    // Drop START and END, which every parse produces.
+                    actual.addAll(0, events.subList(1, events.size() - 1));
+                }
+                assertEquals(expected.subList(1, expected.size() - 1), actual);
+            } finally {
+                fileInputStream.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testResumeFromCheckpoint() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final VCardParser_V21 parser = new VCardParser_V21();
+        final List<Long> endOffsets = new ArrayList<Long>();
+        parser.addInterpreter(new RecordingVCardInterpreter() {
+            @Override
+            public void onEntryEnded() {
+                endOffsets.add(parser.getLastEntryEndOffset());
+            }
+        });
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        parser.parse(new ByteArrayInputStream(data));
+        assertEquals(3, parser.getCompletedEntryCount());
+        assertEquals(3, endOffsets.size());
+
+        final VCardImportCheckpoint checkpoint =
+                new VCardImportCheckpoint(endOffsets.get(0), 1, new ArrayList<Uri>());
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        checkpoint.writeTo(outputStream);
+        final VCardImportCheckpoint restored = VCardImportCheckpoint.readFrom(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(checkpoint.getOffset(), restored.getOffset());
+        assertEquals(1, restored.getEntryCount());
+
+        // Resuming must produce the events of the second and third entries only.
+        final int offset = (int) restored.getOffset();
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardParser_V21 resumedParser = new VCardParser_V21();
+        resumedParser.addInterpreter(interpreter);
+        resumedParser.parse(new ByteArrayInputStream(data, offset, data.length - offset));
+        assertEquals(2, resumedParser.getCompletedEntryCount());
+        final int firstEntryEnd = expected.indexOf("END_ENTRY");
+        final List<String> expectedTail = new ArrayList<String>();
+        expectedTail.add("START");
+        expectedTail.addAll(expected.subList(firstEntryEnd + 1, expected.size()));
+        assertEquals(expectedTail, interpreter.mEventList);
+    }
+
+    public void testSourceDetectorSniff() throws IOException {
+        final byte[] data = readRawResource(R.raw.v30_simple);
+
+        // Only "BEGIN:VCARD" and "VERSION:3.0" fit in the first 27 bytes.
+        VCardSourceDetector detector = new VCardSourceDetector();
+        assertEquals(VCardSourceDetector.CONFIDENCE_LOW,
+                detector.sniff(new ByteArrayInputStream(data), 27, 0));
+        assertEquals(VCardConfig.VCARD_TYPE_V30_GENERIC, detector.getEstimatedType());
+        assertNull(detector.getEstimatedCharset());
+
+        // X-GNO and the others are signs of Japanese mobile phones.
+        detector = new VCardSourceDetector();
+        assertEquals(VCardSourceDetector.CONFIDENCE_HIGH,
+                detector.sniff(new ByteArrayInputStream(data), 4096, 1));
+        assertEquals(VCardConfig.VCARD_TYPE_V21_JAPANESE_MOBILE, detector.getEstimatedType());
+
+        detector = new VCardSourceDetector();
+        assertEquals(VCardSourceDetector.CONFIDENCE_HIGH, detector.sniff(
+                new ByteArrayInputStream("X-SD-CHAR_CODE:UTF-8\r\n".getBytes()), 4096, 0));
+    }
+
+    /**
+     * A charset given via X-SD-CHAR_CODE is returned as is. Otherwise, the charset is
+     * estimated from the signs of the exporter.
+     */
+    public void testSourceDetectorEstimatedCharset() throws IOException, VCardException {
+        VCardSourceDetector detector = new VCardSourceDetector();
+        final VCardParser parser = new VCardParser_V30();
+        parser.addInterpreter(detector);
+        parser.parse(new ByteArrayInputStream(readRawResource(R.raw.v30_simple)));
+        assertEquals("SHIFT_JIS", detector.getEstimatedCharset());
+
+        detector = new VCardSourceDetector();
+        detector.sniff(new ByteArrayInputStream(readRawResource(R.raw.v30_simple)), 4096, 1);
+        assertEquals("SHIFT_JIS", detector.getEstimatedCharset());
+
+        detector = new VCardSourceDetector();
+        detector.sniff(new ByteArrayInputStream(
+                "X-SD-CHAR_CODE:UTF-8\r\nX-GNO:0\r\n".getBytes()), 4096, 0);
+        assertEquals("UTF-8", detector.getEstimatedCharset());
+    }
+
+    public void testEntryReader() throws IOException, VCardException {
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser parser = new VCardParser_V21();
+            parser.addInterpreter(counter);
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        final VCardEntryReader reader = new VCardEntryReader(
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        try {
+            int count = 0;
+            while (reader.hasNext()) {
+                assertNotNull(reader.next());
+                count++;
+            }
+            assertEquals(counter.getCount(), count);
+            assertNull(reader.readEntry());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testEntryReaderStopsEarly() throws IOException, VCardException {
+        final VCardEntryReader reader = new VCardEntryReader(
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        try {
+            final VCardEntry entry = reader.readEntry();
+            assertNotNull(entry);
+            assertNotNull(entry.getDisplayName());
+        } finally {
+            reader.close();
+        }
+        assertFalse(reader.hasNext());
+    }
+
+    public void testEntryReaderInterrupted() throws IOException, VCardException {
+        final VCardEntryReader reader = new VCardEntryReader(
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        try {
+            Thread.currentThread().interrupt();
+            try {
+                reader.readEntry();
+                fail("InterruptedIOException must be thrown.");
+            } catch (InterruptedIOException e) {
+            }
+            // Must not look like the end of the input afterwards.
+            try {
+                reader.readEntry();
+                fail("InterruptedIOException must be thrown.");
+            } catch (InterruptedIOException e) {
+            }
+        } finally {
+            // Clears the interrupted status so that it does not affect other tests.
+            Thread.interrupted();
+            reader.close();
+        }
+    }
+
+    private List<byte[]> parseByteValues(int resId, VCardBinarySink sink)
+            throws IOException, VCardException {
+        final List<byte[]> byteValueList = new ArrayList<byte[]>();
+        InputStream inputStream = getContext().getResources().openRawResource(resId);
+        try {
+            VCardParser_V21 parser = new VCardParser_V21();
+            parser.setBinarySink(sink);
+            parser.addInterpreter(new RecordingVCardInterpreter() {
+                @Override
+                public void onPropertyCreated(VCardProperty property) {
+                    if (property.getByteValue() != null) {
+                        byteValueList.add(property.getByteValue());
+                    }
+                }
+            });
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return byteValueList;
+    }
+
+    public void testBinarySink() throws IOException, VCardException {
+        final List<byte[]> expected = parseByteValues(R.raw.v21_blackberry_photo, null);
+        assertEquals(1, expected.size());
+
+        final List<ByteArrayOutputStream> streamList = new ArrayList<ByteArrayOutputStream>();
+        final List<byte[]> byteValueList = parseByteValues(R.raw.v21_blackberry_photo,
+                new VCardBinarySink() {
+                    @Override
+                    public OutputStream openBinaryValue(VCardProperty property) {
+                        assertEquals("PHOTO", property.getName());
+                        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        streamList.add(out);
+                        return out;
+                    }
+
+                    @Override
+                    public Object getBinaryValueHandle(VCardProperty property,
+                            OutputStream out) {
+                        return out;
+                    }
+                });
+        assertEquals(0, byteValueList.size());
+        assertEquals(1, streamList.size());
+        assertTrue(Arrays.equals(expected.get(0), streamList.get(0).toByteArray()));
+    }
+
+    private List<VCardEntry> parseEntries(VCardParser parser, int resId)
+            throws IOException, VCardException {
+        final VCardEntryConstructor constructor = new VCardEntryConstructor();
+        final List<VCardEntry> entries = new ArrayList<VCardEntry>();
+        constructor.addEntryHandler(new VCardEntryHandler() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onEntryCreated(VCardEntry entry) {
+                entries.add(entry);
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        });
+        parser.addInterpreter(constructor);
+        InputStream inputStream = getContext().getResources().openRawResource(resId);
+        try {
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return entries;
+    }
+
+    /**
+     * A folded vCard 3.0 photo is decoded line by line into the sink, and the entry gets the
+     * handle of its bytes.
+     */
+    public void testBinarySinkWithFoldedV30Photo() throws IOException, VCardException {
+        final List<VCardEntry> expected =
+                parseEntries(new VCardParser_V30(), R.raw.v30_ios_613_multiline);
+        final byte[] expectedBytes = expected.get(0).getPhotoList().get(0).getBytes();
+
+        final List<ByteArrayOutputStream> streamList = new ArrayList<ByteArrayOutputStream>();
+        final List<String> rawValueList = new ArrayList<String>();
+        final VCardParser_V30 parser = new VCardParser_V30();
+        parser.setBinarySink(new VCardBinarySink() {
+            @Override
+            public OutputStream openBinaryValue(VCardProperty property) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                streamList.add(out);
+                return out;
+            }
+
+            @Override
+            public Object getBinaryValueHandle(VCardProperty property, OutputStream out) {
+                return streamList.indexOf(out);
+            }
+        });
+        parser.addInterpreter(new RecordingVCardInterpreter() {
+            @Override
+            public void onPropertyCreated(VCardProperty property) {
+                if (property.isByteValueInSink()) {
+                    rawValueList.add(property.getRawValue());
+                }
+            }
+        });
+        final List<VCardEntry> entries = parseEntries(parser, R.raw.v30_ios_613_multiline);
+
+        // Continuation lines were not concatenated into the value of the first line.
+        assertEquals(1, rawValueList.size());
+        assertEquals("/9j/4AAQSkZJRgABAQAAAQABAAD/4gxYSUNDX1BST0ZJTEUA", rawValueList.get(0));
+        assertEquals(1, streamList.size());
+        assertTrue(Arrays.equals(expectedBytes, streamList.get(0).toByteArray()));
+
+        assertEquals(1, entries.size());
+        final List<PhotoData> photoList = entries.get(0).getPhotoList();
+        assertEquals(1, photoList.size());
+        assertEquals("JPEG", photoList.get(0).getFormat());
+        assertNull(photoList.get(0).getBytes());
+        assertEquals(0, photoList.get(0).getByteValueHandle());
+        // The other properties are not affected.
+        assertEquals(expected.get(0).getPhoneList(), entries.get(0).getPhoneList());
+        assertEquals(expected.get(0).getEmailList(), entries.get(0).getEmailList());
+    }
+
+    public void testReuseProperty() throws IOException, VCardException {
+        final List<VCardProperty> propertyList = new ArrayList<VCardProperty>();
+        final List<VCardProperty> copiedPropertyList = new ArrayList<VCardProperty>();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser_V21 parser = new VCardParser_V21();
+            parser.setReuseProperty(true);
+            parser.addInterpreter(new RecordingVCardInterpreter() {
+                @Override
+                public void onPropertyCreated(VCardProperty property) {
+                    propertyList.add(property);
+                    copiedPropertyList.add(property.copy());
+                }
+            });
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final List<String> actual = new ArrayList<String>();
+        for (VCardProperty property : copiedPropertyList) {
+            actual.add(property.getName() + ":" + property.getValueList());
+        }
+        int index = 0;
+        for (String event : expected) {
+            if (event.contains(":")) {
+                assertEquals(event, actual.get(index++));
+            }
+        }
+        assertEquals(actual.size(), index);
+        assertSame(propertyList.get(0), propertyList.get(propertyList.size() - 1));
+    }
+
+    /**
+     * Copies taken before their values are decoded keep their own values and parameters,
+     * while the parser reuses the decoder and the parameter collections of the original.
+     */
+    public void testReusePropertyWithCopiesDecodedLater() throws IOException, VCardException {
+        final List<VCardProperty> copiedPropertyList = new ArrayList<VCardProperty>();
+        final List<Collection<String>> typeCollectionList = new ArrayList<Collection<String>>();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser_V21 parser = new VCardParser_V21();
+            parser.setReuseProperty(true);
+            parser.addInterpreter(new RecordingVCardInterpreter() {
+                @Override
+                public void onPropertyCreated(VCardProperty property) {
+                    copiedPropertyList.add(property.copy());
+                    final Collection<String> types = property.getParameters("TYPE");
+                    if (types != null) {
+                        typeCollectionList.add(types);
+                    }
+                }
+            });
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        final List<String> expected = new ArrayList<String>();
+        InputStream expectedInputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser_V21 parser = new VCardParser_V21();
+            parser.addInterpreter(new RecordingVCardInterpreter() {
+                @Override
+                public void onPropertyCreated(VCardProperty property) {
+                    expected.add(property.getName() + property.getParameterMap() + ":"
+                            + property.getValueList());
+                }
+            });
+            parser.parse(expectedInputStream);
+        } finally {
+            expectedInputStream.close();
+        }
+
+        final List<String> actual = new ArrayList<String>();
+        for (VCardProperty property : copiedPropertyList) {
+            actual.add(property.getName() + property.getParameterMap() + ":"
+                    + property.getValueList());
+        }
+        assertEquals(expected, actual);
+        assertTrue(typeCollectionList.size() > 1);
+        assertSame(typeCollectionList.get(0), typeCollectionList.get(1));
+    }
+
+    public void testGroupAndQuotedParamsWithMixedLineTerminators()
+            throws IOException, VCardException {
+        final List<VCardProperty> propertyList = new ArrayList<VCardProperty>();
+        // Mixes CRLF, CR, and LF, and has a line longer than a word of the line scanner.
+        final String vcard = "BEGIN:VCARD\r\nVERSION:3.0\r"
+                + "item1.TEL;TYPE=\"WORK,VOICE\";PREF:+1-555-0100\n"
+                + "NOTE:abcdefghijklmnopqrstuvwxyz:;.\"0123456789\r\nEND:VCARD\r\n";
+        VCardParser parser = new VCardParser_V30();
+        parser.addInterpreter(new RecordingVCardInterpreter() {
+            @Override
+            public void onPropertyCreated(VCardProperty property) {
+                propertyList.add(property);
+            }
+        });
+        parser.parse(new ByteArrayInputStream(vcard.getBytes("US-ASCII")));
+
+        assertEquals(3, propertyList.size());
+        final VCardProperty tel = propertyList.get(1);
+        assertEquals("TEL", tel.getName());
+        assertEquals(Arrays.asList("item1"), tel.getGroupList());
+        assertEquals(new HashSet<String>(Arrays.asList("WORK,VOICE", "PREF")),
+                new HashSet<String>(tel.getParameters(VCardConstants.PARAM_TYPE)));
+        assertEquals("+1-555-0100", tel.getRawValue());
+        final VCardProperty note = propertyList.get(2);
+        assertEquals("NOTE", note.getName());
+        assertEquals("abcdefghijklmnopqrstuvwxyz:;.\"0123456789", note.getRawValue());
+    }
+
+    public void testParseListener() throws IOException, VCardException {
+        final List<VCardParseMetrics> metricsList = new ArrayList<VCardParseMetrics>();
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser_V21 parser = new VCardParser_V21();
+            parser.setParseListener(new VCardParseListener() {
+                @Override
+                public void onParseFinished(VCardParseMetrics metrics) {
+                    metricsList.add(metrics);
+                }
+            });
+            parser.addInterpreter(counter);
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        assertEquals(1, metricsList.size());
+        final VCardParseMetrics metrics = metricsList.get(0);
+        assertEquals(counter.getCount(), metrics.getEntryCount());
+        assertTrue(metrics.getBytesRead() > 0);
+        assertTrue(metrics.getTotalNanos() >= metrics.getIoNanos() + metrics.getDecodeNanos()
+                + metrics.getDispatchNanos());
+    }
+
+    private VCardParseMetrics parseWithMetrics(VCardInterpreter interpreter)
+            throws IOException, VCardException {
+        final List<VCardParseMetrics> metricsList = new ArrayList<VCardParseMetrics>();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser_V21 parser = new VCardParser_V21();
+            parser.setParseListener(new VCardParseListener() {
+                @Override
+                public void onParseFinished(VCardParseMetrics metrics) {
+                    metricsList.add(metrics);
+                }
+            });
+            parser.addInterpreter(interpreter);
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(1, metricsList.size());
+        return metricsList.get(0);
+    }
+
+    /**
+     * Values are not decoded for interpreters looking only at property names, and decoding
+     * them after the parse does not change the reported metrics.
+     */
+    public void testParseListenerWithoutDecoding() throws IOException, VCardException {
+        final List<VCardProperty> copiedPropertyList = new ArrayList<VCardProperty>();
+        final VCardParseMetrics metrics = parseWithMetrics(new RecordingVCardInterpreter() {
+            @Override
+            public void onPropertyCreated(VCardProperty property) {
+                mEventList.add(property.getName());
+                copiedPropertyList.add(property.copy());
+            }
+        });
+        assertEquals(0, metrics.getDecodeNanos());
+        final long dispatchNanos = metrics.getDispatchNanos();
+        final long ioNanos = metrics.getIoNanos();
+
+        for (VCardProperty property : copiedPropertyList) {
+            assertNotNull(property.getValueList());
+        }
+        assertEquals(0, metrics.getDecodeNanos());
+        assertEquals(dispatchNanos, metrics.getDispatchNanos());
+        assertEquals(ioNanos, metrics.getIoNanos());
+
+        final VCardParseMetrics decodingMetrics = parseWithMetrics(
+                new RecordingVCardInterpreter());
+        assertTrue(decodingMetrics.getDecodeNanos() > 0);
+    }
+
+    private int countEntries(VCardParser.Deadline deadline) throws IOException, VCardException {
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser_V21 parser = new VCardParser_V21();
+            parser.addInterpreter(counter);
+            parser.parse(inputStream, deadline);
+        } finally {
+            inputStream.close();
+        }
+        return counter.getCount();
+    }
+
+    public void testDeadlineWithByteBudget() throws IOException, VCardException {
+        final VCardParser.Deadline enough = VCardParser.Deadline.ofBytes(Long.MAX_VALUE);
+        final int total = countEntries(enough);
+        assertFalse(enough.isExceeded());
+        assertTrue(total > 1);
+
+        // Stops in the middle of the first entry.
+        final VCardParser.Deadline tooSmall = VCardParser.Deadline.ofBytes(1);
+        assertEquals(0, countEntries(tooSmall));
+        assertTrue(tooSmall.isExceeded());
+    }
+
+    public void testCancelInterruptedThread() throws IOException, VCardException {
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParser parser = new VCardParser_V21();
+            parser.addInterpreter(counter);
+            Thread.currentThread().interrupt();
+            parser.parse(inputStream);
+        } finally {
+            // Clears the interrupted status so that it does not affect other tests.
+            assertTrue(Thread.interrupted());
+            inputStream.close();
+        }
+        assertEquals(0, counter.getCount());
+    }
+
     public void testNest() throws IOException, VCardException {
         InputStream inputStream = getContext().getResources().openRawResource(R.raw.v21_nest);
         try {
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests;
+
+import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardParser_V21;
+import com.android.vcard.VCardParser_V30;
+import com.android.vcard.VCardPushParser;
+import com.android.vcard.exception.VCardException;
+import com.android.vcard.tests.testutils.RecordingVCardInterpreter;
+import com.android.vcard.tests.testutils.VCardParserTestsBase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Tests for {@link VCardPushParser}, whose events must be the same as those of
+ * {@link VCardParser_V21} and {@link VCardParser_V30} however the input is split.
+ */
+public class VCardPushParserTests extends VCardParserTestsBase {
+    /**
+     * Feeds the input in chunks of a few bytes, so that lines and CRLF are split among them.
+     */
+    public void testPushParserWithSmallChunks() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardPushParser parser = new VCardPushParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.addInterpreter(interpreter);
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        for (int i = 0; i < data.length; i += 3) {
+            final ByteBuffer buffer = ByteBuffer.wrap(data, i, Math.min(3, data.length - i));
+            parser.feed(buffer);
+            assertFalse(buffer.hasRemaining());
+        }
+        parser.endOfInput();
+        assertEquals(expected, interpreter.mEventList);
+    }
+
+    public void testPushParserWithDirectBuffers() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardPushParser parser = new VCardPushParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.addInterpreter(interpreter);
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        for (int i = 0; i < data.length; i += 5) {
+            final int length = Math.min(5, data.length - i);
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+            buffer.put(data, i, length);
+            buffer.flip();
+            parser.feed(buffer);
+            assertFalse(buffer.hasRemaining());
+        }
+        parser.endOfInput();
+        assertEquals(expected, interpreter.mEventList);
+    }
+
+    /**
+     * Every chunk ends with the CR of CRLF, so that the LF comes at the beginning of the next.
+     */
+    public void testPushParserWithCrLfSplitAcrossChunks() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardPushParser parser = new VCardPushParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.addInterpreter(interpreter);
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        int chunkStart = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '\r' || i == data.length - 1) {
+                parser.feed(ByteBuffer.wrap(data, chunkStart, i + 1 - chunkStart));
+                chunkStart = i + 1;
+            }
+        }
+        parser.endOfInput();
+        assertEquals(expected, interpreter.mEventList);
+    }
+
+    /**
+     * Folded vCard 3.0 lines are unfolded even when a line and its continuation come in
+     * different chunks.
+     */
+    public void testPushParserWithFoldedV30Lines() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V30(), R.raw.v30_ios_613_multiline);
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardPushParser parser = new VCardPushParser(VCardConfig.VCARD_TYPE_V30_GENERIC);
+        parser.addInterpreter(interpreter);
+        final byte[] data = readRawResource(R.raw.v30_ios_613_multiline);
+        for (int i = 0; i < data.length; i += 2) {
+            parser.feed(ByteBuffer.wrap(data, i, Math.min(2, data.length - i)));
+        }
+        parser.endOfInput();
+        assertEquals(expected, interpreter.mEventList);
+    }
+
+    /**
+     * The last "END:VCARD" line without CRLF is completed by endOfInput().
+     */
+    public void testPushParserWithoutTrailingCrLf() throws IOException, VCardException {
+        final List<String> expected =
+                parseWithRecording(new VCardParser_V21(), R.raw.v21_multiple_entry);
+        final RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+        final VCardPushParser parser = new VCardPushParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.addInterpreter(interpreter);
+        final byte[] data = readRawResource(R.raw.v21_multiple_entry);
+        assertEquals('\n', data[data.length - 1]);
+        parser.feed(ByteBuffer.wrap(data, 0, data.length - 2));
+        assertFalse(expected.equals(interpreter.mEventList));
+        parser.endOfInput();
+        assertEquals(expected, interpreter.mEventList);
+    }
+
+    public void testPushParserNest() throws IOException, VCardException {
+        final List<String> expected = parseWithRecording(new VCardParser_V21(), R.raw.v21_nest);
+        final List<String> actual = parseWithRecording(
+                new VCardPushParser(VCardConfig.VCARD_TYPE_V21_GENERIC), R.raw.v21_nest);
+        assertEquals(expected, actual);
+    }
+}
@@ -141,4 +141,38 @@ public class VCardUtilsTests extends TestCase {
         assertFalse(VCardUtils.appearsLikeAndroidVCardQuotedPrintable("=12_"));
         assertFalse(VCardUtils.appearsLikeAndroidVCardQuotedPrintable("=12=34_56="));
     }
+
+    public void testConvertStringCharsetFromIntermediateCharset() {
+        // ASCII-only values are returned as is.
+        assertEquals("abc", VCardUtils.convertStringCharset("abc", "ISO-8859-1", "UTF-8"));
+        // "\u00E3\u0081\u0082" is the UTF-8 representation of Hiragana "A" read as ISO-8859-1.
+        assertEquals("\u3042",
+                VCardUtils.convertStringCharset("\u00E3\u0081\u0082", "ISO-8859-1", "UTF-8"));
+        // "\u0082\u00A0" is the Shift_JIS representation of Hiragana "A".
+        assertEquals("a\u3042",
+                VCardUtils.convertStringCharset("a\u0082\u00A0", "ISO-8859-1", "Shift_JIS"));
+    }
+
+    public void testConvertStringCharset() {
+        // "\u3042" in Shift_JIS (0x82 0xA0) is invalid as UTF-8, so each byte is replaced.
+        assertEquals("\uFFFD\uFFFD",
+                VCardUtils.convertStringCharset("\u3042", "Shift_JIS", "UTF-8"));
+        assertEquals("\u3042", VCardUtils.convertStringCharset(
+                VCardUtils.convertStringCharset("\u3042", "UTF-8", "ISO-8859-1"),
+                "ISO-8859-1", "UTF-8"));
+        assertNull(VCardUtils.convertStringCharset("\u00E3", "ISO-8859-1", "X-UNKNOWN-CHARSET"));
+    }
+
+    public void testParseQuotedPrintable() {
+        assertEquals("\u3042", VCardUtils.parseQuotedPrintable(
+                "=E3=81=82", false, "ISO-8859-1", "UTF-8"));
+        // Soft line breaks are removed in both modes.
+        assertEquals("\u3042", VCardUtils.parseQuotedPrintable(
+                "=E3=81=\r\n=82", false, "ISO-8859-1", "UTF-8"));
+        assertEquals("\u3042", VCardUtils.parseQuotedPrintable(
+                "=E3=81=\r\n=82", true, "ISO-8859-1", "UTF-8"));
+        // An invalid escape leaves the raw string as is.
+        assertEquals("a=ZZ", VCardUtils.parseQuotedPrintable(
+                "a=ZZ", false, "ISO-8859-1", "UTF-8"));
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests.testutils;
+
+import com.android.vcard.VCardLenientInterpreter;
+import com.android.vcard.VCardProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the events as Strings so that the results of two parses can be compared.
+ */
+public class RecordingVCardInterpreter implements VCardLenientInterpreter {
+    public final List<String> mEventList = new ArrayList<String>();
+
+    @Override
+    public void onVCardStarted() {
+        mEventList.add("START");
+    }
+
+    @Override
+    public void onVCardEnded() {
+        mEventList.add("END");
+    }
+
+    @Override
+    public void onEntryStarted() {
+        mEventList.add("START_ENTRY");
+    }
+
+    @Override
+    public void onEntryEnded() {
+        mEventList.add("END_ENTRY");
+    }
+
+    @Override
+    public void onEntryAborted() {
+        mEventList.add("ABORT_ENTRY");
+    }
+
+    @Override
+    public void onPropertyCreated(VCardProperty property) {
+        mEventList.add(property.getName() + ":" + property.getValueList());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.tests.testutils;
+
+import com.android.vcard.VCardParser;
+import com.android.vcard.exception.VCardException;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * BaseClass for tests of {@link VCardParser} and its variants, which read vCard files from the
+ * raw resources of the test package.
+ */
+public abstract class VCardParserTestsBase extends AndroidTestCase {
+    protected byte[] readRawResource(int resId) throws IOException {
+        InputStream inputStream = getContext().getResources().openRawResource(resId);
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, count);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Callers must delete the returned file.
+     */
+    protected File copyRawResourceToFile(int resId) throws IOException {
+        final File file = File.createTempFile("vcard", ".vcf", getContext().getCacheDir());
+        InputStream inputStream = getContext().getResources().openRawResource(resId);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            final byte[] buffer = new byte[1024];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, count);
+            }
+        } finally {
+            outputStream.close();
+            inputStream.close();
+        }
+        return file;
+    }
+
+    /**
+     * @return the events of the parse, recorded by {@link RecordingVCardInterpreter}.
+     */
+    protected List<String> parseWithRecording(VCardParser parser, int resId)
+            throws IOException, VCardException {
+        InputStream inputStream = getContext().getResources().openRawResource(resId);
+        try {
+            RecordingVCardInterpreter interpreter = new RecordingVCardInterpreter();
+            parser.addInterpreter(interpreter);
+            parser.parse(inputStream);
+            return interpreter.mEventList;
+        } finally {
+            inputStream.close();
+        }
+    }
+}